@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.config.ConfigurationMerger;
+import com.etsy.arbiter.exception.ConfigurationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks merging a configuration with a low precedence configuration that overrides every action type
+ *
+ * @author Andrew Johnson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationMergerBenchmark {
+    /**
+     * Merging never modifies the configurations it is given, so they are parsed once and merged repeatedly
+     */
+    @State(Scope.Thread)
+    public static class Configs {
+        public List<Config> configs;
+
+        @Setup(Level.Trial)
+        public void setup(WorkflowState state) {
+            configs = Arrays.asList(state.readConfig(), state.readLowPrecedenceConfig());
+        }
+    }
+
+    @Benchmark
+    public Config mergeConfiguration(Configs configs) throws ConfigurationException {
+        return ConfigurationMerger.mergeConfiguration(configs.configs);
+    }
+}
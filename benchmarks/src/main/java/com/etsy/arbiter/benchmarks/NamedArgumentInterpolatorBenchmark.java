@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.util.NamedArgumentInterpolator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks interpolating the default arguments of every action in a workflow
+ *
+ * @author Andrew Johnson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamedArgumentInterpolatorBenchmark {
+    @Benchmark
+    public void interpolate(WorkflowState state, Blackhole blackhole) {
+        for (Action action : state.workflow.getActions()) {
+            ActionType type = state.config.getActionTypeByName(action.getType());
+            // List arguments spliced into the result are removed from the map given, so each action gets its own copy
+            Map<String, List<String>> listArgs = action.getPositionalArgs() == null ? null : new HashMap<>(action.getPositionalArgs());
+            blackhole.consume(NamedArgumentInterpolator.interpolate(type.getDefaultArgs(), action.getNamedArgs(), type.getDefaultInterpolations(), listArgs));
+        }
+    }
+}
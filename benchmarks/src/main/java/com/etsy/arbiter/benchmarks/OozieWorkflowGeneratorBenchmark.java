@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import com.etsy.arbiter.OozieWorkflowGenerator;
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generating the Oozie workflow XML, including building the graph and writing the file
+ *
+ * @author Andrew Johnson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OozieWorkflowGeneratorBenchmark {
+    @Param({"true", "false"})
+    public boolean indentXml;
+
+    @Benchmark
+    public void generateOozieWorkflows(WorkflowState state) throws IOException, WorkflowGraphException, ConfigurationException {
+        OozieWorkflowGenerator generator = new OozieWorkflowGenerator(state.config, indentXml);
+        generator.generateOozieWorkflows(state.outputDir.getPath(), Collections.singletonList(state.workflow), false, null);
+    }
+}
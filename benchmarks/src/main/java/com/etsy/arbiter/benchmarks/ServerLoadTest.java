@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput and latency of a running Arbiter server
+ * The same workflow is posted repeatedly from a number of concurrent clients, after a warm-up that is not measured
+ *
+ * Usage: ServerLoadTest port workflow.yaml [concurrency] [requests]
+ *
+ * @author Andrew Johnson
+ */
+public class ServerLoadTest {
+    private ServerLoadTest() { }
+
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_REQUESTS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ServerLoadTest port workflow.yaml [concurrency] [requests]");
+            System.exit(1);
+        }
+
+        URL url = new URL("http://localhost:" + Integer.parseInt(args[0]) + "/workflow");
+        byte[] workflow = Files.toByteArray(new File(args[1]));
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CONCURRENCY;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_REQUESTS;
+
+        // The server's JIT warms up too, so the first requests are slower than the rest
+        run(url, workflow, concurrency, Math.max(requests / 10, concurrency));
+
+        long start = System.nanoTime();
+        Result result = run(url, workflow, concurrency, requests);
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.println(String.format(Locale.ROOT, "requests:   %d (%d failed)", requests, result.failures.get()));
+        System.out.println(String.format(Locale.ROOT, "throughput: %.1f requests/s", requests / (elapsed / 1e9)));
+        System.out.println(String.format(Locale.ROOT, "latency:    p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6));
+    }
+
+    /**
+     * Post the workflow a number of times from concurrent clients
+     */
+    private static Result run(final URL url, final byte[] workflow, int concurrency, final int requests) throws InterruptedException, ExecutionException {
+        final Result result = new Result(requests);
+        final AtomicInteger next = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Void>> clients = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                clients.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        for (int request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+                            long start = System.nanoTime();
+                            if (post(url, workflow) != HttpURLConnection.HTTP_OK) {
+                                result.failures.incrementAndGet();
+                            }
+                            result.latencies[request] = System.nanoTime() - start;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Post the workflow once, reading the whole response so the connection can be reused
+     *
+     * @return The status of the response
+     */
+    private static int post(URL url, byte[] workflow) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(workflow.length);
+        try (OutputStream stream = connection.getOutputStream()) {
+            stream.write(workflow);
+        }
+
+        int status = connection.getResponseCode();
+        try (InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (stream != null) {
+                ByteStreams.copy(stream, ByteStreams.nullOutputStream());
+            }
+        }
+        return status;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static class Result {
+        private final long[] latencies;
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Result(int requests) {
+            latencies = new long[requests];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates configuration and workflow YAML of a given size and shape for benchmarking
+ *
+ * Workflows are built from blocks. Each block has a root action that fans out into parallel chains of actions,
+ * followed by a sink action that depends on the end of every chain. Each block's root depends on the previous block's sink.
+ * Blocks are repeated until the workflow has the requested number of actions, so the last block may be incomplete.
+ *
+ * @author Andrew Johnson
+ */
+public class SyntheticWorkflows {
+    private SyntheticWorkflows() { }
+
+    /**
+     * The number of action types defined by the configuration, which actions cycle through
+     */
+    public static final int ACTION_TYPES = 20;
+
+    /**
+     * Create a configuration defining every action type
+     * The high and low precedence configurations define the same action types with different settings, so merging them must combine each type
+     *
+     * @param lowPrecedence Whether to create the low precedence configuration
+     * @return The configuration YAML
+     */
+    public static String createConfig(boolean lowPrecedence) {
+        StringBuilder yaml = new StringBuilder();
+        if (!lowPrecedence) {
+            yaml.append("killName: kill\n")
+                    .append("killMessage: \"$$name$$ failed\"\n");
+        }
+        yaml.append("actionTypes:\n");
+        for (int i = 0; i < ACTION_TYPES; i++) {
+            yaml.append("    - tag: java\n")
+                    .append("      name: type").append(i).append('\n')
+                    .append("      xmlns: uri:oozie:java-action:0.1\n")
+                    .append("      configurationPosition: 2\n");
+            if (lowPrecedence) {
+                yaml.append("      defaultArgs: {java-opts: [\"-Xmx1g\"], arg: [\"--verbose\"]}\n")
+                        .append("      properties: {mapreduce.job.queuename: default, low.precedence.").append(i).append(": \"true\"}\n");
+            } else {
+                yaml.append("      defaultArgs: {job-tracker: [\"$$jobTracker$$\"], name-node: [\"$$nameNode$$\"], main-class: [\"$$main$$\"], arg: [\"--input\", \"$$input$$\", \"--output=$$output$$\", \"--date=$$date$$\"]}\n")
+                        .append("      defaultInterpolations: {jobTracker: \"jt:8021\", nameNode: \"hdfs://nn:8020\", date: \"${wf:conf('date')}\", output: /tmp/output}\n")
+                        .append("      properties: {mapreduce.job.queuename: \"${queueName}\", type.").append(i).append(": \"true\"}\n");
+            }
+        }
+
+        return yaml.toString();
+    }
+
+    /**
+     * Create a workflow
+     *
+     * @param name The name of the workflow
+     * @param actions The number of actions in the workflow
+     * @param width The number of parallel chains each block fans out into
+     * @param depth The number of actions in each chain
+     * @return The workflow YAML
+     */
+    public static String createWorkflow(String name, int actions, int width, int depth) {
+        StringBuilder yaml = new StringBuilder();
+        yaml.append("name: ").append(name).append('\n')
+                .append("errorHandler:\n")
+                .append("    name: error-handler\n")
+                .append("    type: type0\n")
+                .append("    main: com.etsy.ErrorHandler\n")
+                .append("    input: /data/errors\n")
+                .append("actions:\n");
+
+        int count = 0;
+        String previousSink = null;
+        while (count < actions) {
+            String root = appendAction(yaml, count++, previousSink == null ? Collections.<String>emptyList() : Collections.singletonList(previousSink));
+            previousSink = root;
+
+            List<String> chainEnds = new ArrayList<>();
+            for (int w = 0; w < width && count < actions; w++) {
+                String previous = root;
+                for (int d = 0; d < depth && count < actions; d++) {
+                    previous = appendAction(yaml, count++, Collections.singletonList(previous));
+                }
+                chainEnds.add(previous);
+            }
+
+            if (count < actions) {
+                previousSink = appendAction(yaml, count++, chainEnds);
+            }
+        }
+
+        return yaml.toString();
+    }
+
+    /**
+     * Write a file in a directory
+     *
+     * @param directory The directory in which to write the file
+     * @param fileName The name of the file
+     * @param contents The contents of the file
+     * @return The file
+     * @throws IOException
+     */
+    public static File write(File directory, String fileName, String contents) throws IOException {
+        File file = new File(directory, fileName);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String appendAction(StringBuilder yaml, int index, List<String> dependencies) {
+        String name = "action" + index;
+        yaml.append("    - name: ").append(name).append('\n')
+                .append("      type: type").append(index % ACTION_TYPES).append('\n')
+                .append("      main: com.etsy.Job").append(index).append('\n')
+                .append("      input: /data/").append(index).append('\n');
+        if (index % 3 == 0) {
+            yaml.append("      configurationProperties: {mapreduce.map.memory.mb: \"2048\"}\n");
+        }
+        if (!dependencies.isEmpty()) {
+            yaml.append("      dependencies: [");
+            for (int i = 0; i < dependencies.size(); i++) {
+                if (i > 0) {
+                    yaml.append(", ");
+                }
+                yaml.append(dependencies.get(i));
+            }
+            yaml.append("]\n");
+        }
+
+        return name;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.etsy.arbiter.workflow.WorkflowGraph;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks inserting fork/join pairs into a workflow with each algorithm
+ *
+ * @author Andrew Johnson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkflowGraphBuilderBenchmark {
+    @Param({"RECURSIVE", "LAYERED", "SERIES_PARALLEL"})
+    public WorkflowGraphBuilder.Algorithm algorithm;
+
+    /**
+     * Builds the compact graph used by the generator
+     */
+    @Benchmark
+    public WorkflowGraph build(WorkflowState state) throws WorkflowGraphException {
+        return WorkflowGraphBuilder.build(state.workflow, state.config, null, false, null, algorithm);
+    }
+
+    /**
+     * Builds the graph and converts it to jgrapht, as Graphviz output does
+     */
+    @Benchmark
+    public DirectedAcyclicGraph<Action, DefaultEdge> buildWorkflowGraph(WorkflowState state) throws WorkflowGraphException {
+        return WorkflowGraphBuilder.buildWorkflowGraph(state.workflow, state.config, null, false, null, algorithm);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.benchmarks;
+
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.config.ConfigurationMerger;
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.util.YamlReader;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A synthetic workflow and configuration shared by the benchmarks
+ * The input files are written once per trial, and the parsed workflow and merged configuration are kept for the later stages of the pipeline
+ *
+ * @author Andrew Johnson
+ */
+@State(Scope.Benchmark)
+public class WorkflowState {
+    @Param({"100", "1000", "5000"})
+    public int actions;
+
+    @Param({"4", "32"})
+    public int width;
+
+    @Param({"1", "8"})
+    public int depth;
+
+    public File directory;
+    public File configFile;
+    public File lowPrecedenceConfigFile;
+    public File workflowFile;
+    public File outputDir;
+
+    public YamlReader<Config> configReader;
+    public YamlReader<Workflow> workflowReader;
+
+    public Config config;
+    public Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ConfigurationException {
+        directory = Files.createTempDirectory("arbiter-benchmark").toFile();
+        configFile = SyntheticWorkflows.write(directory, "config.yaml", SyntheticWorkflows.createConfig(false));
+        lowPrecedenceConfigFile = SyntheticWorkflows.write(directory, "low-precedence.yaml", SyntheticWorkflows.createConfig(true));
+        workflowFile = SyntheticWorkflows.write(directory, "workflow.yaml", SyntheticWorkflows.createWorkflow("benchmark", actions, width, depth));
+        outputDir = new File(directory, "output");
+
+        configReader = new YamlReader<>(Config.getYamlBinder());
+        workflowReader = new YamlReader<>(Workflow.getYamlBinder());
+
+        config = ConfigurationMerger.mergeConfiguration(readConfig(), readLowPrecedenceConfig());
+        workflow = workflowReader.read(workflowFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * @return A newly parsed copy of the standard configuration
+     */
+    public Config readConfig() {
+        return configReader.read(configFile);
+    }
+
+    /**
+     * @return A newly parsed copy of the low precedence configuration
+     */
+    public Config readLowPrecedenceConfig() {
+        Config lowPrecedence = configReader.read(lowPrecedenceConfigFile);
+        lowPrecedence.setLowPrecedence(true);
+        return lowPrecedence;
+    }
+}
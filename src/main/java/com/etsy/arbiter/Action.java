@@ -16,6 +16,11 @@
 
 package com.etsy.arbiter;
 
+import com.etsy.arbiter.util.YamlBinder;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+
 import java.util.*;
 
 /**
@@ -24,6 +29,69 @@ import java.util.*;
  * @author Andrew Johnson
  */
 public class Action {
+    private static final YamlBinder<Action> YAML_BINDER = new YamlBinder<Action>() {
+        @Override
+        public Action bind(Node node) {
+            if (isNull(node)) {
+                return null;
+            }
+
+            Action action = new Action();
+            for (NodeTuple entry : entries(node, "action")) {
+                String key = key(entry);
+                Node value = entry.getValueNode();
+                switch (key) {
+                    case "name":
+                        action.setName(string(value, key));
+                        break;
+                    case "type":
+                        action.setType(string(value, key));
+                        break;
+                    case "forceOk":
+                        action.setForceOk(string(value, key));
+                        break;
+                    case "forceError":
+                        action.setForceError(string(value, key));
+                        break;
+                    case "dependencies":
+                        List<String> dependencies = stringList(value, key);
+                        action.setDependencies(dependencies == null ? null : new LinkedHashSet<>(dependencies));
+                        break;
+                    case "positionalArgs":
+                        action.setPositionalArgs(stringListMap(value, key));
+                        break;
+                    case "namedArgs":
+                        action.setNamedArgs(stringMap(value, key));
+                        break;
+                    case "configurationProperties":
+                        action.setConfigurationProperties(stringMap(value, key));
+                        break;
+                    default:
+                        // Any other key is an argument: a list is a positional argument and anything else a named argument
+                        if (value instanceof SequenceNode) {
+                            action.setProperty(key, stringList(value, key));
+                        } else if (!isNull(value)) {
+                            action.setProperty(key, string(value, key));
+                        } else {
+                            throw error(value, "Expected a string or a list of strings for " + key);
+                        }
+                        break;
+                }
+            }
+            return action;
+        }
+    };
+
+    /**
+     * Defines how to construct Action objects when reading from YAML
+     * Keys that are not properties of Action are read as the arguments of the action
+     *
+     * @return A binder that creates Action objects from YAML
+     */
+    public static YamlBinder<Action> getYamlBinder() {
+        return YAML_BINDER;
+    }
+
     private String name;
     private String type;
     private String forceOk;
@@ -16,19 +16,37 @@
 
 package com.etsy.arbiter;
 
+import com.etsy.arbiter.cache.BuildCache;
+import com.etsy.arbiter.cache.Snapshot;
 import com.etsy.arbiter.config.Config;
 import com.etsy.arbiter.config.ConfigurationMerger;
 import com.etsy.arbiter.exception.ConfigurationException;
-import com.etsy.arbiter.util.YamlReader;
+import com.etsy.arbiter.exception.InputFileException;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.etsy.arbiter.metrics.GenerationMetrics;
+import com.etsy.arbiter.metrics.Phase;
+import com.etsy.arbiter.metrics.PhaseTimer;
+import com.etsy.arbiter.output.OutputSink;
+import com.etsy.arbiter.output.OutputSinks;
+import com.etsy.arbiter.util.GraphvizRenderer;
+import com.etsy.arbiter.util.InputFiles;
+import com.etsy.arbiter.util.YamlLoader;
+import com.etsy.arbiter.workflow.WorkflowGraph;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
 import org.apache.commons.cli.*;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Logger;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Entry point for Arbiter
@@ -36,9 +54,11 @@ import java.util.List;
  * @author Andrew Johnson
  */
 public class Arbiter {
+    private static final Logger LOG = Logger.getLogger(Arbiter.class);
+
     private Arbiter() { }
 
-    public static void main(String[] args) throws ParseException, ConfigurationException, IOException, ParserConfigurationException, TransformerException {
+    public static void main(String[] args) throws ParseException, ConfigurationException, IOException {
         Options options = getOptions();
 
         CommandLineParser cmd = new GnuParser();
@@ -48,54 +68,464 @@ public class Arbiter {
             printUsage(options);
         }
 
-        if (!parsed.hasOption("i")) {
+        if (parsed.hasOption("serve")) {
+            serve(parsed);
+            return;
+        }
+
+        if (!parsed.hasOption("i") && !parsed.hasOption("manifest")) {
             throw new ParseException("Missing required argument: i");
         }
 
-        if (!parsed.hasOption("o")) {
+        if (parsed.hasOption("dependency-report")) {
+            String[] inputFiles = InputFiles.expand(parsed.getOptionValues("i"), parsed.getOptionValue("manifest"));
+            Config merged = readConfiguration(parsed.getOptionValues("c"), parsed.getOptionValues("l"), new PhaseTimer());
+            printDependencyReport(merged, readWorkflowFiles(inputFiles));
+            return;
+        }
+
+        boolean compileOnly = parsed.hasOption("compile");
+        if (compileOnly && !parsed.hasOption("snapshot")) {
+            throw new ParseException("Missing required argument: snapshot");
+        }
+
+        if (!parsed.hasOption("o") && !compileOnly) {
             throw new ParseException("Missing required argument: o");
         }
 
         String[] configFiles = parsed.getOptionValues("c");
         String[] lowPrecedenceConfigFiles = parsed.getOptionValues("l");
 
-        String[] inputFiles = parsed.getOptionValues("i");
+        String[] inputFiles = InputFiles.expand(parsed.getOptionValues("i"), parsed.getOptionValue("manifest"));
         String outputDir = parsed.getOptionValue("o");
+        boolean archive = outputDir != null && OutputSinks.isArchive(outputDir);
+        if (OutputSinks.STANDARD_OUTPUT.equals(outputDir)) {
+            // The archive is streamed to standard output, so nothing else may be written there
+            logToStandardError();
+        }
+
+        boolean generateGraphviz = parsed.hasOption("g");
+        String graphvizFormat = parsed.getOptionValue("g", "svg");
+        int graphvizDepth = getGraphvizDepth(parsed);
+        int threads = getThreadCount(parsed);
+
+        boolean indentXml = !parsed.hasOption("compact-xml");
+        WorkflowGraphBuilder.Algorithm graphAlgorithm = getGraphAlgorithm(parsed);
+
+        if (parsed.hasOption("w")) {
+            if (archive) {
+                throw new ParseException("Watching requires an output directory rather than an archive");
+            }
+            WorkflowWatcher watcher = new WorkflowWatcher(configFiles, lowPrecedenceConfigFiles, inputFiles, outputDir, generateGraphviz, graphvizFormat, threads, indentXml, graphAlgorithm);
+            watcher.setGraphvizDepth(graphvizDepth);
+            watcher.watch();
+            return;
+        }
+
+        String metricsFile = parsed.getOptionValue("metrics");
+        GenerationMetrics metrics = new GenerationMetrics();
+        metrics.setOption("graphBuilder", graphAlgorithm.name().toLowerCase(Locale.ROOT));
+        metrics.setOption("threads", String.valueOf(threads));
+        metrics.setOption("graphviz", String.valueOf(generateGraphviz));
+        metrics.setOption("indentXml", String.valueOf(indentXml));
+        PhaseTimer timer = metrics.getTimer();
+
+        Config merged;
+        List<Workflow> allWorkflows = null;
+        if (parsed.hasOption("snapshot")) {
+            Snapshot snapshot = loadSnapshot(new File(parsed.getOptionValue("snapshot")), configFiles, lowPrecedenceConfigFiles, inputFiles, timer);
+            if (compileOnly) {
+                writeMetrics(metrics, metricsFile);
+                return;
+            }
+            merged = snapshot.getConfig();
+            allWorkflows = snapshot.getWorkflows();
+        } else {
+            merged = readConfiguration(configFiles, lowPrecedenceConfigFiles, timer);
+        }
+
+        // Workflows whose inputs haven't changed since they were last generated into this directory are skipped entirely
+        // An archive is written from scratch every time, so it always contains every workflow
+        timer.start(Phase.CHECK_CACHE);
+        BuildCache cache = null;
+        List<Integer> changedFiles = new ArrayList<>();
+        if (!parsed.hasOption("no-cache") && !archive) {
+            String fingerprint = BuildCache.fingerprint(merged, String.valueOf(generateGraphviz), graphvizFormat, String.valueOf(graphvizDepth), String.valueOf(indentXml), graphAlgorithm.name());
+            cache = BuildCache.load(new File(outputDir), fingerprint, generateGraphviz ? graphvizFormat : null);
+        }
+        for (int i = 0; i < inputFiles.length; i++) {
+            if (cache == null || !cache.isUpToDate(new File(inputFiles[i]))) {
+                changedFiles.add(i);
+            }
+        }
+        timer.stop();
+
+        // The cache records the hash of the content each workflow was generated from, so a file saved during generation is generated again
+        List<Workflow> workflows;
+        List<String> inputHashes = new ArrayList<>(changedFiles.size());
+        if (allWorkflows != null) {
+            workflows = new ArrayList<>(changedFiles.size());
+            for (int i : changedFiles) {
+                workflows.add(allWorkflows.get(i));
+                // The snapshot was checked against the content of every input file just before
+                if (cache != null) {
+                    inputHashes.add(cache.hashInput(new File(inputFiles[i])));
+                }
+            }
+        } else {
+            String[] toRead = new String[changedFiles.size()];
+            for (int i = 0; i < toRead.length; i++) {
+                toRead[i] = inputFiles[changedFiles.get(i)];
+            }
+            timer.start(Phase.PARSE_WORKFLOWS);
+            if (cache == null) {
+                workflows = readWorkflowFiles(toRead);
+            } else {
+                workflows = new ArrayList<>(toRead.length);
+                for (Pair<Workflow, HashCode> read : readWorkflowFiles(toRead, BuildCache.INPUT_HASH)) {
+                    workflows.add(read.getLeft());
+                    inputHashes.add(read.getRight().toString());
+                }
+            }
+            timer.stop();
+        }
+
+        ArbiterEngine engine = new ArbiterEngine.Builder()
+                .setConfig(merged)
+                .setIndentXml(indentXml)
+                .setGraphAlgorithm(graphAlgorithm)
+                .setGraphvizFormat(generateGraphviz ? graphvizFormat : null)
+                .setGraphvizDepth(graphvizDepth)
+                .setThreads(threads)
+                .setMetrics(metricsFile != null ? metrics : null)
+                .build();
+        timer.start(Phase.GENERATE);
+        GenerationResult result;
+        try (OutputSink sink = OutputSinks.open(outputDir)) {
+            result = engine.generate(workflows, sink);
+        }
+        timer.stop();
+
+        // Failed workflows are left out of the cache so that they are generated again next time
+        if (cache != null) {
+            timer.start(Phase.CHECK_CACHE);
+            for (int i = 0; i < workflows.size(); i++) {
+                if (result.getWorkflows().get(i).isSuccess()) {
+                    cache.update(new File(inputFiles[changedFiles.get(i)]), inputHashes.get(i), workflows.get(i).getName());
+                }
+            }
+            cache.save();
+            timer.stop();
+        }
+
+        writeMetrics(metrics, metricsFile);
+
+        if (!result.isSuccess()) {
+            for (GenerationResult.WorkflowResult failure : result.getFailures()) {
+                LOG.error("Unable to generate workflow " + failure.getName(), failure.getError());
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Serves workflow generation over HTTP until the process is stopped
+     *
+     * @param parsed The parsed command line
+     * @throws ParseException If the port or thread count are invalid
+     * @throws ConfigurationException If the configuration is invalid
+     * @throws IOException If the port cannot be bound
+     */
+    private static void serve(CommandLine parsed) throws ParseException, ConfigurationException, IOException {
+        String value = parsed.getOptionValue("serve");
+        int port;
+        try {
+            port = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for argument serve: " + value);
+        }
+        if (port < 0 || port > 65535) {
+            throw new ParseException("Invalid value for argument serve: " + value);
+        }
+
+        // Requests each generate a single workflow, so the thread count limits the number of requests handled at once
+        int concurrency = parsed.hasOption("t") ? getThreadCount(parsed) : Runtime.getRuntime().availableProcessors();
+        ArbiterEngine engine = new ArbiterEngine.Builder()
+                .setConfigFiles(parsed.getOptionValues("c"))
+                .setLowPrecedenceConfigFiles(parsed.getOptionValues("l"))
+                .setIndentXml(!parsed.hasOption("compact-xml"))
+                .setGraphAlgorithm(getGraphAlgorithm(parsed))
+                .setGraphvizDepth(getGraphvizDepth(parsed))
+                .build();
+
+        // The property is read when the first server is created, so it is only set here if it was not given explicitly
+        if (System.getProperty(WorkflowServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(WorkflowServer.NODELAY_PROPERTY, "true");
+        }
+        final WorkflowServer server = new WorkflowServer(engine, port, concurrency);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.close();
+            }
+        });
+        server.start();
 
+        try {
+            server.awaitClose();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends log messages written to the console to standard error instead of standard output
+     */
+    private static void logToStandardError() {
+        Enumeration<?> appenders = Logger.getRootLogger().getAllAppenders();
+        while (appenders.hasMoreElements()) {
+            Object appender = appenders.nextElement();
+            if (appender instanceof ConsoleAppender) {
+                ((ConsoleAppender) appender).setTarget(ConsoleAppender.SYSTEM_ERR);
+                ((ConsoleAppender) appender).activateOptions();
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics report if one was requested
+     *
+     * @param metrics The metrics for this run
+     * @param metricsFile The file to which to write the report, or null if no report was requested
+     * @throws IOException If the report cannot be written
+     */
+    private static void writeMetrics(GenerationMetrics metrics, String metricsFile) throws IOException {
+        if (metricsFile != null) {
+            metrics.write(new File(metricsFile));
+        }
+    }
+
+    /**
+     * Reads and merges the configuration files
+     *
+     * @param configFiles The configuration files
+     * @param lowPrecedenceConfigFiles The low-priority configuration files
+     * @param timer Records the time spent parsing and merging the configuration
+     * @return The merged configuration
+     * @throws ConfigurationException If the configuration is invalid
+     */
+    private static Config readConfiguration(String[] configFiles, String[] lowPrecedenceConfigFiles, PhaseTimer timer) throws ConfigurationException {
+        timer.start(Phase.PARSE_CONFIG);
         List<Config> parsedConfigFiles = readConfigFiles(configFiles, false);
         parsedConfigFiles.addAll(readConfigFiles(lowPrecedenceConfigFiles, true));
+        timer.stop();
+
+        timer.start(Phase.MERGE_CONFIG);
         Config merged = ConfigurationMerger.mergeConfiguration(parsedConfigFiles);
+        timer.stop();
 
-        List<Workflow> workflows = readWorkflowFiles(inputFiles);
+        return merged;
+    }
 
-        boolean generateGraphviz = parsed.hasOption("g");
-        String graphvizFormat = parsed.getOptionValue("g", "svg");
+    /**
+     * Loads the merged configuration and parsed workflows from a snapshot
+     * If the snapshot is missing or any source file has changed, the sources are read and the snapshot is rewritten
+     *
+     * @param file The snapshot file
+     * @param configFiles The configuration files
+     * @param lowPrecedenceConfigFiles The low-priority configuration files
+     * @param inputFiles The workflow definition files
+     * @param timer Records the time spent loading the snapshot and reading any changed sources
+     * @return A snapshot matching the current source files
+     * @throws IOException If the snapshot cannot be written
+     * @throws ConfigurationException If the configuration is invalid
+     */
+    private static Snapshot loadSnapshot(File file, String[] configFiles, String[] lowPrecedenceConfigFiles, String[] inputFiles, PhaseTimer timer) throws IOException, ConfigurationException {
+        timer.start(Phase.LOAD_SNAPSHOT);
+        try {
+            String fingerprint = Snapshot.sourceFingerprint(configFiles, lowPrecedenceConfigFiles, inputFiles);
+            Snapshot snapshot = Snapshot.load(file, fingerprint);
+            if (snapshot != null) {
+                return snapshot;
+            }
+
+            Config merged = readConfiguration(configFiles, lowPrecedenceConfigFiles, timer);
+            timer.start(Phase.PARSE_WORKFLOWS);
+            List<Workflow> workflows = readWorkflowFiles(inputFiles);
+            timer.stop();
+            snapshot = new Snapshot(fingerprint, merged, workflows);
+            snapshot.write(file);
 
-        OozieWorkflowGenerator generator = new OozieWorkflowGenerator(merged);
-        generator.generateOozieWorkflows(outputDir, workflows, generateGraphviz, graphvizFormat);
+            return snapshot;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Gets the number of workflows to generate concurrently
+     *
+     * @param parsed The parsed command line
+     * @return The number of threads to use, defaulting to 1 if unspecified
+     * @throws ParseException If the given value is not a positive integer
+     */
+    private static int getThreadCount(CommandLine parsed) throws ParseException {
+        if (!parsed.hasOption("t")) {
+            return 1;
+        }
+
+        String value = parsed.getOptionValue("t");
+        int threads;
+        try {
+            threads = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for argument t: " + value);
+        }
+
+        if (threads < 1) {
+            throw new ParseException("Invalid value for argument t: " + value);
+        }
+
+        return threads;
+    }
+
+    /**
+     * Gets the number of levels of nested fork/join regions to draw in full in Graphviz graphs
+     *
+     * @param parsed The parsed command line
+     * @return The depth to draw, defaulting to drawing every action if unspecified
+     * @throws ParseException If the given value is not a non-negative integer
+     */
+    private static int getGraphvizDepth(CommandLine parsed) throws ParseException {
+        if (!parsed.hasOption("graphviz-depth")) {
+            return GraphvizRenderer.UNLIMITED_DEPTH;
+        }
+
+        String value = parsed.getOptionValue("graphviz-depth");
+        int depth;
+        try {
+            depth = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value for argument graphviz-depth: " + value);
+        }
+
+        if (depth < 0) {
+            throw new ParseException("Invalid value for argument graphviz-depth: " + value);
+        }
+
+        return depth;
+    }
+
+    /**
+     * Prints a table of the false dependencies each algorithm adds to each workflow
+     * Exits with a non-zero status if any workflow is invalid
+     *
+     * @param config The merged configuration
+     * @param workflows The workflows to report on
+     */
+    private static void printDependencyReport(Config config, List<Workflow> workflows) {
+        WorkflowGraphBuilder.Algorithm[] algorithms = WorkflowGraphBuilder.Algorithm.values();
+        int nameWidth = "workflow".length();
+        for (Workflow workflow : workflows) {
+            nameWidth = Math.max(nameWidth, String.valueOf(workflow.getName()).length());
+        }
+
+        StringBuilder header = new StringBuilder(String.format(Locale.ROOT, "%-" + nameWidth + "s %10s", "workflow", "actions"));
+        for (WorkflowGraphBuilder.Algorithm algorithm : algorithms) {
+            header.append(String.format(Locale.ROOT, " %16s", algorithm.name().toLowerCase(Locale.ROOT)));
+        }
+        System.out.println(header);
+
+        boolean failed = false;
+        for (Workflow workflow : workflows) {
+            try {
+                int actions = workflow.getActions() == null ? 0 : workflow.getActions().size();
+                StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-" + nameWidth + "s %10d", workflow.getName(), actions));
+                for (WorkflowGraphBuilder.Algorithm algorithm : algorithms) {
+                    WorkflowGraph graph = WorkflowGraphBuilder.build(workflow, config, null, false, null, algorithm);
+                    row.append(String.format(Locale.ROOT, " %16d", WorkflowGraphBuilder.countFalseDependencies(workflow, graph)));
+                }
+                System.out.println(row);
+            } catch (WorkflowGraphException e) {
+                LOG.error("Unable to build workflow " + workflow.getName(), e);
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gets the algorithm to use for inserting fork/join pairs
+     *
+     * @param parsed The parsed command line
+     * @return The algorithm to use, defaulting to the recursive algorithm if unspecified
+     * @throws ParseException If the given value is not a known algorithm
+     */
+    private static WorkflowGraphBuilder.Algorithm getGraphAlgorithm(CommandLine parsed) throws ParseException {
+        String value = parsed.getOptionValue("graph-builder", "recursive");
+        try {
+            return WorkflowGraphBuilder.Algorithm.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid value for argument graph-builder: " + value);
+        }
+    }
+
+    /**
+     * Reads in a list of workflow files, reading files in parallel on as many threads as there are processors
+     *
+     * @param files The list of files to read
+     * @return A list of Workflow objects corresponding to the given files
+     * @throws InputFileException If any file cannot be read
+     */
+    public static List<Workflow> readWorkflowFiles(String[] files) throws InputFileException {
+        return readWorkflowFiles(files, Runtime.getRuntime().availableProcessors());
     }
 
     /**
      * Reads in a list of workflow files
      *
      * @param files The list of files to read
+     * @param threads The maximum number of files to read at once
      * @return A list of Workflow objects corresponding to the given files
+     * @throws InputFileException If any file cannot be read
      */
-    public static List<Workflow> readWorkflowFiles(String[] files) {
+    public static List<Workflow> readWorkflowFiles(String[] files, int threads) throws InputFileException {
         if (files == null) {
             return Lists.newArrayList();
         }
 
-        YamlReader<Workflow> reader = new YamlReader<>(Workflow.getYamlConstructor());
+        YamlLoader<Workflow> loader = new YamlLoader<>(Workflow.getYamlBinder(), threads);
 
-        ArrayList<Workflow> result = Lists.newArrayList();
+        return loader.read(toFiles(files));
+    }
 
-        for (String file : files) {
-            File f = new File(file);
-            result.add(reader.read(f));
-        }
+    /**
+     * Reads in a list of workflow files along with the hash of the content each was read from, reading files in parallel on as many threads as there are processors
+     *
+     * @param files The list of files to read
+     * @param hashFunction The function with which to hash the content of each file
+     * @return A Pair of the Workflow object corresponding to each given file and the hash of its content
+     * @throws InputFileException If any file cannot be read
+     */
+    private static List<Pair<Workflow, HashCode>> readWorkflowFiles(String[] files, HashFunction hashFunction) throws InputFileException {
+        YamlLoader<Workflow> loader = new YamlLoader<>(Workflow.getYamlBinder(), Runtime.getRuntime().availableProcessors());
 
-        return result;
+        return loader.read(toFiles(files), hashFunction);
+    }
+
+    /**
+     * Reads in a list of configuration files, reading files in parallel on as many threads as there are processors
+     *
+     * @param files The list of files to read
+     * @param lowPrecedence Whether or not these configurations should be marked as low-priority
+     * @return A List of Config objects corresponding to the given files
+     * @throws InputFileException If any file cannot be read
+     */
+    public static List<Config> readConfigFiles(String[] files, boolean lowPrecedence) throws InputFileException {
+        return readConfigFiles(files, lowPrecedence, Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -103,24 +533,30 @@ public class Arbiter {
      *
      * @param files The list of files to read
      * @param lowPrecedence Whether or not these configurations should be marked as low-priority
+     * @param threads The maximum number of files to read at once
      * @return A List of Config objects corresponding to the given files
+     * @throws InputFileException If any file cannot be read
      */
-    public static List<Config> readConfigFiles(String[] files, boolean lowPrecedence) {
+    public static List<Config> readConfigFiles(String[] files, boolean lowPrecedence, int threads) throws InputFileException {
         if (files == null) {
             return Lists.newArrayList();
         }
 
-        YamlReader<Config> reader = new YamlReader<>(Config.getYamlConstructor());
-        
-        ArrayList<Config> result = Lists.newArrayList();
-        
-        for (String file : files) {
-            File f = new File(file);
-            Config c = reader.read(f);
+        YamlLoader<Config> loader = new YamlLoader<>(Config.getYamlBinder(), threads);
+
+        List<Config> result = loader.read(toFiles(files));
+        for (Config c : result) {
             c.setLowPrecedence(lowPrecedence);
-            result.add(c);
         }
-        
+
+        return result;
+    }
+
+    private static List<File> toFiles(String[] files) {
+        List<File> result = new ArrayList<>(files.length);
+        for (String file : files) {
+            result.add(new File(file));
+        }
         return result;
     }
 
@@ -160,14 +596,21 @@ public class Arbiter {
                 .withArgName("input")
                 .withLongOpt("input")
                 .hasArgs()
-                .withDescription("Input Arbiter workflow file")
+                .withDescription("Input Arbiter workflow file, directory of workflow files or glob pattern")
                 .create("i");
 
+        Option manifest = OptionBuilder
+                .withArgName("file")
+                .withLongOpt("manifest")
+                .hasArg()
+                .withDescription("File listing further inputs, one per line")
+                .create();
+
         Option outputDir = OptionBuilder
                 .withArgName("output")
                 .withLongOpt("output")
                 .hasArg()
-                .withDescription("Output directory")
+                .withDescription("Output directory, .zip or .tar archive, or - to write a tar archive to standard output")
                 .create("o");
 
         Option help = OptionBuilder
@@ -183,13 +626,93 @@ public class Arbiter {
                 .withDescription("Generate the Graphviz DOT file and PNG")
                 .create("g");
 
+        Option graphvizDepth = OptionBuilder
+                .withArgName("depth")
+                .withLongOpt("graphviz-depth")
+                .hasArg()
+                .withDescription("Draw fork/join regions nested more deeply than this as a single node in Graphviz graphs")
+                .create();
+
+        Option threads = OptionBuilder
+                .withArgName("threads")
+                .withLongOpt("threads")
+                .hasArg()
+                .withDescription("Number of workflows to generate in parallel")
+                .create("t");
+
+        Option compactXml = OptionBuilder
+                .withLongOpt("compact-xml")
+                .withDescription("Write workflow XML without indentation")
+                .create();
+
+        Option noCache = OptionBuilder
+                .withLongOpt("no-cache")
+                .withDescription("Regenerate all workflows even if their inputs are unchanged")
+                .create();
+
+        Option watch = OptionBuilder
+                .withArgName("watch")
+                .withLongOpt("watch")
+                .withDescription("Keep running and regenerate workflows whenever their inputs change")
+                .create("w");
+
+        Option snapshot = OptionBuilder
+                .withArgName("file")
+                .withLongOpt("snapshot")
+                .hasArg()
+                .withDescription("Read the configuration and workflows from a compiled snapshot, recompiling it if any input has changed")
+                .create();
+
+        Option compile = OptionBuilder
+                .withLongOpt("compile")
+                .withDescription("Only compile the snapshot given by --snapshot, without generating workflows")
+                .create();
+
+        Option serve = OptionBuilder
+                .withArgName("port")
+                .withLongOpt("serve")
+                .hasArg()
+                .withDescription("Serve workflow generation over HTTP on the given port of localhost instead of generating workflows from files")
+                .create();
+
+        Option graphBuilder = OptionBuilder
+                .withArgName("algorithm")
+                .withLongOpt("graph-builder")
+                .hasArg()
+                .withDescription("Algorithm for inserting fork/join pairs, either recursive, layered or series_parallel")
+                .create();
+
+        Option dependencyReport = OptionBuilder
+                .withLongOpt("dependency-report")
+                .withDescription("Print the number of false dependencies each algorithm adds to each workflow instead of generating workflows")
+                .create();
+
+        Option metrics = OptionBuilder
+                .withArgName("file")
+                .withLongOpt("metrics")
+                .hasArg()
+                .withDescription("Write a JSON report of the time taken by each phase and each workflow to the given file")
+                .create();
+
         Options options = new Options();
         options.addOption(config)
                 .addOption(lowPrecedenceConfig)
                 .addOption(inputFile)
+                .addOption(manifest)
                 .addOption(outputDir)
                 .addOption(help)
-                .addOption(graphviz);
+                .addOption(graphviz)
+                .addOption(graphvizDepth)
+                .addOption(threads)
+                .addOption(compactXml)
+                .addOption(noCache)
+                .addOption(watch)
+                .addOption(snapshot)
+                .addOption(compile)
+                .addOption(serve)
+                .addOption(graphBuilder)
+                .addOption(dependencyReport)
+                .addOption(metrics);
 
         return options;
     }
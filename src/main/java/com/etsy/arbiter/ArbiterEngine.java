@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.config.ConfigurationMerger;
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.exception.InputFileException;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.etsy.arbiter.metrics.GenerationMetrics;
+import com.etsy.arbiter.metrics.PhaseTimer;
+import com.etsy.arbiter.output.OutputSink;
+import com.etsy.arbiter.util.GraphvizGenerator;
+import com.etsy.arbiter.util.GraphvizRenderer;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import com.google.common.base.Preconditions;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Generates Oozie workflows in-process, for embedding Arbiter in long-running tools such as build servers
+ *
+ * The configuration is read and merged once when the engine is built, after which the engine can generate any number of workflows.
+ * Workflows that cannot be generated are reported in the GenerationResult rather than thrown, and nothing ever exits the JVM.
+ * An engine cannot be changed once built and is safe to use from multiple threads
+ *
+ * @author Andrew Johnson
+ */
+public class ArbiterEngine {
+    private final Config config;
+    private final OozieWorkflowGenerator generator;
+    private final WorkflowGraphBuilder.Algorithm graphAlgorithm;
+    private final String graphvizFormat;
+    private final int graphvizDepth;
+    private final int threads;
+
+    private ArbiterEngine(Config config, Builder builder) {
+        this.config = config;
+        this.graphAlgorithm = builder.graphAlgorithm;
+        this.graphvizFormat = builder.graphvizFormat;
+        this.graphvizDepth = builder.graphvizDepth;
+        this.threads = builder.threads;
+        this.generator = new OozieWorkflowGenerator(config, builder.indentXml, builder.graphAlgorithm, builder.metrics);
+        this.generator.setGraphvizDepth(builder.graphvizDepth);
+    }
+
+    /**
+     * Gets the merged configuration used to generate workflows
+     *
+     * @return The merged configuration
+     */
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Generate Oozie workflows, writing them to an output sink
+     *
+     * @param workflows The workflows to generate
+     * @param sink The sink to which to write the workflows. The sink is not closed, so it may be shared between calls
+     * @return The outcome for each workflow, in the same order as the workflows
+     * @throws InterruptedIOException If interrupted while generating the workflows
+     */
+    public GenerationResult generate(List<Workflow> workflows, OutputSink sink) throws InterruptedIOException {
+        return generator.generateOozieWorkflows(sink, workflows, graphvizFormat != null, graphvizFormat, threads);
+    }
+
+    /**
+     * Write the Graphviz DOT graph of a workflow as it would be generated, without rendering it
+     * Fork/join regions are collapsed to the Graphviz depth of this engine
+     * The workflow is checked the same way as when it is generated, so a workflow that cannot be generated cannot be drawn either
+     *
+     * @param workflow The workflow to draw
+     * @param writer The writer to which to write the DOT graph. The writer is not closed
+     * @throws WorkflowGraphException If the workflow cannot be converted
+     * @throws ConfigurationException If the workflow uses an unknown action type
+     */
+    public void writeDot(Workflow workflow, Writer writer) throws WorkflowGraphException, ConfigurationException {
+        generator.checkActionTypes(workflow);
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = WorkflowGraphBuilder.build(workflow, config, null, null, null, graphAlgorithm, new PhaseTimer()).toDirectedAcyclicGraph();
+        if (graphvizDepth != GraphvizRenderer.UNLIMITED_DEPTH) {
+            graph = GraphvizGenerator.collapse(graph, graphvizDepth);
+        }
+        GraphvizGenerator.exportDot(graph, writer);
+    }
+
+    /**
+     * Builds an ArbiterEngine
+     * The configuration is either read from configuration files or given already merged
+     */
+    public static class Builder {
+        private String[] configFiles;
+        private String[] lowPrecedenceConfigFiles;
+        private Config config;
+        private boolean indentXml = true;
+        private WorkflowGraphBuilder.Algorithm graphAlgorithm = WorkflowGraphBuilder.Algorithm.RECURSIVE;
+        private String graphvizFormat;
+        private int graphvizDepth = GraphvizRenderer.UNLIMITED_DEPTH;
+        private int threads = 1;
+        private GenerationMetrics metrics;
+
+        /**
+         * @param configFiles The configuration files
+         * @return This builder
+         */
+        public Builder setConfigFiles(String... configFiles) {
+            this.configFiles = configFiles;
+            return this;
+        }
+
+        /**
+         * @param lowPrecedenceConfigFiles The low-priority configuration files
+         * @return This builder
+         */
+        public Builder setLowPrecedenceConfigFiles(String... lowPrecedenceConfigFiles) {
+            this.lowPrecedenceConfigFiles = lowPrecedenceConfigFiles;
+            return this;
+        }
+
+        /**
+         * Use a configuration that has already been merged instead of reading configuration files
+         *
+         * @param config The merged configuration
+         * @return This builder
+         */
+        public Builder setConfig(Config config) {
+            this.config = config;
+            return this;
+        }
+
+        /**
+         * @param indentXml Whether or not to indent the generated XML. Defaults to true
+         * @return This builder
+         */
+        public Builder setIndentXml(boolean indentXml) {
+            this.indentXml = indentXml;
+            return this;
+        }
+
+        /**
+         * @param graphAlgorithm The algorithm to use for inserting fork/join pairs. Defaults to the recursive algorithm
+         * @return This builder
+         */
+        public Builder setGraphAlgorithm(WorkflowGraphBuilder.Algorithm graphAlgorithm) {
+            this.graphAlgorithm = graphAlgorithm;
+            return this;
+        }
+
+        /**
+         * @param graphvizFormat The format in which to generate Graphviz graphs, or null to not generate graphs. Defaults to null
+         * @return This builder
+         */
+        public Builder setGraphvizFormat(String graphvizFormat) {
+            this.graphvizFormat = graphvizFormat;
+            return this;
+        }
+
+        /**
+         * @param graphvizDepth The number of levels of nested fork/join regions to draw in full in the Graphviz graphs
+         * @return This builder
+         */
+        public Builder setGraphvizDepth(int graphvizDepth) {
+            this.graphvizDepth = graphvizDepth;
+            return this;
+        }
+
+        /**
+         * @param threads The number of workflows to generate concurrently in each call to generate. Defaults to 1
+         * @return This builder
+         */
+        public Builder setThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param metrics Receives the time taken and size of each generated workflow. May be null
+         * @return This builder
+         */
+        public Builder setMetrics(GenerationMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Read the configuration and build the engine
+         *
+         * @return The engine
+         * @throws InputFileException If any configuration file cannot be read
+         * @throws ConfigurationException If the configuration is invalid
+         */
+        public ArbiterEngine build() throws InputFileException, ConfigurationException {
+            Preconditions.checkArgument(threads > 0, "Thread count must be positive");
+            Preconditions.checkArgument(config == null || (configFiles == null && lowPrecedenceConfigFiles == null), "Configuration files cannot be used with a merged configuration");
+
+            Config merged = config;
+            if (merged == null) {
+                List<Config> configs = Arbiter.readConfigFiles(configFiles, false);
+                configs.addAll(Arbiter.readConfigFiles(lowPrecedenceConfigFiles, true));
+                merged = ConfigurationMerger.mergeConfiguration(configs);
+            }
+
+            return new ArbiterEngine(merged, this);
+        }
+    }
+}
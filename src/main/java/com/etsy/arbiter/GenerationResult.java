@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of generating a set of workflows
+ * Each workflow succeeds or fails on its own, so one invalid workflow does not prevent the others from being generated
+ *
+ * @author Andrew Johnson
+ */
+public class GenerationResult {
+    private final List<WorkflowResult> workflows;
+
+    /**
+     * @param workflows The outcome for each workflow
+     */
+    public GenerationResult(List<WorkflowResult> workflows) {
+        this.workflows = Collections.unmodifiableList(new ArrayList<>(workflows));
+    }
+
+    /**
+     * Gets the outcome for each workflow, in the order in which the workflows were given
+     *
+     * @return The outcome for each workflow
+     */
+    public List<WorkflowResult> getWorkflows() {
+        return workflows;
+    }
+
+    /**
+     * Gets the workflows that could not be generated
+     *
+     * @return The failed workflows, in the order in which the workflows were given
+     */
+    public List<WorkflowResult> getFailures() {
+        List<WorkflowResult> failures = new ArrayList<>();
+        for (WorkflowResult workflow : workflows) {
+            if (!workflow.isSuccess()) {
+                failures.add(workflow);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return true if every workflow was generated
+     */
+    public boolean isSuccess() {
+        return getFailures().isEmpty();
+    }
+
+    /**
+     * The outcome of generating a single workflow
+     */
+    public static class WorkflowResult {
+        private final String name;
+        private final Throwable error;
+
+        private WorkflowResult(String name, Throwable error) {
+            this.name = name;
+            this.error = error;
+        }
+
+        /**
+         * @param name The name of the workflow
+         * @return The result for a workflow that was generated
+         */
+        public static WorkflowResult success(String name) {
+            return new WorkflowResult(name, null);
+        }
+
+        /**
+         * @param name The name of the workflow
+         * @param error The reason the workflow could not be generated
+         * @return The result for a workflow that could not be generated
+         */
+        public static WorkflowResult failure(String name, Throwable error) {
+            return new WorkflowResult(name, error);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The reason the workflow could not be generated, or null if it was generated
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return error == null ? name + ": generated" : name + ": " + error.getMessage();
+        }
+    }
+}
@@ -17,37 +17,35 @@
 package com.etsy.arbiter;
 
 import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.ActionTypeRegistry;
 import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.exception.ConfigurationException;
 import com.etsy.arbiter.exception.WorkflowGraphException;
-import com.etsy.arbiter.util.GraphvizGenerator;
+import com.etsy.arbiter.metrics.GenerationMetrics;
+import com.etsy.arbiter.metrics.Phase;
+import com.etsy.arbiter.metrics.PhaseTimer;
+import com.etsy.arbiter.metrics.WorkflowMetrics;
+import com.etsy.arbiter.output.DirectoryOutputSink;
+import com.etsy.arbiter.output.OutputEntry;
+import com.etsy.arbiter.output.OutputSink;
+import com.etsy.arbiter.util.GraphvizRenderer;
 import com.etsy.arbiter.util.NamedArgumentInterpolator;
+import com.etsy.arbiter.util.XmlWriter;
+import com.etsy.arbiter.workflow.WorkflowGraph;
 import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.log4j.Logger;
-import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.traverse.DepthFirstIterator;
-import org.w3c.dom.Document;
-import org.xembly.Directives;
-import org.xembly.ImpossibleModificationException;
-import org.xembly.Xembler;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Generates Oozie workflows from Arbiter workflows
@@ -56,14 +54,76 @@ import java.util.*;
  */
 public class OozieWorkflowGenerator {
     private static final Logger LOG = Logger.getLogger(OozieWorkflowGenerator.class);
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("YYYY-MM-dd HH:mm:ss");
+    // SimpleDateFormat is not thread-safe, so a new one is created for each run
+    private static final String DATE_FORMAT = "YYYY-MM-dd HH:mm:ss";
+
+    // The autogenerated comment includes the generation time, so it is ignored when checking whether a workflow has changed
+    private static final Predicate<String> IS_HEADER_COMMENT = new Predicate<String>() {
+        @Override
+        public boolean apply(String input) {
+            return input.startsWith("<!-- ") && input.contains(" workflow autogenerated by Arbiter on ");
+        }
+    };
 
     private Config config;
-    private Map<String, ActionType> actionTypeCache;
+    private ActionTypeRegistry actionTypes;
+
+    private boolean indentXml;
+    private WorkflowGraphBuilder.Algorithm graphAlgorithm;
+    private GenerationMetrics metrics;
+    private int graphvizDepth = GraphvizRenderer.UNLIMITED_DEPTH;
+
+    // XMLOutputFactory is not guaranteed to be thread-safe, so each worker thread gets its own
+    private ThreadLocal<XMLOutputFactory> xmlOutputFactory = new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+            return XMLOutputFactory.newInstance();
+        }
+    };
 
     public OozieWorkflowGenerator(Config config) {
+        this(config, true);
+    }
+
+    /**
+     * @param config The merged configuration
+     * @param indentXml Whether or not to indent the generated XML. Compact output is smaller and faster to produce
+     */
+    public OozieWorkflowGenerator(Config config, boolean indentXml) {
+        this(config, indentXml, WorkflowGraphBuilder.Algorithm.RECURSIVE);
+    }
+
+    /**
+     * @param config The merged configuration
+     * @param indentXml Whether or not to indent the generated XML. Compact output is smaller and faster to produce
+     * @param graphAlgorithm The algorithm to use for inserting fork/join pairs
+     */
+    public OozieWorkflowGenerator(Config config, boolean indentXml, WorkflowGraphBuilder.Algorithm graphAlgorithm) {
+        this(config, indentXml, graphAlgorithm, null);
+    }
+
+    /**
+     * @param config The merged configuration
+     * @param indentXml Whether or not to indent the generated XML. Compact output is smaller and faster to produce
+     * @param graphAlgorithm The algorithm to use for inserting fork/join pairs
+     * @param metrics Receives the time taken and size of each generated workflow. May be null
+     */
+    public OozieWorkflowGenerator(Config config, boolean indentXml, WorkflowGraphBuilder.Algorithm graphAlgorithm, GenerationMetrics metrics) {
         this.config = config;
-        actionTypeCache = new HashMap<>();
+        this.indentXml = indentXml;
+        this.graphAlgorithm = graphAlgorithm;
+        this.metrics = metrics;
+        this.actionTypes = config.getActionTypeRegistry();
+    }
+
+    /**
+     * Limit the depth of the fork/join regions drawn in the Graphviz graphs
+     * Regions nested more deeply are drawn as a single node, which keeps the graphs of huge workflows readable
+     *
+     * @param graphvizDepth The number of levels of nested fork/join regions to draw in full, or GraphvizRenderer.UNLIMITED_DEPTH to draw every action
+     */
+    public void setGraphvizDepth(int graphvizDepth) {
+        this.graphvizDepth = graphvizDepth;
     }
 
     /**
@@ -73,214 +133,364 @@ public class OozieWorkflowGenerator {
      * @param workflows The workflows to convert
      * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
      * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @throws WorkflowGraphException If any workflow cannot be converted
+     * @throws ConfigurationException If any workflow uses an unknown action type
+     */
+    public void generateOozieWorkflows(String outputBase, List<Workflow> workflows, boolean generateGraphviz, String graphvizFormat) throws IOException, WorkflowGraphException, ConfigurationException {
+        generateOozieWorkflows(outputBase, workflows, generateGraphviz, graphvizFormat, 1);
+    }
+
+    /**
+     * Generate Oozie workflows from Arbiter workflows, converting independent workflows in parallel
+     * The output is identical to that produced by converting the workflows one at a time
+     * Every workflow is attempted even if another fails, and the first failure is then thrown
+     *
+     * @param outputBase The directory in which to output the Oozie workflows
+     * @param workflows The workflows to convert
+     * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
+     * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @param threads The number of workflows to convert concurrently
+     * @throws WorkflowGraphException If any workflow cannot be converted
+     * @throws ConfigurationException If any workflow uses an unknown action type
      */
-    public void generateOozieWorkflows(String outputBase, List<Workflow> workflows, boolean generateGraphviz, String graphvizFormat) throws IOException, ParserConfigurationException, TransformerException {
-        File outputBaseFile = new File(outputBase);
-        FileUtils.forceMkdir(outputBaseFile);
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        Date currentDate = new Date();
-        String currentDateString = DATE_FORMAT.format(currentDate);
-
-        for (Workflow workflow : workflows) {
-            String outputDir = outputBase + "/" + workflow.getName();
-            File outputDirFile = new File(outputDir);
-            FileUtils.forceMkdir(outputDirFile);
-            DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph = null;
-
-            try {
-                workflowGraph = WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, outputDir, generateGraphviz, graphvizFormat);
-            } catch (WorkflowGraphException w) {
-                LOG.error("Unable to generate workflow", w);
-                System.exit(1);
+    public void generateOozieWorkflows(String outputBase, List<Workflow> workflows, boolean generateGraphviz, String graphvizFormat, int threads) throws IOException, WorkflowGraphException, ConfigurationException {
+        GenerationResult result = generateOozieWorkflows(new DirectoryOutputSink(new File(outputBase)), workflows, generateGraphviz, graphvizFormat, threads);
+
+        List<GenerationResult.WorkflowResult> failures = result.getFailures();
+        if (!failures.isEmpty()) {
+            Throwable error = failures.get(0).getError();
+            Throwables.propagateIfInstanceOf(error, WorkflowGraphException.class);
+            Throwables.propagateIfInstanceOf(error, ConfigurationException.class);
+            Throwables.propagateIfInstanceOf(error, IOException.class);
+            throw Throwables.propagate(error);
+        }
+    }
+
+    /**
+     * Generate Oozie workflows from Arbiter workflows, writing them to an output sink
+     * A workflow that cannot be converted is reported in the result rather than thrown, and the other workflows are still generated
+     * Graphviz graphs are written into the same sink, and have all been written by the time this returns
+     *
+     * @param sink The sink to which to write the Oozie workflows. The sink is not closed
+     * @param workflows The workflows to convert
+     * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
+     * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @param threads The number of workflows to convert concurrently
+     * @return The outcome for each workflow, in the same order as the workflows
+     * @throws InterruptedIOException If interrupted while generating the workflows
+     */
+    public GenerationResult generateOozieWorkflows(OutputSink sink, List<Workflow> workflows, boolean generateGraphviz, String graphvizFormat, int threads) throws InterruptedIOException {
+        Preconditions.checkArgument(threads > 0, "Thread count must be positive");
+        String currentDateString = new SimpleDateFormat(DATE_FORMAT).format(new Date());
+
+        // Graphs are rendered in the background while the workflows are generated, and waited for at the end
+        GraphvizRenderer graphviz = null;
+        if (generateGraphviz) {
+            graphviz = new GraphvizRenderer(graphvizFormat, Runtime.getRuntime().availableProcessors(), graphvizDepth);
+        }
+        try {
+            GenerationResult result = generateOozieWorkflows(sink, workflows, graphviz, currentDateString, threads);
+
+            if (graphviz != null) {
+                // The run's timer may not be shared between threads, and an engine may generate on several at once
+                PhaseTimer timer = new PhaseTimer();
+                timer.start(Phase.RENDER_GRAPHVIZ);
+                graphviz.awaitRenders();
+                timer.stop();
+                if (metrics != null) {
+                    metrics.addPhaseNanos(Phase.RENDER_GRAPHVIZ, timer.getNanos(Phase.RENDER_GRAPHVIZ));
+                }
+            }
+
+            return result;
+        } finally {
+            if (graphviz != null) {
+                graphviz.close();
+            }
+        }
+    }
+
+    /**
+     * Generate Oozie workflows from Arbiter workflows, converting independent workflows in parallel
+     *
+     * @param sink The sink to which to write the Oozie workflows
+     * @param workflows The workflows to convert
+     * @param graphviz Renders the Graphviz graphs for the workflows into the sink, or null if no graphs should be generated
+     * @param currentDateString A string representation of the current date, used in a comment in the output files
+     * @param threads The number of workflows to convert concurrently
+     * @return The outcome for each workflow, in the same order as the workflows
+     * @throws InterruptedIOException If interrupted while waiting for the workflows to be converted
+     */
+    private GenerationResult generateOozieWorkflows(final OutputSink sink, final List<Workflow> workflows, final GraphvizRenderer graphviz, final String currentDateString, int threads) throws InterruptedIOException {
+        GenerationResult.WorkflowResult[] results = new GenerationResult.WorkflowResult[workflows.size()];
+        if (threads == 1 || workflows.size() <= 1) {
+            for (int i = 0; i < workflows.size(); i++) {
+                results[i] = tryGenerateOozieWorkflow(sink, workflows.get(i), graphviz, currentDateString);
             }
+            return new GenerationResult(Arrays.asList(results));
+        }
 
-            if (generateGraphviz) {
-                GraphvizGenerator.generateGraphviz(workflowGraph, outputDir + "/" + workflow.getName() + ".dot", graphvizFormat);
+        // Start the largest workflows first so a big workflow picked up late doesn't leave the other threads idle at the end
+        List<Integer> scheduled = new ArrayList<>(workflows.size());
+        for (int i = 0; i < workflows.size(); i++) {
+            scheduled.add(i);
+        }
+        Collections.sort(scheduled, new WorkflowSizeComparator(workflows));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, scheduled.size()));
+        try {
+            List<Future<GenerationResult.WorkflowResult>> futures = new ArrayList<>(scheduled.size());
+            for (final int i : scheduled) {
+                futures.add(executor.submit(new Callable<GenerationResult.WorkflowResult>() {
+                    @Override
+                    public GenerationResult.WorkflowResult call() {
+                        return tryGenerateOozieWorkflow(sink, workflows.get(i), graphviz, currentDateString);
+                    }
+                }));
             }
 
-            Document xmlDoc = builder.newDocument();
-
-            Directives directives = new Directives();
-            createRootElement(workflow.getName(), directives);
-
-            Action kill = getActionByType(workflowGraph, "kill");
-            Action end = getActionByType(workflowGraph, "end");
-            Action start = getActionByType(workflowGraph, "start");
-            Action errorHandler = workflow.getErrorHandler();
-            Action finalTransition = kill == null ? end : kill;
-
-            Action errorTransition = errorHandler == null ? (kill == null ? end : kill) : errorHandler;
-            DepthFirstIterator<Action, DefaultEdge> iterator = new DepthFirstIterator<>(workflowGraph, start);
-
-            while (iterator.hasNext()) {
-                Action a = iterator.next();
-                Action transition = getTransition(workflowGraph, a);
-                switch (a.getType()) {
-                    case "start":
-                        if (transition == null) {
-                            throw new RuntimeException("No transition found for start action");
-                        }
-                        directives.add("start")
-                                .attr("to", transition.getName())
-                                .up();
-                        break;
-                    case "end":
-                        // Skip and add at the end
-                        break;
-                    case "fork":
-                        directives.add("fork")
-                                .attr("name", a.getName());
-                        for (DefaultEdge edge : workflowGraph.outgoingEdgesOf(a)) {
-                            Action target = workflowGraph.getEdgeTarget(edge);
-                            directives.add("path")
-                                    .attr("start", target.getName())
-                                    .up();
-                        }
-                        directives.up();
-                        break;
-                    case "join":
-                        if (transition == null) {
-                            throw new RuntimeException(String.format("No transition found for join action %s", a.getName()));
-                        }
-                        directives.add("join")
-                                .attr("name", a.getName())
-                                .attr("to", transition.getName())
-                                .up();
-                        break;
-                    default:
-                        createActionElement(a, workflowGraph, transition, a.equals(errorHandler) ? finalTransition : errorTransition, directives);
-                        directives.up();
-                        break;
+            for (int i = 0; i < scheduled.size(); i++) {
+                try {
+                    results[scheduled.get(i)] = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while generating workflows");
+                } catch (ExecutionException e) {
+                    // Failures in the workflow itself are already part of the result, so anything else is unexpected
+                    throw Throwables.propagate(e.getCause());
                 }
             }
-            if (kill != null) {
-                directives.add("kill")
-                        .attr("name", kill.getName())
-                        .add("message")
-                        .set(kill.getNamedArgs().get("message"))
-                        .up()
-                        .up();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new GenerationResult(Arrays.asList(results));
+    }
+
+    /**
+     * Generate a single Oozie workflow, recording any failure rather than throwing it
+     *
+     * @param sink The sink to which to write the Oozie workflow
+     * @param workflow The workflow to convert
+     * @param graphviz Renders the Graphviz graphs for the workflow into the sink, or null if no graphs should be generated
+     * @param currentDateString A string representation of the current date, used in a comment in the output file
+     * @return The outcome for the workflow
+     */
+    private GenerationResult.WorkflowResult tryGenerateOozieWorkflow(OutputSink sink, Workflow workflow, GraphvizRenderer graphviz, String currentDateString) {
+        try {
+            generateOozieWorkflow(sink, workflow, graphviz, currentDateString);
+            return GenerationResult.WorkflowResult.success(workflow.getName());
+        } catch (IOException | WorkflowGraphException | ConfigurationException | RuntimeException e) {
+            return GenerationResult.WorkflowResult.failure(workflow.getName(), e);
+        }
+    }
+
+    /**
+     * Generate a single Oozie workflow from an Arbiter workflow
+     * This is safe to call concurrently for different workflows
+     *
+     * @param sink The sink to which to write the Oozie workflow
+     * @param workflow The workflow to convert
+     * @param graphviz Renders the Graphviz graphs for the workflow into the sink, or null if no graphs should be generated
+     * @param currentDateString A string representation of the current date, used in a comment in the output file
+     * @throws WorkflowGraphException
+     * @throws ConfigurationException If the workflow uses an unknown action type
+     */
+    private void generateOozieWorkflow(OutputSink sink, Workflow workflow, GraphvizRenderer graphviz, String currentDateString) throws IOException, WorkflowGraphException, ConfigurationException {
+        WorkflowMetrics workflowMetrics = metrics != null ? metrics.newWorkflow(workflow.getName()) : new WorkflowMetrics(workflow.getName());
+        PhaseTimer timer = workflowMetrics.getTimer();
+        checkActionTypes(workflow);
+
+        // Graphs are written alongside the workflow
+        String outputDir = workflow.getName();
+        timer.start(Phase.BUILD_GRAPH);
+        WorkflowGraph workflowGraph = WorkflowGraphBuilder.build(workflow, config, sink, outputDir, graphviz, graphAlgorithm, timer);
+        timer.stop();
+
+        if (graphviz != null) {
+            timer.start(Phase.GRAPHVIZ);
+            graphviz.render(workflowGraph.toDirectedAcyclicGraph(), sink, outputDir + "/" + workflow.getName() + ".dot");
+            timer.stop();
+        }
+
+        // The workflow is only replaced if it has changed, so that unchanged workflows keep their modification time
+        OutputEntry output = sink.create(outputDir + "/workflow.xml", IS_HEADER_COMMENT);
+        CountingOutputStream counter = new CountingOutputStream(output.getStream());
+        try {
+            timer.start(Phase.WRITE_XML);
+            try (XmlWriter xml = new XmlWriter(counter, xmlOutputFactory.get(), indentXml)) {
+                // We want a comment indicating that this file is autogenerated as the first line
+                xml.comment(String.format(" %s workflow autogenerated by Arbiter on %s ", workflow.getName(), currentDateString));
+                writeWorkflow(workflow, workflowGraph, xml);
+            } catch (XMLStreamException e) {
+                throw new IOException("Unable to write workflow " + workflow.getName(), e);
             }
-            if (end != null) {
-                directives.add("end")
-                        .attr("name", end.getName())
-                        .up();
+            timer.stop();
+
+            timer.start(Phase.WRITE_FILE);
+            if (!output.commit()) {
+                LOG.debug(String.format("Workflow %s is unchanged", workflow.getName()));
+            }
+            timer.stop();
+        } finally {
+            output.discard();
+        }
+
+        if (metrics != null) {
+            recordSize(workflowGraph, workflowMetrics);
+            workflowMetrics.setOutputBytes(counter.getByteCount());
+            workflowMetrics.finish();
+            metrics.add(workflowMetrics);
+        }
+    }
+
+    /**
+     * Record the number of actions, edges and fork/join pairs in a workflow graph
+     *
+     * @param workflowGraph The workflow graph
+     * @param workflowMetrics The metrics for the workflow
+     */
+    private void recordSize(WorkflowGraph workflowGraph, WorkflowMetrics workflowMetrics) {
+        int actions = 0;
+        int forks = 0;
+        for (int i = 0; i < workflowGraph.size(); i++) {
+            switch (workflowGraph.getAction(i).getType()) {
+                case "fork":
+                    forks++;
+                    break;
+                case "start":
+                case "end":
+                case "kill":
+                case "join":
+                    break;
+                default:
+                    actions++;
+                    break;
             }
+        }
+
+        workflowMetrics.setActions(actions);
+        workflowMetrics.setForks(forks);
+        workflowMetrics.setEdges(workflowGraph.getEdgeCount());
+    }
 
-            try {
-                new Xembler(directives).apply(xmlDoc);
-            } catch (ImpossibleModificationException e) {
-                throw new RuntimeException(e);
+    /**
+     * Write the XML for a workflow
+     *
+     * @param workflow The Arbiter workflow
+     * @param workflowGraph The workflow graph built from the Arbiter workflow
+     * @param xml The writer to which to write the XML elements
+     * @throws XMLStreamException
+     */
+    private void writeWorkflow(Workflow workflow, WorkflowGraph workflowGraph, XmlWriter xml) throws XMLStreamException {
+        createRootElement(workflow.getName(), xml);
+
+        Action kill = getAction(workflowGraph, workflowGraph.getKill());
+        Action end = getAction(workflowGraph, workflowGraph.getEnd());
+        Action errorHandler = workflow.getErrorHandler();
+        Action finalTransition = kill == null ? end : kill;
+
+        Action errorTransition = errorHandler == null ? (kill == null ? end : kill) : errorHandler;
+
+        for (int i : workflowGraph.getDepthFirstOrder(workflowGraph.getStart())) {
+            Action a = workflowGraph.getAction(i);
+            Action transition = getTransition(workflowGraph, i);
+            switch (a.getType()) {
+                case "start":
+                    if (transition == null) {
+                        throw new RuntimeException("No transition found for start action");
+                    }
+                    xml.emptyElement("start")
+                            .attribute("to", transition.getName());
+                    break;
+                case "end":
+                    // Skip and add at the end
+                    break;
+                case "fork":
+                    xml.startElement("fork")
+                            .attribute("name", a.getName());
+                    for (int path = 0; path < workflowGraph.getOutDegree(i); path++) {
+                        Action target = workflowGraph.getAction(workflowGraph.getSuccessor(i, path));
+                        xml.emptyElement("path")
+                                .attribute("start", target.getName());
+                    }
+                    xml.endElement();
+                    break;
+                case "join":
+                    if (transition == null) {
+                        throw new RuntimeException(String.format("No transition found for join action %s", a.getName()));
+                    }
+                    xml.emptyElement("join")
+                            .attribute("name", a.getName())
+                            .attribute("to", transition.getName());
+                    break;
+                default:
+                    createActionElement(workflowGraph, i, transition, a.equals(errorHandler) ? finalTransition : errorTransition, xml);
+                    break;
             }
-            writeDocument(outputDirFile, xmlDoc, transformer, workflow.getName(), currentDateString);
         }
+        if (kill != null) {
+            xml.startElement("kill")
+                    .attribute("name", kill.getName())
+                    .textElement("message", kill.getNamedArgs().get("message"))
+                    .endElement();
+        }
+        if (end != null) {
+            xml.emptyElement("end")
+                    .attribute("name", end.getName());
+        }
+        xml.endElement();
     }
 
     /**
      * Add the XML element for an action
      *
-     * @param action The action for which to add the element
      * @param workflowGraph The full workflow graph
+     * @param index The number of the action in the workflow graph
      * @param transition The OK transition for this action
      * @param errorTransition The error transition for this action if it is not inside a fork/join pair
-     * @param directives The Xembly Directives object to which to add the new XML elements
+     * @param xml The writer to which to add the new XML elements
+     * @throws XMLStreamException
      */
-    private void createActionElement(Action action, DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph, Action transition, Action errorTransition, Directives directives) {
-        ActionType type = getActionType(action.getType());
+    private void createActionElement(WorkflowGraph workflowGraph, int index, Action transition, Action errorTransition, XmlWriter xml) throws XMLStreamException {
+        Action action = workflowGraph.getAction(index);
+        ActionType type = actionTypes.find(action.getType());
 
-        directives.add("action")
-                .attr("name", action.getName())
-                .add(type.getTag());
+        xml.startElement("action")
+                .attribute("name", action.getName())
+                .startElement(type.getTag());
 
         if (type.getXmlns() != null) {
-            directives.attr("xmlns", type.getXmlns());
+            xml.defaultNamespace(type.getXmlns());
         }
 
         // There is an outer action tag and an inner tag corresponding to the action type
-        Map<String, List<String>> interpolated = NamedArgumentInterpolator.interpolate(type.getDefaultArgs(), action.getNamedArgs(), type.getDefaultInterpolations(), action.getPositionalArgs());
+        // Positional args spliced into the default args by list interpolation are not repeated on their own
+        Set<String> splicedKeys = new HashSet<>();
+        Map<String, List<String>> interpolated = type.getDefaultArgTemplates().render(action.getNamedArgs(), type.getDefaultInterpolations(), action.getPositionalArgs(), splicedKeys);
         Map<String, String> mergedConfigurationProperties = new HashMap<>(type.getProperties());
         if (action.getConfigurationProperties() != null) {
             mergedConfigurationProperties.putAll(action.getConfigurationProperties());
         }
-        addInnerActionElements(mergedConfigurationProperties, type.getConfigurationPosition(), directives, interpolated, action.getPositionalArgs());
-        directives.up();
+        addInnerActionElements(mergedConfigurationProperties, type.getConfigurationPosition(), xml, interpolated, action.getPositionalArgs(), splicedKeys);
+        xml.endElement();
 
         String okTransitionName = action.getForceOk() != null ? action.getForceOk() : transition.getName();
-        directives.add("ok")
-                .attr("to", okTransitionName)
-                .up();
+        xml.emptyElement("ok")
+                .attribute("to", okTransitionName);
 
         // We allow forcing a particular error transition regardless of other considerations
         String interpolatedForceError = NamedArgumentInterpolator.interpolate(action.getForceError(), ImmutableMap.of("okTransition", okTransitionName), type.getDefaultInterpolations());
         String errorTransitionName = interpolatedForceError != null ? interpolatedForceError : errorTransition.getName();
         // Find the enclosing fork/join pair
         // If an action is inside a fork/join, it should transition to the join on error
-        String enclosingJoinName = getEnclosingForkJoinName(action, workflowGraph);
-        if (enclosingJoinName != null) {
-            errorTransitionName = interpolatedForceError != null ? interpolatedForceError : enclosingJoinName;
-        }
-        directives.add("error")
-                .attr("to", errorTransitionName)
-                .up();
-    }
-
-    /**
-     * Finds the enclosing fork/join pair for an action
-     * This is used to set the error transition for nodes inside a fork/join
-     *
-     * @param action The action for which to find the enclosing fork/join pair
-     * @param workflowGraph The graph in which to find the enclosing fork/join pair
-     * @return The name of the join for the fork/join pair enclosing the given action, or null if the action is not inside a fork/join
-     */
-    private String getEnclosingForkJoinName(Action action, DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph) {
-        List<String> forks = new ArrayList<>();
-        List<String> joins = new ArrayList<>();
-
-        // If the action has no incoming or outgoing edges, it is definitely not inside a fork/join
-        if (workflowGraph.inDegreeOf(action) == 0) {
-            return null;
-        }
-
-        if (workflowGraph.outDegreeOf(action) == 0) {
-            return null;
-        }
-
-        // First we traverse backwards from the given action, recording all the forks we see
-        Action curr = action;
-        while (workflowGraph.inDegreeOf(curr) > 0) {
-            DefaultEdge incoming = Lists.newArrayList(workflowGraph.incomingEdgesOf(curr)).get(0);
-            curr = workflowGraph.getEdgeSource(incoming);
-            if (curr.getType().equals("fork")) {
-                forks.add(curr.getName());
-            }
-        }
-
-        // Then we traverse forwards from the given action, recording all the joins we see
-        curr = action;
-        while (workflowGraph.outDegreeOf(curr) > 0) {
-            DefaultEdge outgoing = Lists.newArrayList(workflowGraph.outgoingEdgesOf(curr)).get(0);
-            curr = workflowGraph.getEdgeTarget(outgoing);
-            if (curr.getType().equals("join")) {
-                joins.add(curr.getName());
-            }
-        }
-
-        // At this point we have a list of all the forks before to the given action and all the joins after the given action
-        // The first fork in this list where the corresponding join was also seen is the correct enclosing fork/join
-        for (String fork : forks) {
-            String joinName = fork.replace("fork", "join");
-            if (joins.contains(joinName)) {
-                return joinName;
-            }
+        int enclosingJoin = workflowGraph.getEnclosingJoin(index);
+        if (enclosingJoin != WorkflowGraph.NONE) {
+            errorTransitionName = interpolatedForceError != null ? interpolatedForceError : workflowGraph.getAction(enclosingJoin).getName();
         }
-
-        // If there are no matching fork/join pairs, then this action is not inside a fork/join pair
-        return null;
+        xml.emptyElement("error")
+                .attribute("to", errorTransitionName);
+        xml.endElement();
     }
 
     /**
@@ -288,28 +498,34 @@ public class OozieWorkflowGenerator {
      *
      * @param properties The configuration properties for this action
      * @param configurationPosition The position within the tag where the configuration should be placed
-     * @param directives The Xembly Directives object to which to add the new XML elements
+     * @param xml The writer to which to add the new XML elements
      * @param interpolated Interpolated arguments from the YAML workflow definition
      * @param positional Positional arguments from the YAML workflow definition
+     * @param splicedKeys Keys of positional arguments that have already been added to the interpolated arguments
+     * @throws XMLStreamException
      */
-    private void addInnerActionElements(Map<String, String> properties, int configurationPosition, Directives directives, Map<String, List<String>> interpolated, Map<String, List<String>> positional) {
+    private void addInnerActionElements(Map<String, String> properties, int configurationPosition, XmlWriter xml, Map<String, List<String>> interpolated, Map<String, List<String>> positional, Set<String> splicedKeys) throws XMLStreamException {
         List<Map.Entry<String, List<String>>> entries = new ArrayList<>();
         if (interpolated != null) {
             entries.addAll(interpolated.entrySet());
         }
         if (positional != null) {
-            entries.addAll(positional.entrySet());
+            for (Map.Entry<String, List<String>> entry : positional.entrySet()) {
+                if (!splicedKeys.contains(entry.getKey())) {
+                    entries.add(entry);
+                }
+            }
         }
 
         for (int i = 0; i < entries.size(); i++) {
             if (configurationPosition == i) {
-                createConfigurationElement(properties, directives);
+                createConfigurationElement(properties, xml);
             }
-            addKeyMultiValueElements(entries.get(i), directives);
+            addKeyMultiValueElements(entries.get(i), xml);
         }
 
         if (entries.size() < configurationPosition) {
-            createConfigurationElement(properties, directives);
+            createConfigurationElement(properties, xml);
         }
     }
 
@@ -317,26 +533,23 @@ public class OozieWorkflowGenerator {
      * Add the configuration element for a workflow action
      *
      * @param properties The configuration properties
-     * @param directives The Xembly Directives object to which to add the new XML elements
+     * @param xml The writer to which to add the new XML elements
+     * @throws XMLStreamException
      */
-    private void createConfigurationElement(Map<String, String> properties, Directives directives) {
+    private void createConfigurationElement(Map<String, String> properties, XmlWriter xml) throws XMLStreamException {
         if (properties == null) {
             return;
         }
 
-        directives.add("configuration");
+        xml.startElement("configuration");
 
         for (Map.Entry<String, String> entry : properties.entrySet()) {
-            directives.add("property")
-                    .add("name")
-                    .set(entry.getKey())
-                    .up()
-                    .add("value")
-                    .set(entry.getValue())
-                    .up()
-                    .up();
-        }
-        directives.up();
+            xml.startElement("property")
+                    .textElement("name", entry.getKey())
+                    .textElement("value", entry.getValue())
+                    .endElement();
+        }
+        xml.endElement();
     }
 
     /**
@@ -344,93 +557,60 @@ public class OozieWorkflowGenerator {
      * An example of this is the arg tag
      *
      * @param entry A mapping of key to a list of values
-     * @param directives The Xembly Directives object to which to add the new XML elements
+     * @param xml The writer to which to add the new XML elements
+     * @throws XMLStreamException
      */
-    private void addKeyMultiValueElements(Map.Entry<String, List<String>> entry, Directives directives) {
+    private void addKeyMultiValueElements(Map.Entry<String, List<String>> entry, XmlWriter xml) throws XMLStreamException {
         for (String value : entry.getValue()) {
-            directives.add(entry.getKey())
-                    .set(value)
-                    .up();
+            xml.textElement(entry.getKey(), value);
         }
     }
 
     /**
-     * Get the ActionType configuration from a type name
-     * This caches the results to avoid searching the whole configuration repeatedly
+     * Check that every action in a workflow has a known type
+     * This is done before anything is written so that an invalid workflow fails without producing any output
      *
-     * @param type The name of the action type for which to retrieve the configuration
-     * @return An ActionType object representing the configuration for the given action type
+     * @param workflow The workflow to check
+     * @throws ConfigurationException If any action has an unknown type
      */
-    private ActionType getActionType(String type) {
-        ActionType result = actionTypeCache.get(type);
-        if (result == null) {
-            result = config.getActionTypeByName(type);
-            actionTypeCache.put(type, result);
+    void checkActionTypes(Workflow workflow) throws ConfigurationException {
+        List<Action> actions = new ArrayList<>();
+        if (workflow.getActions() != null) {
+            actions.addAll(workflow.getActions());
+        }
+        if (workflow.getErrorHandler() != null) {
+            actions.add(workflow.getErrorHandler());
         }
 
-        return result;
-    }
-
-    /**
-     * Write an XML document to a file
-     *
-     * @param outputDir The output directory for the XML file. This directory must exist before this method is called
-     * @param xmlDoc The document to write out
-     * @param transformer The XML transformer used to produce the output
-     * @param name The name of the workflow
-     * @param currentDateString A string representation of the current date, used in a comment in the output file
-     * @throws TransformerException
-     * @throws IOException
-     */
-    private void writeDocument(File outputDir, Document xmlDoc, Transformer transformer, String name, String currentDateString) throws TransformerException, IOException {
-        DOMSource source = new DOMSource(xmlDoc);
-        File outputFile = new File(outputDir, "workflow.xml");
-        StreamResult result = new StreamResult(outputFile);
-        transformer.transform(source, result);
-
-        // We want a comment indicating that this file is autogenerated as the first line
-        // There's no good way to do this from the XML DOM, so we have to do it manually.
-        BufferedReader reader = new BufferedReader(new FileReader(outputFile));
-        List<String> lines = new ArrayList<>();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
-        }
-        reader.close();
-
-        BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-        for (int i = 0; i < lines.size(); i++) {
-            line = lines.get(i);
-            // Comments have to appear after the <?xml line
-            if (i == 1) {
-                writer.write(String.format("<!-- %s workflow autogenerated by Arbiter on %s -->\n", name, currentDateString));
+        for (Action action : actions) {
+            if (actionTypes.find(action.getType()) == null) {
+                throw new ConfigurationException(String.format("Action %s in workflow %s has unknown type %s", action.getName(), workflow.getName(), action.getType()));
             }
-            writer.write(line + "\n");
         }
-        writer.close();
     }
 
     /**
      * Create the root XML element
      *
      * @param name The name of the root element
-     * @param directives The Xembly Directives object to which to add the root element
+     * @param xml The writer to which to add the root element
+     * @throws XMLStreamException
      */
-    private void createRootElement(String name, Directives directives) {
-        directives.add("workflow-app")
-                .attr("xmlns", "uri:oozie:workflow:0.2")
-                .attr("name", name);
+    private void createRootElement(String name, XmlWriter xml) throws XMLStreamException {
+        xml.startElement("workflow-app")
+                .defaultNamespace("uri:oozie:workflow:0.2")
+                .attribute("name", name);
     }
 
     /**
      * Gets the OK transition for an action
      *
      * @param workflowGraph The graph from which to get the transition
-     * @param a The action for which to get the transition
+     * @param index The number of the action for which to get the transition
      * @return The OK transition for the given action
      */
-    private Action getTransition(DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph, Action a) {
-        Set<DefaultEdge> transitions = workflowGraph.outgoingEdgesOf(a);
+    private Action getTransition(WorkflowGraph workflowGraph, int index) {
+        Action a = workflowGraph.getAction(index);
         // end and kill nodes do not transition at all
         // forks have multiple transitions and are handled specially
         if (a.getType().equals("end") || a.getType().equals("kill") || a.getType().equals("fork")) {
@@ -438,34 +618,41 @@ public class OozieWorkflowGenerator {
         }
         // This would be a very odd case, as only forks can have multiple transitions
         // This should be impossible, but just in case we catch it and throw an exception
-        if (transitions.size() != 1)  {
+        if (workflowGraph.getOutDegree(index) != 1)  {
             throw new RuntimeException("Multiple transitions found for action " + a.getName());
         }
 
-        DefaultEdge transition = transitions.iterator().next();
-        return workflowGraph.getEdgeTarget(transition);
+        return workflowGraph.getAction(workflowGraph.getSuccessor(index, 0));
     }
 
     /**
-     * Finds the first action in the graph of a given type
-     * This is intended for use when only one action of the given type exists
-     * If more than one exists the traversal order and thus the resulting action is not guaranteed
+     * Gets an action from the graph by its number
      *
      * @param workflowGraph The graph in which to find the action
-     * @param type The type of action to find
-     * @return The action of the given type, or null if none exists
+     * @param index The number of the action, which may be WorkflowGraph.NONE
+     * @return The action, or null if the number is NONE
      */
-    private Action getActionByType(DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph, final String type) {
-        List<Action> actionList = Lists.newArrayList(Collections2.filter(workflowGraph.vertexSet(), new Predicate<Action>() {
-            @Override
-            public boolean apply(Action input) {
-                return input.getType().equals(type);
-            }
-        }));
-        if (actionList.size() > 0) {
-            return actionList.get(0);
-        } else {
-            return null;
+    private Action getAction(WorkflowGraph workflowGraph, int index) {
+        return index == WorkflowGraph.NONE ? null : workflowGraph.getAction(index);
+    }
+
+    /**
+     * Orders the numbers of workflows so that those with the most actions come first
+     */
+    private static class WorkflowSizeComparator implements Comparator<Integer> {
+        private final List<Workflow> workflows;
+
+        WorkflowSizeComparator(List<Workflow> workflows) {
+            this.workflows = workflows;
+        }
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return Integer.compare(size(workflows.get(o2)), size(workflows.get(o1)));
+        }
+
+        private static int size(Workflow workflow) {
+            return workflow.getActions() == null ? 0 : workflow.getActions().size();
         }
     }
 }
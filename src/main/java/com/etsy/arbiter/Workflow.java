@@ -16,8 +16,9 @@
 
 package com.etsy.arbiter;
 
-import org.yaml.snakeyaml.TypeDescription;
-import org.yaml.snakeyaml.constructor.Constructor;
+import com.etsy.arbiter.util.YamlBinder;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
 
 import java.util.List;
 
@@ -27,18 +28,42 @@ import java.util.List;
  * @author Andrew Johnson
  */
 public class Workflow {
+    private static final YamlBinder<Workflow> YAML_BINDER = new YamlBinder<Workflow>() {
+        @Override
+        public Workflow bind(Node node) {
+            if (isNull(node)) {
+                return null;
+            }
+
+            Workflow workflow = new Workflow();
+            for (NodeTuple entry : entries(node, "workflow")) {
+                String key = key(entry);
+                Node value = entry.getValueNode();
+                switch (key) {
+                    case "name":
+                        workflow.setName(string(value, key));
+                        break;
+                    case "actions":
+                        workflow.setActions(list(value, Action.getYamlBinder(), key));
+                        break;
+                    case "errorHandler":
+                        workflow.setErrorHandler(Action.getYamlBinder().bind(value));
+                        break;
+                    default:
+                        throw unknownKey(entry, "workflow");
+                }
+            }
+            return workflow;
+        }
+    };
+
     /**
      * Defines how to construct a Workflow objects when reading from YAML
      *
-     * @return A snakeyaml Constructor instance that will be used to create Workflow objects
+     * @return A binder that creates Workflow objects from YAML
      */
-    public static Constructor getYamlConstructor() {
-        Constructor workflowConstructor = new Constructor(Workflow.class);
-        TypeDescription workflowDescription = new TypeDescription(Workflow.class);
-        workflowDescription.putListPropertyType("actions", Action.class);
-        workflowConstructor.addTypeDescription(workflowDescription);
-
-        return workflowConstructor;
+    public static YamlBinder<Workflow> getYamlBinder() {
+        return YAML_BINDER;
     }
 
     private String name;
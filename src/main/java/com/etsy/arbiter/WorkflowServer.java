@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.etsy.arbiter.output.MemoryOutputSink;
+import com.etsy.arbiter.util.YamlReader;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves workflow generation over HTTP on the loopback interface
+ * This lets tools that generate many workflows, such as editors and commit hooks, avoid starting a new JVM and merging the configuration each time
+ *
+ * POST a workflow definition to /workflow to receive the Oozie workflow XML, or to /workflow?format=dot to receive its Graphviz DOT graph.
+ * An invalid workflow is answered with 400 and the reason as plain text. GET /health answers 200 once the server is running.
+ * At most the given number of requests are handled at once, and further requests wait for one of them to finish
+ *
+ * The JDK server writes the headers and body of a response separately, so without TCP_NODELAY each response on a kept-alive connection
+ * waits around 40ms for the client's delayed acknowledgement of the headers. Setting the sun.net.httpserver.nodelay system property to
+ * true before the first server is created avoids this. It applies to every JDK server in the process, so it is left to the caller
+ *
+ * @author Andrew Johnson
+ */
+public class WorkflowServer implements Closeable {
+    private static final Logger LOG = Logger.getLogger(WorkflowServer.class);
+
+    /**
+     * The largest workflow definition accepted
+     */
+    public static final int MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * The system property that enables TCP_NODELAY on the connections of JDK servers
+     */
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private static final String XML_CONTENT_TYPE = "application/xml; charset=UTF-8";
+    private static final String DOT_CONTENT_TYPE = "text/vnd.graphviz; charset=UTF-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+
+    private final ArbiterEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Create a server
+     * The server does not accept requests until it is started
+     *
+     * @param engine The engine with which to generate workflows
+     * @param port The port on which to listen, or 0 to use any free port
+     * @param concurrency The maximum number of requests to handle at once
+     * @throws IOException If the port cannot be bound
+     */
+    public WorkflowServer(ArbiterEngine engine, int port, int concurrency) throws IOException {
+        Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive");
+        this.engine = engine;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                .setNameFormat("arbiter-server-%d")
+                .build());
+        server.setExecutor(executor);
+        server.createContext("/workflow", new WorkflowHandler());
+        server.createContext("/health", new HealthHandler());
+    }
+
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        server.start();
+        LOG.info(String.format("Serving workflows on http://localhost:%d/workflow", getPort()));
+    }
+
+    /**
+     * @return The port on which the server is listening
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Wait until the server is closed
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stop accepting requests and stop the request threads
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        closed.countDown();
+    }
+
+    /**
+     * Generates a single workflow from the request body
+     */
+    private class WorkflowHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!isExactPath(exchange, "/workflow")) {
+                    return;
+                }
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    respond(exchange, 405, TEXT_CONTENT_TYPE, "Workflows must be sent with POST\n");
+                    return;
+                }
+
+                String format = getFormat(exchange.getRequestURI());
+                if (!"xml".equals(format) && !"dot".equals(format)) {
+                    respond(exchange, 400, TEXT_CONTENT_TYPE, "Unknown format " + format + ", expected xml or dot\n");
+                    return;
+                }
+
+                byte[] body = readBody(exchange);
+                if (body == null) {
+                    respond(exchange, 413, TEXT_CONTENT_TYPE, "Workflow definitions may be at most " + MAX_REQUEST_BYTES + " bytes\n");
+                    return;
+                }
+
+                try {
+                    Workflow workflow = new YamlReader<>(Workflow.getYamlBinder()).read(new ByteArrayInputStream(body));
+                    if (workflow == null || workflow.getName() == null) {
+                        respond(exchange, 400, TEXT_CONTENT_TYPE, "Workflow has no name\n");
+                    } else if (workflow.getActions() == null || workflow.getActions().isEmpty()) {
+                        respond(exchange, 400, TEXT_CONTENT_TYPE, "No actions found in workflow " + workflow.getName() + "\n");
+                    } else if ("dot".equals(format)) {
+                        StringWriter dot = new StringWriter();
+                        engine.writeDot(workflow, dot);
+                        respond(exchange, 200, DOT_CONTENT_TYPE, dot.toString());
+                    } else {
+                        respond(exchange, 200, XML_CONTENT_TYPE, generate(workflow));
+                    }
+                } catch (YAMLException | WorkflowGraphException | ConfigurationException e) {
+                    respond(exchange, 400, TEXT_CONTENT_TYPE, e.getMessage() + "\n");
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Unable to handle request", e);
+                // Once the headers are sent the status cannot be changed, as when the client disconnects while the body is written
+                if (exchange.getResponseCode() == -1) {
+                    respond(exchange, 500, TEXT_CONTENT_TYPE, "Unable to generate workflow\n");
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Generate the XML for a workflow
+         *
+         * @throws WorkflowGraphException If the workflow cannot be converted
+         * @throws ConfigurationException If the workflow uses an unknown action type
+         */
+        private String generate(Workflow workflow) throws IOException, WorkflowGraphException, ConfigurationException {
+            MemoryOutputSink sink = new MemoryOutputSink();
+            GenerationResult.WorkflowResult result = engine.generate(Collections.singletonList(workflow), sink).getWorkflows().get(0);
+            if (!result.isSuccess()) {
+                Throwable error = result.getError();
+                if (error instanceof WorkflowGraphException) {
+                    throw (WorkflowGraphException) error;
+                } else if (error instanceof ConfigurationException) {
+                    throw (ConfigurationException) error;
+                }
+                throw new IOException("Unable to generate workflow " + workflow.getName(), error);
+            }
+            return sink.getString(workflow.getName() + "/workflow.xml");
+        }
+    }
+
+    /**
+     * Answers health checks so that clients can wait for the server to start
+     */
+    private static class HealthHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (isExactPath(exchange, "/health")) {
+                    respond(exchange, 200, TEXT_CONTENT_TYPE, "ok\n");
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Checks that a request is for exactly the path of its handler, responding with 404 if not
+     * A context matches every path that starts with its own, so /workflows would otherwise be handled as /workflow
+     *
+     * @return true if the request is for the given path
+     */
+    private static boolean isExactPath(HttpExchange exchange, String path) throws IOException {
+        if (path.equals(exchange.getRequestURI().getPath())) {
+            return true;
+        }
+        respond(exchange, 404, TEXT_CONTENT_TYPE, "Not found\n");
+        return false;
+    }
+
+    /**
+     * Gets the format requested by the format query parameter, defaulting to xml
+     */
+    private static String getFormat(URI uri) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("format=")) {
+                    return parameter.substring("format=".length());
+                }
+            }
+        }
+        return "xml";
+    }
+
+    /**
+     * Reads the body of a request
+     *
+     * @return The body, or null if it is larger than MAX_REQUEST_BYTES
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream stream = exchange.getRequestBody()) {
+            byte[] body = ByteStreams.toByteArray(ByteStreams.limit(stream, MAX_REQUEST_BYTES + 1L));
+            return body.length > MAX_REQUEST_BYTES ? null : body;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(content);
+        }
+    }
+}
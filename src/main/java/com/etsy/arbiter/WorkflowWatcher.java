@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.config.ConfigurationMerger;
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.output.DirectoryOutputSink;
+import com.etsy.arbiter.util.GraphvizRenderer;
+import com.etsy.arbiter.util.YamlReader;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches configuration and workflow files, regenerating workflows as soon as their inputs change
+ * The merged configuration and the parsed workflows are kept in memory between changes
+ * A change to a workflow file regenerates only that workflow, while a change to a configuration file regenerates all of them
+ *
+ * @author Andrew Johnson
+ */
+public class WorkflowWatcher {
+    private static final Logger LOG = Logger.getLogger(WorkflowWatcher.class);
+
+    // Editors often save a file as several filesystem operations, so we wait briefly for related events before regenerating
+    private static final long SETTLE_MILLIS = 50;
+
+    // Configuration files are merged in the order given, with the low-priority files after the others as in ArbiterEngine
+    private final List<Path> configFiles;
+    private final List<Path> lowPrecedenceConfigFiles;
+    private final List<Path> workflowFiles;
+    private final String outputDir;
+    private final boolean generateGraphviz;
+    private final String graphvizFormat;
+    private final int threads;
+    private final boolean indentXml;
+    private final WorkflowGraphBuilder.Algorithm graphAlgorithm;
+    private int graphvizDepth = GraphvizRenderer.UNLIMITED_DEPTH;
+
+    private final YamlReader<Config> configReader = new YamlReader<>(Config.getYamlBinder());
+    private final YamlReader<Workflow> workflowReader = new YamlReader<>(Workflow.getYamlBinder());
+
+    private ArbiterEngine engine;
+    private final Map<Path, Workflow> workflows = new HashMap<>();
+
+    /**
+     * @param configFiles The configuration files
+     * @param lowPrecedenceConfigFiles The low-priority configuration files
+     * @param workflowFiles The workflow definitions to generate
+     * @param outputDir The directory in which to output the Oozie workflows
+     * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
+     * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @param threads The number of workflows to generate concurrently
+     * @param indentXml Whether or not to indent the generated XML
+     * @param graphAlgorithm The algorithm to use for inserting fork/join pairs
+     */
+    public WorkflowWatcher(String[] configFiles, String[] lowPrecedenceConfigFiles, String[] workflowFiles, String outputDir, boolean generateGraphviz, String graphvizFormat, int threads, boolean indentXml, WorkflowGraphBuilder.Algorithm graphAlgorithm) {
+        this.configFiles = toPaths(configFiles);
+        this.lowPrecedenceConfigFiles = toPaths(lowPrecedenceConfigFiles);
+        this.workflowFiles = toPaths(workflowFiles);
+        this.outputDir = outputDir;
+        this.generateGraphviz = generateGraphviz;
+        this.graphvizFormat = graphvizFormat;
+        this.threads = threads;
+        this.indentXml = indentXml;
+        this.graphAlgorithm = graphAlgorithm;
+    }
+
+    /**
+     * @param graphvizDepth The number of levels of nested fork/join regions to draw in full in the Graphviz graphs
+     */
+    public void setGraphvizDepth(int graphvizDepth) {
+        this.graphvizDepth = graphvizDepth;
+    }
+
+    /**
+     * Generate all workflows, then regenerate workflows whenever their inputs change
+     * This only returns if the watching thread is interrupted
+     *
+     * @throws IOException If the files cannot be watched
+     * @throws ConfigurationException If the initial configuration is invalid
+     */
+    public void watch() throws IOException, ConfigurationException {
+        generateAll();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Set<Path> directories = new HashSet<>();
+            for (Path file : configFiles) {
+                directories.add(file.getParent());
+            }
+            for (Path file : lowPrecedenceConfigFiles) {
+                directories.add(file.getParent());
+            }
+            for (Path file : workflowFiles) {
+                directories.add(file.getParent());
+            }
+            for (Path directory : directories) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            LOG.info(String.format("Watching %d configuration files and %d workflows", configFiles.size() + lowPrecedenceConfigFiles.size(), workflowFiles.size()));
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            changed.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                handleChanges(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read all of the inputs and generate every workflow
+     *
+     * @throws ConfigurationException If the configuration is invalid
+     */
+    void generateAll() throws ConfigurationException {
+        loadConfiguration();
+        for (Path file : workflowFiles) {
+            loadWorkflow(file);
+        }
+        generate(workflowFiles);
+    }
+
+    /**
+     * Regenerate the workflows affected by a set of changed files
+     * Errors are logged rather than thrown so that a bad edit doesn't stop the watcher
+     *
+     * @param changed The files that have changed. Files that are not inputs are ignored
+     * @return The workflow files that were regenerated
+     */
+    List<Path> handleChanges(Set<Path> changed) {
+        boolean configChanged = !Collections.disjoint(changed, configFiles) || !Collections.disjoint(changed, lowPrecedenceConfigFiles);
+        if (configChanged) {
+            try {
+                loadConfiguration();
+            } catch (ConfigurationException | RuntimeException e) {
+                LOG.error("Unable to load configuration, keeping the previous configuration", e);
+                return Collections.emptyList();
+            }
+        }
+
+        List<Path> affected = new ArrayList<>();
+        for (Path file : workflowFiles) {
+            if (changed.contains(file)) {
+                try {
+                    loadWorkflow(file);
+                } catch (RuntimeException e) {
+                    LOG.error("Unable to load workflow " + file, e);
+                    continue;
+                }
+                affected.add(file);
+            } else if (configChanged) {
+                affected.add(file);
+            }
+        }
+
+        generate(affected);
+        return affected;
+    }
+
+    private void loadConfiguration() throws ConfigurationException {
+        List<Config> configs = new ArrayList<>(configFiles.size() + lowPrecedenceConfigFiles.size());
+        readConfigFiles(configFiles, false, configs);
+        readConfigFiles(lowPrecedenceConfigFiles, true, configs);
+
+        engine = new ArbiterEngine.Builder()
+                .setConfig(ConfigurationMerger.mergeConfiguration(configs))
+                .setIndentXml(indentXml)
+                .setGraphAlgorithm(graphAlgorithm)
+                .setGraphvizFormat(generateGraphviz ? graphvizFormat : null)
+                .setGraphvizDepth(graphvizDepth)
+                .setThreads(threads)
+                .build();
+    }
+
+    private void readConfigFiles(List<Path> files, boolean lowPrecedence, List<Config> configs) {
+        for (Path file : files) {
+            Config config = configReader.read(file.toFile());
+            config.setLowPrecedence(lowPrecedence);
+            configs.add(config);
+        }
+    }
+
+    private void loadWorkflow(Path file) {
+        workflows.put(file, workflowReader.read(file.toFile()));
+    }
+
+    private void generate(List<Path> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        List<Workflow> toGenerate = new ArrayList<>(files.size());
+        for (Path file : files) {
+            toGenerate.add(workflows.get(file));
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            GenerationResult result = engine.generate(toGenerate, new DirectoryOutputSink(new File(outputDir)));
+            for (GenerationResult.WorkflowResult failure : result.getFailures()) {
+                LOG.error("Unable to generate workflow " + failure.getName(), failure.getError());
+            }
+            LOG.info(String.format("Regenerated %d workflows in %d ms", toGenerate.size() - result.getFailures().size(), System.currentTimeMillis() - start));
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Unable to generate workflows", e);
+        }
+    }
+
+    private static List<Path> toPaths(String[] files) {
+        List<Path> result = new ArrayList<>();
+        if (files != null) {
+            for (String file : files) {
+                result.add(Paths.get(file).toAbsolutePath().normalize());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.cache;
+
+import com.etsy.arbiter.Arbiter;
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.util.AtomicFileOutputStream;
+import com.etsy.arbiter.util.GraphvizRenderer;
+import com.google.common.base.Predicate;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Records which workflows have already been generated into an output directory
+ * A workflow is up to date if its input file, the merged configuration, the generation options and the Arbiter version
+ * are all unchanged since it was last generated, and its output still exists
+ * The output checked is the workflow XML and, when Graphviz graphs are generated, the DOT files and the graphs rendered from them
+ *
+ * @author Andrew Johnson
+ */
+public class BuildCache {
+    private static final Logger LOG = Logger.getLogger(BuildCache.class);
+
+    public static final String FILE_NAME = ".arbiter-cache";
+
+    /**
+     * The function with which the content of input files is hashed
+     */
+    public static final HashFunction INPUT_HASH = Hashing.sha256();
+
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String INPUT_PREFIX = "input:";
+
+    // Properties.store writes a timestamp comment, which should not count as a change to the manifest
+    private static final Predicate<String> IS_COMMENT = new Predicate<String>() {
+        @Override
+        public boolean apply(String input) {
+            return input.startsWith("#");
+        }
+    };
+
+    private final File outputDir;
+    private final String fingerprint;
+    private final String graphvizFormat;
+    private final Properties entries;
+    private final Map<File, String> inputHashes = new HashMap<>();
+
+    private BuildCache(File outputDir, String fingerprint, String graphvizFormat, Properties entries) {
+        this.outputDir = outputDir;
+        this.fingerprint = fingerprint;
+        this.graphvizFormat = graphvizFormat;
+        this.entries = entries;
+    }
+
+    /**
+     * Load the cache manifest from an output directory
+     * If the manifest was written with a different fingerprint, all of its entries are discarded
+     *
+     * @param outputDir The directory the workflows are generated into
+     * @param fingerprint The fingerprint of the configuration and options used for this run
+     * @return The cache for the given output directory
+     * @throws IOException
+     */
+    public static BuildCache load(File outputDir, String fingerprint) throws IOException {
+        return load(outputDir, fingerprint, null);
+    }
+
+    /**
+     * Load the cache manifest from an output directory into which Graphviz graphs are also generated
+     * If the manifest was written with a different fingerprint, all of its entries are discarded
+     *
+     * @param outputDir The directory the workflows are generated into
+     * @param fingerprint The fingerprint of the configuration and options used for this run
+     * @param graphvizFormat The format in which graphs are rendered, or null if no graphs are generated
+     * @return The cache for the given output directory
+     * @throws IOException
+     */
+    public static BuildCache load(File outputDir, String fingerprint, String graphvizFormat) throws IOException {
+        Properties entries = new Properties();
+        File manifest = new File(outputDir, FILE_NAME);
+        if (manifest.isFile()) {
+            try (Reader reader = Files.newReader(manifest, StandardCharsets.UTF_8)) {
+                entries.load(reader);
+            }
+        }
+
+        if (!fingerprint.equals(entries.getProperty(FINGERPRINT_KEY))) {
+            entries.clear();
+        }
+
+        return new BuildCache(outputDir, fingerprint, graphvizFormat, entries);
+    }
+
+    /**
+     * Compute the fingerprint of everything other than the workflow itself that affects the generated output
+     *
+     * @param config The merged configuration
+     * @param options Any options that affect the generated output
+     * @return A fingerprint that changes if any of the given values change
+     */
+    public static String fingerprint(Config config, String... options) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, getArbiterVersion());
+        hashConfig(hasher, config);
+        for (String option : options) {
+            putString(hasher, option);
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Check if the workflow defined by an input file has already been generated
+     *
+     * @param input The workflow definition file
+     * @return true if the workflow was generated from identical input and its output still exists, false otherwise
+     * @throws IOException
+     */
+    public boolean isUpToDate(File input) throws IOException {
+        String entry = entries.getProperty(INPUT_PREFIX + input.getAbsolutePath());
+        if (entry == null) {
+            return false;
+        }
+
+        int separator = entry.indexOf(' ');
+        String hash = entry.substring(0, separator);
+        String workflowName = entry.substring(separator + 1);
+
+        if (!hash.equals(hashInput(input))) {
+            return false;
+        }
+        for (String output : getOutputs(workflowName)) {
+            if (!new File(outputDir, output).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record that the workflow defined by an input file has been generated
+     *
+     * @param input The workflow definition file
+     * @param inputHash The hash of the content the workflow was generated from, as given by INPUT_HASH or hashInput.
+     *                  The file may have changed since it was read, and would then be generated again next time
+     * @param workflowName The name of the generated workflow
+     */
+    public void update(File input, String inputHash, String workflowName) {
+        entries.setProperty(INPUT_PREFIX + input.getAbsolutePath(), inputHash + " " + workflowName);
+    }
+
+    /**
+     * Write the cache manifest to the output directory
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        entries.setProperty(FINGERPRINT_KEY, fingerprint);
+
+        AtomicFileOutputStream output = new AtomicFileOutputStream(new File(outputDir, FILE_NAME), IS_COMMENT);
+        try {
+            try (Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+                entries.store(writer, "Arbiter build cache");
+            }
+            output.commit();
+        } finally {
+            output.discard();
+        }
+    }
+
+    /**
+     * Gets the files generated for a workflow, relative to the output directory
+     * The graphs are those written by OozieWorkflowGenerator and WorkflowGraphBuilder
+     */
+    private List<String> getOutputs(String workflowName) {
+        List<String> outputs = new ArrayList<>();
+        outputs.add(workflowName + "/workflow.xml");
+        if (graphvizFormat != null) {
+            for (String dot : new String[]{workflowName + "/" + workflowName + "-input.dot", workflowName + "/" + workflowName + ".dot"}) {
+                outputs.add(dot);
+                outputs.add(GraphvizRenderer.getRenderedPath(dot, graphvizFormat));
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Hash the current content of an input file
+     * Hashes are remembered so each file is read at most once
+     *
+     * @param input The workflow definition file
+     * @return The hash of the content of the file
+     * @throws IOException
+     */
+    public String hashInput(File input) throws IOException {
+        String hash = inputHashes.get(input);
+        if (hash == null) {
+            hash = Files.hash(input, INPUT_HASH).toString();
+            inputHashes.put(input, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Gets a string identifying the running version of Arbiter
+     * Snapshot builds change without the version changing, so the modification time of the JAR is included for those
+     */
+    static String getArbiterVersion() {
+        String version = Arbiter.class.getPackage().getImplementationVersion();
+        if (version != null && !version.endsWith("-SNAPSHOT")) {
+            return version;
+        }
+
+        URL location = Arbiter.class.getProtectionDomain().getCodeSource().getLocation();
+        try {
+            return version + "@" + new File(location.toURI()).lastModified();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOG.debug("Unable to determine location of Arbiter", e);
+            return version + "@" + location;
+        }
+    }
+
+    /**
+     * Hash a configuration
+     * Action types are hashed in order of name, but the entries of each map are hashed in iteration order
+     * since that determines the order of elements in the output
+     */
+    private static void hashConfig(Hasher hasher, Config config) {
+        putString(hasher, config.getKillName());
+        putString(hasher, config.getKillMessage());
+
+        List<ActionType> actionTypes = new ArrayList<>(config.getActionTypes());
+        Collections.sort(actionTypes, new Comparator<ActionType>() {
+            @Override
+            public int compare(ActionType o1, ActionType o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        for (ActionType type : actionTypes) {
+            putString(hasher, type.getName());
+            putString(hasher, type.getTag());
+            putString(hasher, type.getXmlns());
+            hasher.putInt(type.getConfigurationPosition());
+            putMap(hasher, type.getProperties());
+            putMap(hasher, type.getDefaultInterpolations());
+
+            if (type.getDefaultArgs() == null) {
+                hasher.putInt(-1);
+            } else {
+                hasher.putInt(type.getDefaultArgs().size());
+                for (Map.Entry<String, List<String>> entry : type.getDefaultArgs().entrySet()) {
+                    putString(hasher, entry.getKey());
+                    hasher.putInt(entry.getValue().size());
+                    for (Object value : entry.getValue()) {
+                        putString(hasher, String.valueOf(value));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void putMap(Hasher hasher, Map<String, String> map) {
+        if (map == null) {
+            hasher.putInt(-1);
+            return;
+        }
+
+        hasher.putInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            putString(hasher, entry.getKey());
+            putString(hasher, String.valueOf(entry.getValue()));
+        }
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        // Values are length-prefixed so that adjacent values can't run together
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length());
+            hasher.putString(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.cache;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.util.AtomicFileOutputStream;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A compiled form of the merged configuration and the parsed workflows
+ * Reading a snapshot avoids parsing YAML and merging configuration, so it is used in place of the source files when none of them have changed
+ * A snapshot is keyed by a fingerprint of the content of every source file, so a stale snapshot is never used
+ *
+ * Maps, lists and sets are restored with their original iteration order
+ * Values are only ever strings or lists of them, as the workflow and configuration binders read every scalar and list item as a string
+ *
+ * @author Andrew Johnson
+ */
+public class Snapshot {
+    private static final Logger LOG = Logger.getLogger(Snapshot.class);
+
+    private static final int MAGIC = 0x41524253;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LIST = 2;
+
+    private final String fingerprint;
+    private final Config config;
+    private final List<Workflow> workflows;
+
+    /**
+     * @param fingerprint The fingerprint of the source files, as given by sourceFingerprint
+     * @param config The merged configuration
+     * @param workflows The parsed workflows, in the same order as the input files
+     */
+    public Snapshot(String fingerprint, Config config, List<Workflow> workflows) {
+        this.fingerprint = fingerprint;
+        this.config = config;
+        this.workflows = workflows;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public List<Workflow> getWorkflows() {
+        return workflows;
+    }
+
+    /**
+     * Compute the fingerprint of a set of source files
+     * This covers the content and role of each file, their order and the Arbiter version
+     *
+     * @param configFiles The configuration files
+     * @param lowPrecedenceConfigFiles The low-priority configuration files
+     * @param inputFiles The workflow definition files
+     * @return A fingerprint that changes if any source file changes
+     * @throws IOException
+     */
+    public static String sourceFingerprint(String[] configFiles, String[] lowPrecedenceConfigFiles, String[] inputFiles) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, BuildCache.getArbiterVersion());
+        putFiles(hasher, configFiles);
+        putFiles(hasher, lowPrecedenceConfigFiles);
+        putFiles(hasher, inputFiles);
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Load a snapshot
+     *
+     * @param file The snapshot file
+     * @param fingerprint The fingerprint of the current source files
+     * @return The snapshot, or null if the file doesn't exist, is unreadable or was compiled from different sources
+     * @throws IOException
+     */
+    public static Snapshot load(File file, String fingerprint) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOG.info("Ignoring snapshot " + file + " written by an incompatible version of Arbiter");
+                return null;
+            }
+            if (!fingerprint.equals(readString(buffer))) {
+                LOG.info("Ignoring snapshot " + file + " as its sources have changed");
+                return null;
+            }
+
+            Config config = readConfig(buffer);
+            int workflowCount = buffer.getInt();
+            List<Workflow> workflows = new ArrayList<>(workflowCount);
+            for (int i = 0; i < workflowCount; i++) {
+                workflows.add(readWorkflow(buffer));
+            }
+
+            return new Snapshot(fingerprint, config, workflows);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            LOG.warn("Ignoring corrupt snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write this snapshot to a file
+     * The file is replaced atomically, so a concurrent reader sees either the old or the new snapshot
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written, or the configuration or workflows contain values that cannot be stored
+     */
+    public void write(File file) throws IOException {
+        AtomicFileOutputStream stream = new AtomicFileOutputStream(file);
+        try {
+            try (DataOutputStream output = new DataOutputStream(stream)) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                writeString(output, fingerprint);
+                writeConfig(output, config);
+                output.writeInt(workflows.size());
+                for (Workflow workflow : workflows) {
+                    writeWorkflow(output, workflow);
+                }
+            }
+            stream.commit();
+        } finally {
+            stream.discard();
+        }
+    }
+
+    private static void putFiles(Hasher hasher, String[] files) throws IOException {
+        if (files == null) {
+            hasher.putInt(-1);
+            return;
+        }
+
+        hasher.putInt(files.length);
+        for (String file : files) {
+            File f = new File(file);
+            putString(hasher, f.getAbsolutePath());
+            putString(hasher, Files.hash(f, Hashing.sha256()).toString());
+        }
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length());
+            hasher.putString(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writeConfig(DataOutput output, Config config) throws IOException {
+        writeString(output, config.getKillName());
+        writeString(output, config.getKillMessage());
+
+        List<ActionType> actionTypes = config.getActionTypes();
+        if (actionTypes == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        output.writeInt(actionTypes.size());
+        for (ActionType type : actionTypes) {
+            writeString(output, type.getTag());
+            writeString(output, type.getName());
+            writeString(output, type.getXmlns());
+            writeMap(output, type.getDefaultArgs());
+            writeMap(output, type.getProperties());
+            writeMap(output, type.getDefaultInterpolations());
+            output.writeBoolean(type.isLowPrecedence());
+            output.writeInt(type.getConfigurationPosition());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Config readConfig(ByteBuffer buffer) {
+        Config config = new Config();
+        config.setKillName(readString(buffer));
+        config.setKillMessage(readString(buffer));
+
+        int count = buffer.getInt();
+        if (count < 0) {
+            return config;
+        }
+
+        List<ActionType> actionTypes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ActionType type = new ActionType();
+            type.setTag(readString(buffer));
+            type.setName(readString(buffer));
+            type.setXmlns(readString(buffer));
+            type.setDefaultArgs((Map) readMap(buffer));
+            type.setProperties((Map) readMap(buffer));
+            type.setDefaultInterpolations((Map) readMap(buffer));
+            type.setLowPrecedence(buffer.get() != 0);
+            type.setConfigurationPosition(buffer.getInt());
+            actionTypes.add(type);
+        }
+        config.setActionTypes(actionTypes);
+
+        return config;
+    }
+
+    private static void writeWorkflow(DataOutput output, Workflow workflow) throws IOException {
+        writeString(output, workflow.getName());
+
+        List<Action> actions = workflow.getActions();
+        if (actions == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(actions.size());
+            for (Action action : actions) {
+                writeAction(output, action);
+            }
+        }
+
+        output.writeBoolean(workflow.getErrorHandler() != null);
+        if (workflow.getErrorHandler() != null) {
+            writeAction(output, workflow.getErrorHandler());
+        }
+    }
+
+    private static Workflow readWorkflow(ByteBuffer buffer) {
+        Workflow workflow = new Workflow();
+        workflow.setName(readString(buffer));
+
+        int count = buffer.getInt();
+        if (count >= 0) {
+            List<Action> actions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                actions.add(readAction(buffer));
+            }
+            workflow.setActions(actions);
+        }
+
+        if (buffer.get() != 0) {
+            workflow.setErrorHandler(readAction(buffer));
+        }
+
+        return workflow;
+    }
+
+    private static void writeAction(DataOutput output, Action action) throws IOException {
+        writeString(output, action.getName());
+        writeString(output, action.getType());
+        writeString(output, action.getForceOk());
+        writeString(output, action.getForceError());
+        writeCollection(output, action.getDependencies());
+        writeMap(output, action.getPositionalArgs());
+        writeMap(output, action.getNamedArgs());
+        writeMap(output, action.getConfigurationProperties());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Action readAction(ByteBuffer buffer) {
+        Action action = new Action();
+        action.setName(readString(buffer));
+        action.setType(readString(buffer));
+        action.setForceOk(readString(buffer));
+        action.setForceError(readString(buffer));
+        List<Object> dependencies = readList(buffer);
+        action.setDependencies(dependencies == null ? null : new LinkedHashSet<>((List) dependencies));
+        action.setPositionalArgs((Map) readMap(buffer));
+        action.setNamedArgs((Map) readMap(buffer));
+        action.setConfigurationProperties((Map) readMap(buffer));
+
+        return action;
+    }
+
+    private static void writeMap(DataOutput output, Map<?, ?> map) throws IOException {
+        if (map == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        output.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(output, entry.getKey());
+            writeValue(output, entry.getValue());
+        }
+    }
+
+    private static Map<Object, Object> readMap(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(buffer);
+            map.put(key, readValue(buffer));
+        }
+
+        return map;
+    }
+
+    private static void writeCollection(DataOutput output, Collection<?> values) throws IOException {
+        if (values == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        output.writeInt(values.size());
+        for (Object value : values) {
+            writeValue(output, value);
+        }
+    }
+
+    private static List<Object> readList(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(buffer));
+        }
+
+        return list;
+    }
+
+    private static void writeValue(DataOutput output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            writeString(output, (String) value);
+        } else if (value instanceof List) {
+            output.writeByte(LIST);
+            writeCollection(output, (List<?>) value);
+        } else {
+            throw new IOException("Cannot store value of type " + value.getClass().getName() + " in a snapshot");
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case LIST:
+                return readList(buffer);
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -16,6 +16,11 @@
 
 package com.etsy.arbiter.config;
 
+import com.etsy.arbiter.util.ArgumentTemplates;
+import com.etsy.arbiter.util.YamlBinder;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +30,59 @@ import java.util.Map;
  * @author Andrew Johnson
  */
 public class ActionType {
+    private static final YamlBinder<ActionType> YAML_BINDER = new YamlBinder<ActionType>() {
+        @Override
+        public ActionType bind(Node node) {
+            if (isNull(node)) {
+                return null;
+            }
+
+            ActionType type = new ActionType();
+            for (NodeTuple entry : entries(node, "action type")) {
+                String key = key(entry);
+                Node value = entry.getValueNode();
+                switch (key) {
+                    case "tag":
+                        type.setTag(string(value, key));
+                        break;
+                    case "name":
+                        type.setName(string(value, key));
+                        break;
+                    case "xmlns":
+                        type.setXmlns(string(value, key));
+                        break;
+                    case "defaultArgs":
+                        type.setDefaultArgs(stringListMap(value, key));
+                        break;
+                    case "properties":
+                        type.setProperties(stringMap(value, key));
+                        break;
+                    case "defaultInterpolations":
+                        type.setDefaultInterpolations(stringMap(value, key));
+                        break;
+                    case "lowPrecedence":
+                        type.setLowPrecedence(bool(value, key));
+                        break;
+                    case "configurationPosition":
+                        type.setConfigurationPosition(integer(value, key));
+                        break;
+                    default:
+                        throw unknownKey(entry, "action type");
+                }
+            }
+            return type;
+        }
+    };
+
+    /**
+     * Defines how to construct ActionType objects when reading from YAML
+     *
+     * @return A binder that creates ActionType objects from YAML
+     */
+    public static YamlBinder<ActionType> getYamlBinder() {
+        return YAML_BINDER;
+    }
+
     private String tag;
     private String name;
     private String xmlns;
@@ -34,6 +92,9 @@ public class ActionType {
     private boolean lowPrecedence;
     private int configurationPosition;
 
+    // Compiled on first use, as the default args are set after construction
+    private volatile ArgumentTemplates defaultArgTemplates;
+
     public String getTag() {
         return tag;
     }
@@ -64,6 +125,23 @@ public class ActionType {
 
     public void setDefaultArgs(Map<String, List<String>> defaultArgs) {
         this.defaultArgs = defaultArgs;
+        this.defaultArgTemplates = null;
+    }
+
+    /**
+     * Get the default args compiled for interpolation
+     * The templates reflect the map given to setDefaultArgs, so that map should not be modified afterwards
+     *
+     * @return The compiled default args
+     */
+    public ArgumentTemplates getDefaultArgTemplates() {
+        ArgumentTemplates templates = defaultArgTemplates;
+        if (templates == null) {
+            templates = ArgumentTemplates.compile(defaultArgs);
+            defaultArgTemplates = templates;
+        }
+
+        return templates;
     }
 
     public Map<String, String> getProperties() {
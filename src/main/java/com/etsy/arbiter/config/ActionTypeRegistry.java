@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.config;
+
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of ActionTypes by name
+ * This is safe to share between threads
+ *
+ * @author Andrew Johnson
+ */
+public class ActionTypeRegistry {
+    private final Map<String, ActionType> actionTypes;
+
+    /**
+     * @param actionTypes The ActionTypes to index. If more than one has the same name, the first is used
+     */
+    public ActionTypeRegistry(List<ActionType> actionTypes) {
+        Map<String, ActionType> byName = new HashMap<>();
+        if (actionTypes != null) {
+            for (ActionType a : actionTypes) {
+                if (!byName.containsKey(a.getName())) {
+                    byName.put(a.getName(), a);
+                }
+            }
+        }
+
+        this.actionTypes = ImmutableMap.copyOf(byName);
+    }
+
+    /**
+     * Get an ActionType by name
+     *
+     * @param name The name of the ActionType
+     * @return The ActionType with the given name
+     * @throws ConfigurationException If there is no ActionType with the given name
+     */
+    public ActionType get(String name) throws ConfigurationException {
+        ActionType result = find(name);
+        if (result == null) {
+            throw new ConfigurationException("Unknown action type " + name);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get an ActionType by name
+     *
+     * @param name The name of the ActionType
+     * @return The ActionType with the given name, or null if there is none
+     */
+    public ActionType find(String name) {
+        return name == null ? null : actionTypes.get(name);
+    }
+
+    public Collection<String> getNames() {
+        return actionTypes.keySet();
+    }
+}
@@ -16,8 +16,9 @@
 
 package com.etsy.arbiter.config;
 
-import org.yaml.snakeyaml.TypeDescription;
-import org.yaml.snakeyaml.constructor.Constructor;
+import com.etsy.arbiter.util.YamlBinder;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
 
 import java.util.List;
 
@@ -27,30 +28,58 @@ import java.util.List;
  * @author Andrew Johnson
  */
 public class Config {
+    private static final YamlBinder<Config> YAML_BINDER = new YamlBinder<Config>() {
+        @Override
+        public Config bind(Node node) {
+            if (isNull(node)) {
+                return null;
+            }
+
+            Config config = new Config();
+            for (NodeTuple entry : entries(node, "configuration")) {
+                String key = key(entry);
+                Node value = entry.getValueNode();
+                switch (key) {
+                    case "actionTypes":
+                        config.setActionTypes(list(value, ActionType.getYamlBinder(), key));
+                        break;
+                    case "killName":
+                        config.setKillName(string(value, key));
+                        break;
+                    case "killMessage":
+                        config.setKillMessage(string(value, key));
+                        break;
+                    default:
+                        throw unknownKey(entry, "configuration");
+                }
+            }
+            return config;
+        }
+    };
+
     /**
      * Defines how to construct a Config objects when reading from YAML
      *
-     * @return A snakeyaml Constructor instance that will be used to create Config objects
+     * @return A binder that creates Config objects from YAML
      */
-    public static Constructor getYamlConstructor() {
-        Constructor configConstructor = new Constructor(Config.class);
-        TypeDescription configDescription = new TypeDescription(Config.class);
-        configDescription.putListPropertyType("actionTypes", ActionType.class);
-        configConstructor.addTypeDescription(configDescription);
-
-        return configConstructor;
+    public static YamlBinder<Config> getYamlBinder() {
+        return YAML_BINDER;
     }
 
     private List<ActionType> actionTypes;
     private String killName;
     private String killMessage;
 
+    // Built on first use, as the action types are set after construction
+    private volatile ActionTypeRegistry actionTypeRegistry;
+
     public List<ActionType> getActionTypes() {
         return actionTypes;
     }
 
     public void setActionTypes(List<ActionType> actionTypes) {
         this.actionTypes = actionTypes;
+        this.actionTypeRegistry = null;
     }
 
     public String getKillName() {
@@ -87,13 +116,23 @@ public class Config {
      * @return The ActionType corresponding to the given name, or null if none is found
      */
     public ActionType getActionTypeByName(String name) {
-        for (ActionType a : actionTypes) {
-            if (a.getName().equals(name)) {
-                return a;
-            }
+        return getActionTypeRegistry().find(name);
+    }
+
+    /**
+     * Get the index of the ActionTypes in this configuration by name
+     * The index reflects the list given to setActionTypes, so that list should not be modified afterwards
+     *
+     * @return The ActionType index
+     */
+    public ActionTypeRegistry getActionTypeRegistry() {
+        ActionTypeRegistry registry = actionTypeRegistry;
+        if (registry == null) {
+            registry = new ActionTypeRegistry(actionTypes);
+            actionTypeRegistry = registry;
         }
 
-        return null;
+        return registry;
     }
 
     @Override
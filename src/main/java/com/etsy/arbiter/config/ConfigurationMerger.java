@@ -28,6 +28,10 @@ import java.util.*;
  * Merges multiple Config objects together
  * ActionTypes with the same name will be combined
  *
+ * The input configurations are never modified, and the merged configuration shares no maps or lists with them.
+ * The maps and lists in the merged ActionTypes cannot be modified, so a merged configuration can be kept and reused
+ * for as long as a process runs, and merging the same configurations again always gives an equal result.
+ *
  * @author Andrew Johnson
  */
 public class ConfigurationMerger {
@@ -40,7 +44,8 @@ public class ConfigurationMerger {
      * @return A Config object representing the merger of all given Configs
      */
     public static Config mergeConfiguration(List<Config> configs) throws ConfigurationException {
-        Map<String, List<ActionType>> actions = new HashMap<>();
+        // Action types are kept in the order in which their names first appear
+        Map<String, List<ActionType>> actions = new LinkedHashMap<>();
 
         for (Config c : configs) {
             for (ActionType a : c.getActionTypes()) {
@@ -57,7 +62,7 @@ public class ConfigurationMerger {
 
         for (Map.Entry<String, List<ActionType>> entry : actions.entrySet()) {
             if (entry.getValue().size() == 1) {
-                actionTypes.addAll(entry.getValue());
+                actionTypes.add(copy(entry.getValue().get(0)));
             }
             else {
                 List<ActionType> value = entry.getValue();
@@ -91,6 +96,14 @@ public class ConfigurationMerger {
                         return input.getProperties();
                     }
                 }));
+                Map<String, String> interpolations = mergeMaps(value, new Function<ActionType, Map<String, String>>() {
+                    @Override
+                    public Map<String, String> apply(ActionType input) {
+                        return input.getDefaultInterpolations();
+                    }
+                });
+                // Most action types have no default interpolations, which are left unset as they would be without merging
+                merged.setDefaultInterpolations(interpolations.isEmpty() ? null : interpolations);
                 merged.setDefaultArgs(mergeCollectionMaps(value, new Function<ActionType, Map<String, List<String>>>() {
                     @Override
                     public Map<String, List<String>> apply(ActionType input) {
@@ -115,7 +128,7 @@ public class ConfigurationMerger {
                 return input.getKillMessage();
             }
         }));
-        mergedConfig.setActionTypes(actionTypes);
+        mergedConfig.setActionTypes(Collections.unmodifiableList(actionTypes));
 
         return mergedConfig;
     }
@@ -133,46 +146,95 @@ public class ConfigurationMerger {
 
     /**
      * Merge a collection of maps where the values are themselves collections
-     * Every value in the values of the resulting map is unique
+     * Where maps share a key, the values are concatenated in the order of the maps, so repeated values are kept
+     * Neither the input maps nor their values are modified
      *
      * @param actionTypes The collection of ActionTypes
-     * @param transformFunction The function that produces a map from an ActionType
+     * @param transformFunction The function that produces a map from an ActionType. The map may be null
      * @param <T> The type of values in the collection that is the value of the map
-     * @return A Map representing the merger of all input maps
+     * @return An unmodifiable Map representing the merger of all input maps
      */
-    public static <T, U extends Collection<T>> Map<String, U> mergeCollectionMaps(Collection<ActionType> actionTypes, Function<ActionType, Map<String, U>> transformFunction) {
-        Collection<Map<String, U>> values = Collections2.transform(actionTypes, transformFunction);
-        Map<String, U> result = new HashMap<>();
-
-        for (Map<String, U> map : values) {
-            for (Map.Entry<String, U> entry : map.entrySet()) {
-                if (!result.containsKey(entry.getKey())) {
-                    result.put(entry.getKey(), entry.getValue());
-                } else {
-                    result.get(entry.getKey()).addAll(entry.getValue());
+    public static <T> Map<String, List<T>> mergeCollectionMaps(Collection<ActionType> actionTypes, Function<ActionType, ? extends Map<String, ? extends Collection<T>>> transformFunction) {
+        Map<String, List<T>> merged = new LinkedHashMap<>();
+
+        for (ActionType actionType : actionTypes) {
+            Map<String, ? extends Collection<T>> map = transformFunction.apply(actionType);
+            if (map == null) {
+                continue;
+            }
+
+            for (Map.Entry<String, ? extends Collection<T>> entry : map.entrySet()) {
+                List<T> values = merged.get(entry.getKey());
+                if (values == null) {
+                    values = new ArrayList<>();
+                    merged.put(entry.getKey(), values);
+                }
+                if (entry.getValue() != null) {
+                    values.addAll(entry.getValue());
                 }
             }
         }
 
-        return result;
+        Map<String, List<T>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<T>> entry : merged.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(result);
     }
 
     /**
      * Merge a collection of maps
+     * Where maps share a key, the value from the last map is used
      *
      * @param actionTypes The collection of ActionTypes
-     * @param transformFunction The function that produces a map from an ActionType
+     * @param transformFunction The function that produces a map from an ActionType. The map may be null
      * @param <T> The type of values in the map
-     * @return A Map representing the merger of all input maps
+     * @return An unmodifiable Map representing the merger of all input maps
      */
-    public static <T> Map<String, T> mergeMaps(Collection<ActionType> actionTypes, Function<ActionType, Map<String, T>> transformFunction) {
-        Collection<Map<String, T>> values = Collections2.transform(actionTypes, transformFunction);
-        Map<String, T> result = new HashMap<>();
-        for (Map<String, T> map : values) {
-            result.putAll(map);
+    public static <T> Map<String, T> mergeMaps(Collection<ActionType> actionTypes, Function<ActionType, ? extends Map<String, T>> transformFunction) {
+        Map<String, T> result = new LinkedHashMap<>();
+        for (ActionType actionType : actionTypes) {
+            Map<String, T> map = transformFunction.apply(actionType);
+            if (map != null) {
+                result.putAll(map);
+            }
         }
 
-        return result;
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Copy an ActionType that has nothing to be merged with
+     * The maps and lists of the copy cannot be modified, and changes to the original do not affect the copy
+     *
+     * @param actionType The ActionType to copy
+     * @return A copy of the ActionType
+     */
+    private static ActionType copy(ActionType actionType) {
+        ActionType copy = new ActionType();
+        copy.setName(actionType.getName());
+        copy.setTag(actionType.getTag());
+        copy.setXmlns(actionType.getXmlns());
+        copy.setLowPrecedence(actionType.isLowPrecedence());
+        copy.setConfigurationPosition(actionType.getConfigurationPosition());
+        copy.setProperties(copyMap(actionType.getProperties()));
+        copy.setDefaultInterpolations(copyMap(actionType.getDefaultInterpolations()));
+
+        Map<String, List<String>> defaultArgs = actionType.getDefaultArgs();
+        if (defaultArgs != null) {
+            Map<String, List<String>> copiedArgs = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : defaultArgs.entrySet()) {
+                copiedArgs.put(entry.getKey(), entry.getValue() == null ? null : Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            }
+            copy.setDefaultArgs(Collections.unmodifiableMap(copiedArgs));
+        }
+
+        return copy;
+    }
+
+    private static Map<String, String> copyMap(Map<String, String> map) {
+        return map == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(map));
     }
 
     /**
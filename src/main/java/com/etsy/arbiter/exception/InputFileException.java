@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.exception;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents failures to read one or more input files
+ * Every file that could not be read is reported, not just the first
+ *
+ * @author Andrew Johnson
+ */
+public class InputFileException extends RuntimeException {
+    private final Map<String, Throwable> failures;
+
+    /**
+     * @param failures The cause of the failure for each file that could not be read, in the order the files were given
+     */
+    public InputFileException(Map<String, Throwable> failures) {
+        super(describe(failures), failures.isEmpty() ? null : failures.values().iterator().next());
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * @return The cause of the failure for each file that could not be read, in the order the files were given
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    private static String describe(Map<String, Throwable> failures) {
+        StringBuilder message = new StringBuilder(String.format("Could not read %d input file%s", failures.size(), failures.size() == 1 ? "" : "s"));
+        for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+            message.append("\n  ").append(failure.getKey()).append(": ").append(failure.getValue().getMessage());
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+import com.etsy.arbiter.util.AtomicFileOutputStream;
+import com.google.common.base.Ticker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Collects the time taken by each phase of a run and by each workflow generated, and writes them as a JSON report
+ *
+ * Times are wall-clock milliseconds. When workflows are generated in parallel, the totals of the per-workflow phases
+ * add up the time taken on every thread, so they may exceed the time of the generate phase of the run
+ * Phases of the run timed within a call to generate, such as waiting for Graphviz graphs, are added when the call finishes,
+ * as calls may run at the same time on several threads. Their time is also counted in the phase that made the call
+ *
+ * @author Andrew Johnson
+ */
+public class GenerationMetrics {
+    private final Ticker ticker;
+    private final PhaseTimer timer;
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<WorkflowMetrics> workflows = new ArrayList<>();
+    private final Map<Phase, Long> addedNanos = new EnumMap<>(Phase.class);
+
+    public GenerationMetrics() {
+        this(Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker The source of the current time
+     */
+    public GenerationMetrics(Ticker ticker) {
+        this.ticker = ticker;
+        this.timer = new PhaseTimer(ticker);
+    }
+
+    /**
+     * Gets the timer for the phases of the run as a whole
+     * This should only be used by the thread running Arbiter
+     *
+     * @return The timer for the run
+     */
+    public PhaseTimer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Add time spent in a phase of the run that was timed on another timer
+     * This is safe to call from multiple threads
+     *
+     * @param phase The phase
+     * @param nanos The time in nanoseconds
+     */
+    public synchronized void addPhaseNanos(Phase phase, long nanos) {
+        Long total = addedNanos.get(phase);
+        addedNanos.put(phase, (total == null ? 0 : total) + nanos);
+    }
+
+    /**
+     * Gets the time spent in each phase of the run, including time added from other timers
+     *
+     * @return The time in nanoseconds of each phase
+     */
+    public synchronized Map<Phase, Long> getPhaseNanos() {
+        Map<Phase, Long> phases = timer.getPhaseNanos();
+        for (Map.Entry<Phase, Long> phase : addedNanos.entrySet()) {
+            Long total = phases.get(phase.getKey());
+            phases.put(phase.getKey(), (total == null ? 0 : total) + phase.getValue());
+        }
+        return phases;
+    }
+
+    /**
+     * Record an option used for the run, so that reports from runs with different options can be told apart
+     *
+     * @param name The name of the option
+     * @param value The value of the option
+     */
+    public void setOption(String name, String value) {
+        options.put(name, value);
+    }
+
+    /**
+     * Start collecting the metrics for a workflow
+     *
+     * @param name The name of the workflow
+     * @return The metrics for the workflow, which should be passed to add once the workflow has been generated
+     */
+    public WorkflowMetrics newWorkflow(String name) {
+        return new WorkflowMetrics(name, ticker);
+    }
+
+    /**
+     * Add the metrics for a generated workflow
+     * This is safe to call from multiple threads
+     *
+     * @param workflow The metrics for the workflow
+     */
+    public synchronized void add(WorkflowMetrics workflow) {
+        workflows.add(workflow);
+    }
+
+    /**
+     * Gets the metrics for the workflows generated so far, ordered by name
+     *
+     * @return The metrics for each workflow
+     */
+    public synchronized List<WorkflowMetrics> getWorkflows() {
+        List<WorkflowMetrics> result = new ArrayList<>(workflows);
+        Collections.sort(result, new Comparator<WorkflowMetrics>() {
+            @Override
+            public int compare(WorkflowMetrics o1, WorkflowMetrics o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Write the report to a file
+     *
+     * @param file The file to write
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        AtomicFileOutputStream output = new AtomicFileOutputStream(file);
+        try {
+            try (Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+                writer.write(toJson());
+            }
+            output.commit();
+        } finally {
+            output.discard();
+        }
+    }
+
+    /**
+     * Gets the report as a JSON document
+     *
+     * @return The JSON report
+     */
+    public String toJson() {
+        List<WorkflowMetrics> sorted = getWorkflows();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"options\": {");
+        String separator = "";
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            json.append(separator);
+            appendString(json, option.getKey());
+            json.append(": ");
+            appendString(json, option.getValue());
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("  \"elapsedMillis\": ").append(toMillis(timer.getElapsedNanos())).append(",\n");
+        json.append("  \"phases\": ");
+        appendPhases(json, getPhaseNanos());
+        json.append(",\n");
+
+        int actions = 0;
+        int edges = 0;
+        int forks = 0;
+        long outputBytes = 0;
+        Map<Phase, Long> phaseTotals = new EnumMap<>(Phase.class);
+        for (WorkflowMetrics workflow : sorted) {
+            actions += workflow.getActions();
+            edges += workflow.getEdges();
+            forks += workflow.getForks();
+            outputBytes += workflow.getOutputBytes();
+            for (Map.Entry<Phase, Long> phase : workflow.getTimer().getPhaseNanos().entrySet()) {
+                Long total = phaseTotals.get(phase.getKey());
+                phaseTotals.put(phase.getKey(), (total == null ? 0 : total) + phase.getValue());
+            }
+        }
+        json.append("  \"totals\": {\"workflows\": ").append(sorted.size());
+        appendCounts(json, actions, edges, forks, outputBytes);
+        json.append(", \"phases\": ");
+        appendPhases(json, phaseTotals);
+        json.append("},\n");
+
+        json.append("  \"workflows\": [");
+        separator = "\n";
+        for (WorkflowMetrics workflow : sorted) {
+            json.append(separator).append("    {\"name\": ");
+            appendString(json, workflow.getName());
+            json.append(", \"elapsedMillis\": ").append(toMillis(workflow.getElapsedNanos()));
+            appendCounts(json, workflow.getActions(), workflow.getEdges(), workflow.getForks(), workflow.getOutputBytes());
+            json.append(", \"phases\": ");
+            appendPhases(json, workflow.getTimer().getPhaseNanos());
+            json.append("}");
+            separator = ",\n";
+        }
+        json.append(sorted.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+
+        return json.toString();
+    }
+
+    private static void appendCounts(StringBuilder json, int actions, int edges, int forks, long outputBytes) {
+        json.append(", \"actions\": ").append(actions)
+                .append(", \"edges\": ").append(edges)
+                .append(", \"forks\": ").append(forks)
+                .append(", \"outputBytes\": ").append(outputBytes);
+    }
+
+    private static void appendPhases(StringBuilder json, Map<Phase, Long> phases) {
+        json.append("{");
+        String separator = "";
+        for (Map.Entry<Phase, Long> phase : phases.entrySet()) {
+            json.append(separator);
+            appendString(json, phase.getKey().getKey());
+            json.append(": ").append(toMillis(phase.getValue()));
+            separator = ", ";
+        }
+        json.append("}");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                    break;
+            }
+        }
+        json.append('"');
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+/**
+ * The phases of a run whose time is reported in the metrics
+ *
+ * @author Andrew Johnson
+ */
+public enum Phase {
+    PARSE_CONFIG("parseConfig"),
+    MERGE_CONFIG("mergeConfig"),
+    LOAD_SNAPSHOT("loadSnapshot"),
+    CHECK_CACHE("checkCache"),
+    PARSE_WORKFLOWS("parseWorkflows"),
+    GENERATE("generate"),
+    // Waiting for Graphviz graphs still being rendered in the background after the workflows are generated
+    RENDER_GRAPHVIZ("renderGraphviz"),
+
+    // The phases of generating a single workflow
+    BUILD_GRAPH("buildGraph"),
+    WRITE_XML("writeXml"),
+    WRITE_FILE("writeFile"),
+    GRAPHVIZ("graphviz");
+
+    private final String key;
+
+    Phase(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Gets the name of this phase in the metrics report
+     *
+     * @return The key for this phase
+     */
+    public String getKey() {
+        return key;
+    }
+}
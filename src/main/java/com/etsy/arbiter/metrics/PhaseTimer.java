@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Accumulates the wall-clock time spent in each phase
+ * Phases may be nested, in which case time is counted only against the innermost phase,
+ * so for example the time spent running Graphviz while building a graph is not also counted as building the graph
+ *
+ * This is not thread-safe, and should only be used by one thread at a time
+ *
+ * @author Andrew Johnson
+ */
+public class PhaseTimer {
+    private final Ticker ticker;
+    private final long created;
+    private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+    private final Deque<Phase> running = new ArrayDeque<>();
+    private long lastTick;
+
+    public PhaseTimer() {
+        this(Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker The source of the current time
+     */
+    public PhaseTimer(Ticker ticker) {
+        this.ticker = ticker;
+        this.created = ticker.read();
+    }
+
+    /**
+     * Start timing a phase, pausing the phase currently running if there is one
+     *
+     * @param phase The phase to start
+     */
+    public void start(Phase phase) {
+        charge();
+        running.push(phase);
+    }
+
+    /**
+     * Stop timing the most recently started phase, resuming the phase it interrupted if there is one
+     */
+    public void stop() {
+        Preconditions.checkState(!running.isEmpty(), "No phase is running");
+        charge();
+        running.pop();
+    }
+
+    /**
+     * Gets the time spent in a phase, excluding time spent in phases nested within it
+     *
+     * @param phase The phase
+     * @return The time in nanoseconds, or 0 if the phase was never started
+     */
+    public long getNanos(Phase phase) {
+        Long value = nanos.get(phase);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Gets the time spent in each phase that was started, in the order the phases are declared
+     *
+     * @return The time in nanoseconds of each phase
+     */
+    public Map<Phase, Long> getPhaseNanos() {
+        return new EnumMap<>(nanos);
+    }
+
+    /**
+     * Gets the time since this timer was created, including time not spent in any phase
+     *
+     * @return The time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return ticker.read() - created;
+    }
+
+    /**
+     * Adds the time since the last start or stop to the phase currently running
+     */
+    private void charge() {
+        long now = ticker.read();
+        Phase current = running.peek();
+        if (current != null) {
+            nanos.put(current, getNanos(current) + now - lastTick);
+        }
+        lastTick = now;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+import com.google.common.base.Ticker;
+
+/**
+ * The time taken to generate a single workflow and the size of the result
+ *
+ * @author Andrew Johnson
+ */
+public class WorkflowMetrics {
+    private final String name;
+    private final PhaseTimer timer;
+    private long elapsedNanos;
+    private int actions;
+    private int edges;
+    private int forks;
+    private long outputBytes;
+
+    /**
+     * @param name The name of the workflow
+     */
+    public WorkflowMetrics(String name) {
+        this(name, Ticker.systemTicker());
+    }
+
+    /**
+     * @param name The name of the workflow
+     * @param ticker The source of the current time
+     */
+    public WorkflowMetrics(String name, Ticker ticker) {
+        this.name = name;
+        this.timer = new PhaseTimer(ticker);
+    }
+
+    /**
+     * Record that the workflow has been generated, fixing its total time
+     */
+    public void finish() {
+        elapsedNanos = timer.getElapsedNanos();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PhaseTimer getTimer() {
+        return timer;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getActions() {
+        return actions;
+    }
+
+    public void setActions(int actions) {
+        this.actions = actions;
+    }
+
+    public int getEdges() {
+        return edges;
+    }
+
+    public void setEdges(int edges) {
+        this.edges = edges;
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public void setForks(int forks) {
+        this.forks = forks;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public void setOutputBytes(long outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.etsy.arbiter.output;
+
+import com.google.common.base.Predicate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes each file as an entry in a single archive
+ * An entry is held in memory until it is committed and then appended to the archive, so only complete files are added
+ * Entries are added in the order in which they are committed, and each path may only be added once
+ * Every entry is given the time at which the sink was created as its modification time
+ *
+ * Closing the sink finishes the archive and closes the underlying stream
+ *
+ * @author Andrew Johnson
+ */
+public abstract class ArchiveOutputSink implements OutputSink {
+    private final OutputStream stream;
+    private final long modificationTime = System.currentTimeMillis();
+    private final Set<String> paths = new HashSet<>();
+    private boolean closed = false;
+
+    /**
+     * @param stream The stream to which to write the archive
+     */
+    protected ArchiveOutputSink(OutputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Start writing a file
+     * The archive is always written from scratch, so no lines are ignored
+     *
+     * @param path The path of the file within the archive, using / as the separator
+     * @param ignoredLines Not used
+     * @return The entry to which to write the content of the file
+     */
+    @Override
+    public OutputEntry create(final String path, Predicate<String> ignoredLines) {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        return new OutputEntry() {
+            @Override
+            public OutputStream getStream() {
+                return content;
+            }
+
+            @Override
+            public boolean commit() throws IOException {
+                add(path, content.toByteArray());
+                return true;
+            }
+
+            @Override
+            public void discard() {
+                // Nothing is added to the archive until the entry is committed
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean contains(String path) {
+        return paths.contains(path);
+    }
+
+    /**
+     * Finish the archive and close the underlying stream
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            finish();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Append a committed file to the archive
+     *
+     * @param path The path of the file within the archive
+     * @param content The content of the file
+     * @throws IOException If the archive is closed, already contains the path or cannot be written
+     */
+    private synchronized void add(String path, byte[] content) throws IOException {
+        if (closed) {
+            throw new IOException("Archive is already closed");
+        }
+        if (!paths.add(path)) {
+            throw new IOException("Archive already contains " + path);
+        }
+
+        writeEntry(path, content, modificationTime);
+    }
+
+    /**
+     * Write a single entry to the archive
+     * This is never called concurrently
+     *
+     * @param path The path of the file within the archive
+     * @param content The content of the file
+     * @param time The modification time of the file in milliseconds since the epoch
+     * @throws IOException
+     */
+    protected abstract void writeEntry(String path, byte[] content, long time) throws IOException;
+
+    /**
+     * Write whatever the archive format requires after the last entry
+     * The underlying stream is closed afterwards
+     *
+     * @throws IOException
+     */
+    protected abstract void finish() throws IOException;
+}
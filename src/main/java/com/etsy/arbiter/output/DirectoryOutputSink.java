@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.output;
+
+import com.etsy.arbiter.util.AtomicFileOutputStream;
+import com.google.common.base.Predicate;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each file to its own path under a directory
+ * Files are replaced atomically, and a file whose content is unchanged is left untouched so that it keeps its modification time
+ *
+ * @author Andrew Johnson
+ */
+public class DirectoryOutputSink implements OutputSink {
+    private final File directory;
+
+    /**
+     * @param directory The directory in which to write the files. It is created if it does not exist
+     * @throws IOException If the directory cannot be created
+     */
+    public DirectoryOutputSink(File directory) throws IOException {
+        FileUtils.forceMkdir(directory);
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public OutputEntry create(String path, Predicate<String> ignoredLines) throws IOException {
+        File file = new File(directory, path);
+        FileUtils.forceMkdir(file.getParentFile());
+        final AtomicFileOutputStream stream = new AtomicFileOutputStream(file, ignoredLines);
+
+        return new OutputEntry() {
+            @Override
+            public OutputStream getStream() {
+                return stream;
+            }
+
+            @Override
+            public boolean commit() throws IOException {
+                return stream.commit();
+            }
+
+            @Override
+            public void discard() throws IOException {
+                stream.discard();
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(String path) {
+        return new File(directory, path).isFile();
+    }
+
+    /**
+     * Files are complete as soon as they are committed, so there is nothing to finish
+     */
+    @Override
+    public void close() { }
+}
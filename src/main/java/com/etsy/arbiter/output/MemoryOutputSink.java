@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.output;
+
+import com.google.common.base.Predicate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps each file in memory, for callers that want the generated workflows without writing them to disk
+ *
+ * @author Andrew Johnson
+ */
+public class MemoryOutputSink implements OutputSink {
+    private final SortedMap<String, byte[]> files = new ConcurrentSkipListMap<>();
+
+    /**
+     * Start writing a file
+     * An existing file with the same path is always replaced, so no lines are ignored
+     *
+     * @param path The path of the file within the output, using / as the separator
+     * @param ignoredLines Not used
+     * @return The entry to which to write the content of the file
+     */
+    @Override
+    public OutputEntry create(final String path, Predicate<String> ignoredLines) {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        return new OutputEntry() {
+            @Override
+            public OutputStream getStream() {
+                return stream;
+            }
+
+            @Override
+            public boolean commit() {
+                files.put(path, stream.toByteArray());
+                return true;
+            }
+
+            @Override
+            public void discard() {
+                // Nothing is added to the output until the entry is committed
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(String path) {
+        return files.containsKey(path);
+    }
+
+    /**
+     * Gets the files that have been committed, ordered by path
+     *
+     * @return A view of the paths of the files and their content
+     */
+    public SortedMap<String, byte[]> getFiles() {
+        return Collections.unmodifiableSortedMap(files);
+    }
+
+    /**
+     * Gets the content of a file as text
+     *
+     * @param path The path of the file
+     * @return The content of the file decoded as UTF-8, or null if no such file has been committed
+     */
+    public String getString(String path) {
+        byte[] content = files.get(path);
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() { }
+}
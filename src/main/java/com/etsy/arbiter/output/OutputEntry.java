@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A file being written to an OutputSink
+ * The content is only added to the output when the entry is committed
+ *
+ * @author Andrew Johnson
+ */
+public interface OutputEntry {
+    /**
+     * Gets the stream to which to write the content of the file
+     * Closing the stream does not commit the entry
+     *
+     * @return The stream for the content of the file
+     */
+    OutputStream getStream();
+
+    /**
+     * Add the written content to the output
+     *
+     * @return true if the output was changed, false if it already contained the same content
+     * @throws IOException
+     */
+    boolean commit() throws IOException;
+
+    /**
+     * Abandon the entry, leaving the output untouched
+     * This has no effect if the entry was already committed
+     *
+     * @throws IOException
+     */
+    void discard() throws IOException;
+}
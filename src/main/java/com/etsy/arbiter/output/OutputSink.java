@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.output;
+
+import com.google.common.base.Predicate;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The destination for the files produced when generating workflows
+ * Files are written as entries that only become part of the output once they are committed
+ * Implementations must be safe to use from multiple threads, as workflows may be generated concurrently
+ *
+ * @author Andrew Johnson
+ */
+public interface OutputSink extends Closeable {
+    /**
+     * Start writing a file
+     *
+     * @param path The path of the file within the output, using / as the separator
+     * @param ignoredLines Matches lines that should not be considered when checking if the content of an existing file has changed
+     * @return The entry to which to write the content of the file
+     * @throws IOException If the file cannot be created
+     */
+    OutputEntry create(String path, Predicate<String> ignoredLines) throws IOException;
+
+    /**
+     * Check whether the output already contains a file
+     *
+     * @param path The path of the file within the output, using / as the separator
+     * @return true if a file with the given path has been written
+     */
+    boolean contains(String path);
+}
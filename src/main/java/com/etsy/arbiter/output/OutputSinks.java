@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.etsy.arbiter.output;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.util.Locale;
+
+/**
+ * Opens the output sink for an output target given on the command line
+ *
+ * @author Andrew Johnson
+ */
+public class OutputSinks {
+    private OutputSinks() { }
+
+    /**
+     * The target that streams a tar archive to standard output
+     */
+    public static final String STANDARD_OUTPUT = "-";
+
+    /**
+     * Check whether a target is written as a single archive rather than a directory
+     *
+     * @param target The output target
+     * @return true if the target is standard output or a file ending in .zip or .tar
+     */
+    public static boolean isArchive(String target) {
+        String lower = target.toLowerCase(Locale.ROOT);
+        return STANDARD_OUTPUT.equals(target) || lower.endsWith(".zip") || lower.endsWith(".tar");
+    }
+
+    /**
+     * Open the sink for an output target
+     * A target ending in .zip or .tar is written as an archive of that type, replacing any existing file,
+     * - streams a tar archive to standard output, and anything else is a directory
+     *
+     * @param target The output target
+     * @return The sink for the target. This must be closed to finish an archive
+     * @throws IOException If the target cannot be created
+     */
+    public static OutputSink open(String target) throws IOException {
+        if (STANDARD_OUTPUT.equals(target)) {
+            // System.out swallows errors, so the archive is written to the underlying descriptor
+            return new TarOutputSink(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        }
+
+        String lower = target.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip")) {
+            return new ZipOutputSink(new BufferedOutputStream(FileUtils.openOutputStream(new File(target))));
+        }
+        if (lower.endsWith(".tar")) {
+            return new TarOutputSink(new BufferedOutputStream(FileUtils.openOutputStream(new File(target))));
+        }
+        return new DirectoryOutputSink(new File(target));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.etsy.arbiter.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the generated files into a POSIX ustar archive
+ * The archive is written as a stream, so it may be written to a pipe such as standard output
+ * Paths too long for the ustar header are recorded in a pax extended header, which both GNU tar and bsdtar understand
+ *
+ * @author Andrew Johnson
+ */
+public class TarOutputSink extends ArchiveOutputSink {
+    private static final int BLOCK_SIZE = 512;
+    // tar reads archives in records of 20 blocks, so the archive is padded to a whole record
+    private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+    private static final int FILE_MODE = 0644;
+    private static final String PAX_HEADER_NAME = "PaxHeader";
+
+    private final OutputStream stream;
+    private long written = 0;
+
+    /**
+     * @param stream The stream to which to write the archive. This is closed when the sink is closed
+     */
+    public TarOutputSink(OutputStream stream) {
+        super(stream);
+        this.stream = stream;
+    }
+
+    @Override
+    protected void writeEntry(String path, byte[] content, long time) throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        int split = findSplit(name);
+        if (split < 0) {
+            // The path doesn't fit in the header, so it is given in an extended header that applies to the next entry
+            byte[] record = paxRecord("path", path);
+            writeBlocks(header(PAX_HEADER_NAME.getBytes(StandardCharsets.UTF_8), -1, record.length, time, 'x'));
+            writeContent(record);
+            writeBlocks(header(Arrays.copyOf(name, NAME_LENGTH), -1, content.length, time, '0'));
+        } else {
+            writeBlocks(header(name, split, content.length, time, '0'));
+        }
+        writeContent(content);
+    }
+
+    /**
+     * Write the two empty blocks that mark the end of the archive, padded to a whole record
+     *
+     * @throws IOException
+     */
+    @Override
+    protected void finish() throws IOException {
+        long end = written + 2 * BLOCK_SIZE;
+        long padded = (end + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+        writeBlocks(new byte[(int) (padded - written)]);
+        stream.flush();
+    }
+
+    /**
+     * Find where to split a path between the prefix and name fields of the header
+     *
+     * @param name The path as UTF-8
+     * @return -1 if the path must be given in an extended header, the length of the name if it fits in the name field alone,
+     *         or otherwise the index of the separator between the prefix and the name
+     */
+    private static int findSplit(byte[] name) {
+        if (name.length <= NAME_LENGTH) {
+            return name.length;
+        }
+        for (int i = Math.max(0, name.length - NAME_LENGTH - 1); i <= PREFIX_LENGTH && i < name.length - 1; i++) {
+            if (name[i] == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Build a ustar header block
+     *
+     * @param name The path as UTF-8
+     * @param split Where to split the path as returned by findSplit, or -1 to truncate the path to the name field
+     * @param size The size of the content of the entry
+     * @param time The modification time in milliseconds since the epoch
+     * @param type The type of the entry
+     * @return The header block
+     */
+    private static byte[] header(byte[] name, int split, long size, long time, char type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        if (split < 0 || split == name.length) {
+            System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        } else {
+            System.arraycopy(name, split + 1, header, 0, name.length - split - 1);
+            System.arraycopy(name, 0, header, 345, split);
+        }
+        octal(header, 100, 8, FILE_MODE);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, time / 1000);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        // The checksum is calculated with its own field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Write a number into a header field as zero-padded octal followed by a NUL
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        byte[] digits = String.format("%0" + (length - 1) + "o", value).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * Build a pax extended header record, which starts with its own length in bytes
+     */
+    private static byte[] paxRecord(String key, String value) {
+        int length = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int total = length + String.valueOf(length).length();
+        if (String.valueOf(total).length() != String.valueOf(length).length()) {
+            total = length + String.valueOf(total).length();
+        }
+        return (total + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeContent(byte[] content) throws IOException {
+        stream.write(content);
+        written += content.length;
+        int remainder = content.length % BLOCK_SIZE;
+        if (remainder != 0) {
+            writeBlocks(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    private void writeBlocks(byte[] blocks) throws IOException {
+        stream.write(blocks);
+        written += blocks.length;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.etsy.arbiter.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the generated files into a zip archive
+ *
+ * @author Andrew Johnson
+ */
+public class ZipOutputSink extends ArchiveOutputSink {
+    private final ZipOutputStream zip;
+
+    /**
+     * @param stream The stream to which to write the archive. This is closed when the sink is closed
+     */
+    public ZipOutputSink(OutputStream stream) {
+        this(new ZipOutputStream(stream));
+    }
+
+    private ZipOutputSink(ZipOutputStream zip) {
+        super(zip);
+        this.zip = zip;
+    }
+
+    @Override
+    protected void writeEntry(String path, byte[] content, long time) throws IOException {
+        ZipEntry entry = new ZipEntry(path);
+        entry.setTime(time);
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        zip.finish();
+    }
+}
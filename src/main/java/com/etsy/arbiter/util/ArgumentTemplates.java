@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.apache.commons.lang3.text.StrLookup;
+
+import java.util.*;
+
+/**
+ * The default arguments of an action type, compiled into templates once so they can be rendered for each action
+ * Instances are immutable and safe to share between threads
+ *
+ * @author Andrew Johnson
+ */
+public class ArgumentTemplates {
+    private final Map<String, List<String>> source;
+    private final Map<String, InterpolationTemplate[]> templates;
+
+    private ArgumentTemplates(Map<String, List<String>> source, Map<String, InterpolationTemplate[]> templates) {
+        this.source = source;
+        this.templates = templates;
+    }
+
+    /**
+     * Compile a map of arguments
+     * The map should not be modified afterwards
+     *
+     * @param source The arguments possibly containing keys to be interpolated
+     * @return The compiled arguments
+     */
+    public static ArgumentTemplates compile(Map<String, List<String>> source) {
+        if (source == null) {
+            return new ArgumentTemplates(null, null);
+        }
+
+        Map<String, InterpolationTemplate[]> templates = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : source.entrySet()) {
+            InterpolationTemplate[] compiled = new InterpolationTemplate[entry.getValue().size()];
+            int i = 0;
+            for (String value : entry.getValue()) {
+                compiled[i++] = InterpolationTemplate.compile(value);
+            }
+            templates.put(entry.getKey(), compiled);
+        }
+
+        return new ArgumentTemplates(source, Collections.unmodifiableMap(templates));
+    }
+
+    /**
+     * Render the arguments for an action
+     * A value that is exactly the key of a list argument, after interpolation, is replaced by the values of that list argument
+     * Each list argument is spliced in at most once
+     *
+     * @param namedArgs The key/value pairs used for interpolation. If this is null, the arguments are returned unchanged
+     * @param defaultArgs Default values for the named args, used if an interpolation key has no value given
+     * @param listArgs The key/value list pairs used for list interpolation. This is not modified
+     * @param splicedKeys Receives the keys of the list arguments that were spliced into the result
+     * @return The arguments with interpolation performed, in the same order as the compiled arguments
+     */
+    public Map<String, List<String>> render(Map<String, String> namedArgs, Map<String, String> defaultArgs, Map<String, List<String>> listArgs, Set<String> splicedKeys) {
+        if (namedArgs == null || templates == null) {
+            return source;
+        }
+
+        StrLookup<String> lookup = NamedArgumentInterpolator.createLookup(namedArgs, defaultArgs);
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, InterpolationTemplate[]> entry : templates.entrySet()) {
+            List<String> values = new ArrayList<>(entry.getValue().length);
+            for (InterpolationTemplate template : entry.getValue()) {
+                String rendered = template.render(lookup);
+
+                // We only support standalone entries as it does not make sense to interpolate a list as part of a string
+                if (listArgs != null) {
+                    String listKey = template.getListKey(rendered);
+                    if (!splicedKeys.contains(listKey) && listArgs.containsKey(listKey)) {
+                        values.addAll(listArgs.get(listKey));
+                        splicedKeys.add(listKey);
+                        continue;
+                    }
+                }
+                values.add(rendered);
+            }
+            result.put(entry.getKey(), values);
+        }
+
+        return result;
+    }
+}
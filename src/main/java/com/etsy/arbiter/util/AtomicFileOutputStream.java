@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a file by way of a temporary file in the same directory
+ * The temporary file replaces the target with an atomic rename when the write is committed, so readers never see a partial file
+ * If the new content is the same as that of the existing file, the existing file is left untouched
+ *
+ * @author Andrew Johnson
+ */
+public class AtomicFileOutputStream extends FilterOutputStream {
+    private final File target;
+    private final File temp;
+    private final Predicate<String> ignoredLines;
+    private boolean closed = false;
+    private boolean finished = false;
+
+    /**
+     * @param target The file to write
+     */
+    public AtomicFileOutputStream(File target) throws IOException {
+        this(target, Predicates.<String>alwaysFalse());
+    }
+
+    /**
+     * @param target The file to write
+     * @param ignoredLines Matches lines that should not be considered when checking if the content has changed, such as those containing a timestamp
+     */
+    public AtomicFileOutputStream(File target, Predicate<String> ignoredLines) throws IOException {
+        this(target, File.createTempFile("." + target.getName(), ".tmp", target.getAbsoluteFile().getParentFile()), ignoredLines);
+    }
+
+    private AtomicFileOutputStream(File target, File temp, Predicate<String> ignoredLines) throws IOException {
+        super(new BufferedOutputStream(new FileOutputStream(temp)));
+        this.target = target;
+        this.temp = temp;
+        this.ignoredLines = ignoredLines;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream writes arrays one byte at a time
+        out.write(b, off, len);
+    }
+
+    /**
+     * Close the temporary file
+     * The target is not modified until commit is called
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * Replace the target with the written content
+     * If the content is unchanged the target is not modified at all
+     *
+     * @return true if the target was written, false if it was left unchanged
+     * @throws IOException
+     */
+    public boolean commit() throws IOException {
+        close();
+        finished = true;
+
+        if (target.isFile() && contentEquals(temp, target)) {
+            Files.delete(temp.toPath());
+            return false;
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    /**
+     * Abandon the write, leaving the target untouched
+     * This has no effect if the write was already committed
+     *
+     * @throws IOException
+     */
+    public void discard() throws IOException {
+        if (!finished) {
+            finished = true;
+            close();
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Compares two files line by line, skipping lines that are ignored in both files
+     */
+    private boolean contentEquals(File first, File second) throws IOException {
+        if (first.length() != second.length()) {
+            return false;
+        }
+
+        try (BufferedReader firstReader = Files.newBufferedReader(first.toPath(), StandardCharsets.UTF_8);
+             BufferedReader secondReader = Files.newBufferedReader(second.toPath(), StandardCharsets.UTF_8)) {
+            while (true) {
+                String firstLine = firstReader.readLine();
+                String secondLine = secondReader.readLine();
+                if (firstLine == null || secondLine == null) {
+                    return firstLine == null && secondLine == null;
+                }
+                if (!firstLine.equals(secondLine) && !(ignoredLines.apply(firstLine) && ignoredLines.apply(secondLine))) {
+                    return false;
+                }
+            }
+        }
+    }
+}
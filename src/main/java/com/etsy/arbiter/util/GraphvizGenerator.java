@@ -24,9 +24,9 @@ import org.jgrapht.ext.EdgeNameProvider;
 import org.jgrapht.ext.VertexNameProvider;
 import org.jgrapht.graph.DefaultEdge;
 
-import java.io.*;
-import java.util.Arrays;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.*;
 
 /**
  * Generates a Graphviz DOT file and PNG from a workflow graph
@@ -38,14 +38,136 @@ public class GraphvizGenerator {
 
     private static final Logger LOG = Logger.getLogger(GraphvizGenerator.class);
 
+    /**
+     * The type of the nodes that stand for a collapsed fork/join region
+     */
+    public static final String COLLAPSED_TYPE = "collapsed";
+
     /**
      * Generate a Graphviz DOT file and PNG from a workflow graph
+     * This waits for the graph to be rendered. Use a GraphvizRenderer to render graphs in the background
      *
      * @param graph The graph from which to generate the Graphviz file
      * @param fileName The name of the DOT file to be generated
      * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
      */
     public static void generateGraphviz(DirectedAcyclicGraph<Action, DefaultEdge> graph, String fileName, String graphvizFormat) {
+        try (GraphvizRenderer renderer = new GraphvizRenderer(graphvizFormat, 1)) {
+            renderer.render(graph, fileName);
+        } catch (InterruptedIOException e) {
+            LOG.warn("Interrupted while generating Graphviz", e);
+        }
+    }
+
+    /**
+     * Summarise a workflow graph by replacing each fork/join region nested more deeply than the given depth with a single node
+     * The summary node is named after the fork and join it replaces and the number of actions between them
+     * The size of the summarised graph is bounded by the size of the regions above the given depth rather than the whole workflow
+     *
+     * @param graph The graph to summarise
+     * @param maxDepth The number of levels of nested fork/join regions to keep. Regions at depth 0 are not nested in any other region
+     * @return A new graph with the deeper fork/join regions collapsed, or the given graph if there is nothing to collapse
+     */
+    public static DirectedAcyclicGraph<Action, DefaultEdge> collapse(DirectedAcyclicGraph<Action, DefaultEdge> graph, int maxDepth) {
+        // The depth of an action is the number of fork/join regions enclosing it. A fork and its join lie outside their own region
+        List<Action> order = new ArrayList<>(graph.vertexSet().size());
+        Iterator<Action> topological = graph.iterator();
+        while (topological.hasNext()) {
+            order.add(topological.next());
+        }
+
+        Map<Action, Integer> depths = new HashMap<>();
+        for (Action action : order) {
+            int depth = 0;
+            Set<DefaultEdge> incoming = graph.incomingEdgesOf(action);
+            if (!incoming.isEmpty()) {
+                Action predecessor = graph.getEdgeSource(incoming.iterator().next());
+                depth = depths.get(predecessor) + (isFork(predecessor) ? 1 : 0) - (isJoin(action) ? 1 : 0);
+            }
+            depths.put(action, depth);
+        }
+
+        // Every action in a collapsed region, including its fork and join, is represented by the region's summary node
+        Map<Action, Action> summaries = new HashMap<>();
+        for (Action action : order) {
+            if (isFork(action) && depths.get(action) == maxDepth) {
+                collapseRegion(graph, action, depths, summaries);
+            }
+        }
+        if (summaries.isEmpty()) {
+            return graph;
+        }
+
+        DirectedAcyclicGraph<Action, DefaultEdge> collapsed = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        for (Action action : order) {
+            collapsed.addVertex(summaries.containsKey(action) ? summaries.get(action) : action);
+        }
+        for (DefaultEdge edge : graph.edgeSet()) {
+            Action source = graph.getEdgeSource(edge);
+            Action target = graph.getEdgeTarget(edge);
+            source = summaries.containsKey(source) ? summaries.get(source) : source;
+            target = summaries.containsKey(target) ? summaries.get(target) : target;
+            if (!source.equals(target) && !collapsed.containsEdge(source, target)) {
+                collapsed.addEdge(source, target);
+            }
+        }
+        return collapsed;
+    }
+
+    /**
+     * Find the actions between a fork and its join and map them all to a new summary node
+     */
+    private static void collapseRegion(DirectedAcyclicGraph<Action, DefaultEdge> graph, Action fork, Map<Action, Integer> depths, Map<Action, Action> summaries) {
+        int depth = depths.get(fork);
+        List<Action> members = new ArrayList<>();
+        members.add(fork);
+        Set<Action> seen = new HashSet<>(members);
+        Deque<Action> toVisit = new ArrayDeque<>(members);
+        Action join = null;
+        int actions = 0;
+        while (!toVisit.isEmpty()) {
+            Action action = toVisit.pop();
+            for (DefaultEdge edge : graph.outgoingEdgesOf(action)) {
+                Action successor = graph.getEdgeTarget(edge);
+                if (!seen.add(successor)) {
+                    continue;
+                }
+                members.add(successor);
+                // The region ends at the join back at the depth of the fork
+                if (depths.get(successor) <= depth) {
+                    join = successor;
+                    continue;
+                }
+                if (!isFork(successor) && !isJoin(successor)) {
+                    actions++;
+                }
+                toVisit.push(successor);
+            }
+        }
+
+        Action summary = new Action();
+        summary.setName(String.format("%s to %s (%d actions)", fork.getName(), join != null ? join.getName() : "end", actions));
+        summary.setType(COLLAPSED_TYPE);
+        for (Action member : members) {
+            summaries.put(member, summary);
+        }
+    }
+
+    private static boolean isFork(Action action) {
+        return "fork".equals(action.getType());
+    }
+
+    private static boolean isJoin(Action action) {
+        return "join".equals(action.getType());
+    }
+
+    /**
+     * Write a workflow graph in the DOT format
+     *
+     * @param graph The graph to write
+     * @param writer The writer to which to write the graph
+     */
+    public static void exportDot(DirectedAcyclicGraph<Action, DefaultEdge> graph, Writer writer) {
         DOTExporter<Action, DefaultEdge> exporter = new DOTExporter<>(new VertexNameProvider<Action>() {
             @Override
             public String getVertexName(Action o) {
@@ -67,31 +189,6 @@ public class GraphvizGenerator {
                 return "";
             }
         });
-        try {
-            FileWriter writer = new FileWriter(fileName);
-            exporter.export(writer, graph);
-            writer.close();
-
-            List<String> dotShellCommand = Arrays.asList("dot", String.format("-T%s", graphvizFormat), fileName, String.format("-O%s",
-                    fileName.replace(".dot", String.format(".%s", graphvizFormat))));
-            ProcessBuilder processBuilder = new ProcessBuilder(dotShellCommand)
-                    .redirectErrorStream(true)
-                    .directory(new File("."));
-            Process p = processBuilder.start();
-
-            BufferedReader br = new BufferedReader(
-                    new InputStreamReader(p.getInputStream()));
-            String line;
-            while ((line = br.readLine()) != null) {
-                System.out.println(line);
-            }
-
-            int result = p.waitFor();
-            if (result != 0) {
-                LOG.warn(String.format("dot command exited unsuccessfully with exit code %d", result));
-            }
-        } catch (IOException | InterruptedException e) {
-            LOG.warn("Error generating Graphviz", e);
-        }
+        exporter.export(writer, graph);
     }
 }
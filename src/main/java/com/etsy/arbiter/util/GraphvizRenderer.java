@@ -0,0 +1,339 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.output.DirectoryOutputSink;
+import com.etsy.arbiter.output.OutputEntry;
+import com.etsy.arbiter.output.OutputSink;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Writes Graphviz DOT files for workflow graphs and renders them with the dot tool in the background
+ *
+ * DOT files are written immediately, but rendering runs on a fixed pool of threads so that it overlaps with generating the workflows.
+ * A graph is only rendered again if its DOT file has changed or its rendered file is missing.
+ * Rendered files are written to a temporary file and only added to the output once complete, so an existing rendered file is always complete.
+ * Files are written through an output sink, so graphs may be written into an archive as well as a directory.
+ *
+ * Deeply nested fork/join regions may be collapsed into single nodes so that graphs of huge workflows stay readable and quick to render
+ * The svg-native format renders SVG in-process with SvgGraphWriter instead, so dot does not need to be installed
+ *
+ * This is safe to use from multiple threads. Closing it waits for all pending renders to finish
+ *
+ * @author Andrew Johnson
+ */
+public class GraphvizRenderer implements Closeable {
+    /**
+     * The format that renders SVG in-process rather than with dot
+     */
+    public static final String NATIVE_SVG_FORMAT = "svg-native";
+
+    /**
+     * The depth at which to collapse fork/join regions so that no regions are collapsed
+     */
+    public static final int UNLIMITED_DEPTH = -1;
+
+    private static final Logger LOG = Logger.getLogger(GraphvizRenderer.class);
+
+    private final String format;
+    private final int collapseDepth;
+    private final String executable;
+    private final ExecutorService executor;
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /**
+     * @param format The format in which to render graphs, such as svg or png, or svg-native to render SVG without dot
+     * @param threads The maximum number of dot processes to run at once
+     */
+    public GraphvizRenderer(String format, int threads) {
+        this(format, threads, UNLIMITED_DEPTH);
+    }
+
+    /**
+     * @param format The format in which to render graphs, such as svg or png, or svg-native to render SVG without dot
+     * @param threads The maximum number of dot processes to run at once
+     * @param collapseDepth The number of levels of nested fork/join regions to draw in full, or UNLIMITED_DEPTH to draw every action
+     */
+    public GraphvizRenderer(String format, int threads, int collapseDepth) {
+        this(format, threads, collapseDepth, "dot");
+    }
+
+    /**
+     * @param format The format in which to render graphs, such as svg or png
+     * @param threads The maximum number of dot processes to run at once
+     * @param executable The dot executable
+     */
+    GraphvizRenderer(String format, int threads, String executable) {
+        this(format, threads, UNLIMITED_DEPTH, executable);
+    }
+
+    /**
+     * @param format The format in which to render graphs, such as svg or png
+     * @param threads The maximum number of dot processes to run at once
+     * @param collapseDepth The number of levels of nested fork/join regions to draw in full, or UNLIMITED_DEPTH to draw every action
+     * @param executable The dot executable
+     */
+    GraphvizRenderer(String format, int threads, int collapseDepth, String executable) {
+        Preconditions.checkArgument(threads > 0, "Thread count must be positive");
+        Preconditions.checkArgument(collapseDepth >= UNLIMITED_DEPTH, "Collapse depth must not be negative");
+        this.format = format;
+        this.collapseDepth = collapseDepth;
+        this.executable = executable;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("graphviz-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Write the DOT file for a graph and schedule it to be rendered
+     * The graph is rendered to a file named after the DOT file with the format appended, such as workflow.dot.svg
+     * The DOT file is written in the svg-native format too, as it is used to tell whether the graph has changed
+     *
+     * @param workflowGraph The graph to render
+     * @param fileName The name of the DOT file to write
+     * @return true if the graph was scheduled to be rendered, false if the existing rendered file is up to date or the DOT file could not be written
+     */
+    public boolean render(DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph, String fileName) {
+        File dotFile = new File(fileName);
+        OutputSink sink;
+        try {
+            sink = new DirectoryOutputSink(dotFile.getParentFile() == null ? new File(".") : dotFile.getParentFile());
+        } catch (IOException e) {
+            LOG.warn("Error generating Graphviz", e);
+            return false;
+        }
+        return render(workflowGraph, sink, dotFile.getName());
+    }
+
+    /**
+     * Write the DOT file for a graph to an output sink and schedule it to be rendered into the same sink
+     * The graph is rendered to a file named after the DOT file with the format appended, such as workflow.dot.svg
+     * The sink must stay open until the renders have finished
+     *
+     * @param workflowGraph The graph to render
+     * @param sink The sink to which to write the DOT file and the rendered graph
+     * @param path The path of the DOT file within the sink
+     * @return true if the graph was scheduled to be rendered, false if the existing rendered file is up to date or the DOT file could not be written
+     */
+    public boolean render(DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph, final OutputSink sink, final String path) {
+        // The DOT file describes the collapsed graph, so changing the depth renders the graph again
+        final DirectedAcyclicGraph<Action, DefaultEdge> graph = collapseDepth == UNLIMITED_DEPTH ? workflowGraph : GraphvizGenerator.collapse(workflowGraph, collapseDepth);
+        final boolean nativeSvg = NATIVE_SVG_FORMAT.equals(format);
+        final String renderedPath = getRenderedPath(path, format);
+
+        // An unchanged DOT file is left untouched, and so is the file rendered from it
+        final byte[] dot;
+        boolean changed;
+        try {
+            dot = exportDot(graph);
+            changed = write(sink, path, dot);
+        } catch (IOException e) {
+            LOG.warn("Error generating Graphviz", e);
+            return false;
+        }
+
+        if (!changed && sink.contains(renderedPath)) {
+            LOG.debug(String.format("Graph %s is unchanged", renderedPath));
+            return false;
+        }
+
+        synchronized (pending) {
+            pending.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    boolean rendered = false;
+                    try {
+                        if (nativeSvg) {
+                            renderSvg(graph, sink, renderedPath);
+                            rendered = true;
+                        } else {
+                            rendered = renderDot(dot, sink, path, renderedPath);
+                        }
+                    } finally {
+                        if (!rendered) {
+                            removeStaleRender(sink, renderedPath);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        return true;
+    }
+
+    /**
+     * Wait for all of the scheduled renders to finish
+     * Failed renders are logged rather than thrown, as the graphs are not required for the workflows to be usable
+     *
+     * @throws InterruptedIOException If interrupted while waiting
+     */
+    public void awaitRenders() throws InterruptedIOException {
+        List<Future<?>> toAwait;
+        synchronized (pending) {
+            toAwait = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        for (Future<?> render : toAwait) {
+            try {
+                render.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rendering Graphviz graphs");
+            } catch (ExecutionException e) {
+                LOG.warn("Error generating Graphviz", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Wait for all of the scheduled renders to finish and stop the rendering threads
+     *
+     * @throws InterruptedIOException If interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        try {
+            awaitRenders();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the path of the file a DOT file is rendered to
+     *
+     * @param path The path of the DOT file
+     * @param format The format in which graphs are rendered
+     * @return The path of the rendered file, such as workflow.dot.svg
+     */
+    public static String getRenderedPath(String path, String format) {
+        return path + "." + (NATIVE_SVG_FORMAT.equals(format) ? "svg" : format);
+    }
+
+    private static byte[] exportDot(DirectedAcyclicGraph<Action, DefaultEdge> graph) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            GraphvizGenerator.exportDot(graph, writer);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Write a file to a sink, leaving it untouched if its content is unchanged
+     *
+     * @return true if the file was written, false if it was unchanged
+     */
+    private static boolean write(OutputSink sink, String path, byte[] content) throws IOException {
+        OutputEntry output = sink.create(path, Predicates.<String>alwaysFalse());
+        try {
+            output.getStream().write(content);
+            output.getStream().close();
+            return output.commit();
+        } finally {
+            output.discard();
+        }
+    }
+
+    /**
+     * Render a graph as SVG without dot
+     */
+    private static void renderSvg(DirectedAcyclicGraph<Action, DefaultEdge> graph, OutputSink sink, String renderedPath) throws IOException {
+        OutputEntry output = sink.create(renderedPath, Predicates.<String>alwaysFalse());
+        try {
+            SvgGraphWriter.write(graph, output.getStream());
+            output.commit();
+        } finally {
+            output.discard();
+        }
+    }
+
+    /**
+     * Remove the file rendered from an earlier version of a graph once rendering the new version has failed
+     * The new DOT file is already written, so the old rendered file would otherwise be taken as up to date and never replaced.
+     * Only a directory keeps files from earlier runs, as the other sinks start empty
+     */
+    private static void removeStaleRender(OutputSink sink, String renderedPath) throws IOException {
+        if (sink instanceof DirectoryOutputSink) {
+            Files.deleteIfExists(new File(((DirectoryOutputSink) sink).getDirectory(), renderedPath).toPath());
+        }
+    }
+
+    /**
+     * Run dot to render a DOT file
+     * dot writes to a temporary file that is only copied into the sink if it succeeds, so an existing rendered file is always complete
+     * The DOT file in a directory is rendered in place, and for any other sink it is first copied to a temporary file
+     *
+     * @return true if the graph was rendered, false if dot failed
+     */
+    private boolean renderDot(byte[] dot, OutputSink sink, String path, String renderedPath) throws IOException, InterruptedException {
+        boolean inPlace = sink instanceof DirectoryOutputSink;
+        File dotFile = inPlace ? new File(((DirectoryOutputSink) sink).getDirectory(), path) : File.createTempFile("arbiter", ".dot");
+        File temp = null;
+        try {
+            if (!inPlace) {
+                Files.write(dotFile.toPath(), dot);
+            }
+            temp = File.createTempFile("arbiter", "." + format);
+
+            List<String> command = Arrays.asList(executable, String.format("-T%s", format), dotFile.getPath(), "-o", temp.getPath());
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .start();
+
+            String messages;
+            try (InputStream stream = process.getInputStream()) {
+                messages = IOUtils.toString(stream, StandardCharsets.UTF_8).trim();
+            }
+
+            int result = process.waitFor();
+            if (result != 0) {
+                LOG.warn(String.format("dot command exited unsuccessfully with exit code %d for %s%s", result, path, messages.isEmpty() ? "" : ": " + messages));
+                return false;
+            }
+            if (!messages.isEmpty()) {
+                LOG.info(String.format("dot output for %s: %s", path, messages));
+            }
+
+            write(sink, renderedPath, Files.readAllBytes(temp.toPath()));
+            return true;
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp.toPath());
+            }
+            if (!inPlace) {
+                Files.deleteIfExists(dotFile.toPath());
+            }
+        }
+    }
+}
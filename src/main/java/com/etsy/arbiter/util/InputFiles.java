@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Expands the inputs given on the command line into the list of workflow files to process
+ * An input may be a file, a directory, which stands for every YAML file beneath it, or a glob pattern such as workflows/**.yaml
+ * Inputs may also be listed in a manifest file, one per line
+ *
+ * @author Andrew Johnson
+ */
+public class InputFiles {
+    private InputFiles() { }
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    /**
+     * Expand inputs into the files they stand for
+     * Each file is only listed once, in the position of the first input matching it
+     *
+     * @param inputs The files, directories and glob patterns given as inputs. May be null
+     * @param manifest A file listing further inputs, or null if there is none
+     * @return The files to process
+     * @throws IOException If the manifest cannot be read, or a directory or pattern contains no workflow files
+     */
+    public static String[] expand(String[] inputs, String manifest) throws IOException {
+        Set<String> files = new LinkedHashSet<>();
+        if (inputs != null) {
+            for (String input : inputs) {
+                files.addAll(expand(input));
+            }
+        }
+        if (manifest != null) {
+            for (String input : readManifest(new File(manifest))) {
+                files.addAll(expand(input));
+            }
+        }
+
+        return files.toArray(new String[files.size()]);
+    }
+
+    /**
+     * Read the inputs listed in a manifest
+     * Blank lines and lines starting with # are ignored. Relative paths are relative to the directory containing the manifest
+     *
+     * @param manifest The manifest file
+     * @return The inputs listed in the manifest
+     * @throws IOException If the manifest cannot be read
+     */
+    public static List<String> readManifest(File manifest) throws IOException {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        List<String> inputs = new ArrayList<>();
+        for (String line : FileUtils.readLines(manifest, StandardCharsets.UTF_8)) {
+            String input = line.trim();
+            if (input.isEmpty() || input.startsWith("#")) {
+                continue;
+            }
+            inputs.add(new File(input).isAbsolute() ? input : new File(directory, input).getPath());
+        }
+        return inputs;
+    }
+
+    /**
+     * Expand a single input
+     * An input that is neither a directory nor a pattern is returned as it is, so a missing file is reported when it is read
+     */
+    private static List<String> expand(String input) throws IOException {
+        if (new File(input).isDirectory()) {
+            return match(Paths.get(input), "**.{yaml,yml}", input);
+        }
+
+        int globStart = indexOfGlob(input);
+        if (globStart < 0) {
+            return Collections.singletonList(input);
+        }
+
+        // The pattern is matched against the paths below the last directory named before the first wildcard
+        int baseEnd = input.lastIndexOf('/', globStart);
+        Path base = baseEnd < 0 ? Paths.get("") : Paths.get(baseEnd == 0 ? "/" : input.substring(0, baseEnd));
+        return match(base, input.substring(baseEnd + 1), input);
+    }
+
+    private static List<String> match(final Path base, String pattern, String input) throws IOException {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final List<String> matches = new ArrayList<>();
+
+        // Only ** matches across directories, so other patterns need not look deeper than they have path segments
+        int depth = pattern.contains("**") ? Integer.MAX_VALUE : pattern.split("/").length;
+        if (Files.isDirectory(base)) {
+            Files.walkFileTree(base, EnumSet.of(FileVisitOption.FOLLOW_LINKS), depth, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && matcher.matches(base.relativize(file))) {
+                        matches.add(file.toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        if (matches.isEmpty()) {
+            throw new IOException("No workflow files found for input " + input);
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.apache.commons.lang3.text.StrLookup;
+import org.apache.commons.lang3.text.StrSubstitutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A string split once into literal text and the names of the variables to interpolate between them
+ * Rendering the template gives the same result as StrSubstitutor with the $$ prefix and suffix, without rescanning the string
+ *
+ * Strings where StrSubstitutor's escaping, default values or recursive substitution could apply are not split,
+ * and are rendered with StrSubstitutor instead
+ *
+ * @author Andrew Johnson
+ */
+public class InterpolationTemplate {
+    private static final String PREFIX = NamedArgumentInterpolator.PREFIX;
+    private static final String SUFFIX = NamedArgumentInterpolator.SUFFIX;
+    private static final String VALUE_DELIMITER = ":-";
+
+    private final String source;
+
+    // literals has one more entry than variables, so a template renders as literals[0] variables[0] literals[1] ...
+    // Both are null if the template must be rendered by StrSubstitutor
+    private final String[] literals;
+    private final String[] variables;
+
+    // The list interpolation key of a template with no variables never changes
+    private final String constantListKey;
+
+    private InterpolationTemplate(String source, String[] literals, String[] variables) {
+        this.source = source;
+        this.literals = literals;
+        this.variables = variables;
+        this.constantListKey = variables != null && variables.length == 0 ? toListKey(source) : null;
+    }
+
+    /**
+     * Compile a template
+     *
+     * @param source The string possibly containing keys to be interpolated
+     * @return The compiled template
+     */
+    public static InterpolationTemplate compile(String source) {
+        if (!source.contains(PREFIX)) {
+            return new InterpolationTemplate(source, new String[]{source}, new String[0]);
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int start = source.indexOf(PREFIX, position);
+            String literal = source.substring(position, start < 0 ? source.length() : start);
+
+            // A $ next to a variable may be treated as an escape, and variables with nothing between them
+            // behave differently depending on whether the first one resolves, so leave those to StrSubstitutor
+            if (literal.indexOf('$') >= 0 || (start >= 0 && literal.isEmpty() && !variables.isEmpty())) {
+                return new InterpolationTemplate(source, null, null);
+            }
+            literals.add(literal);
+            if (start < 0) {
+                break;
+            }
+
+            int end = source.indexOf(SUFFIX, start + PREFIX.length());
+            if (end < 0) {
+                return new InterpolationTemplate(source, null, null);
+            }
+            String variable = source.substring(start + PREFIX.length(), end);
+            if (variable.isEmpty() || variable.indexOf('$') >= 0 || variable.contains(VALUE_DELIMITER)) {
+                return new InterpolationTemplate(source, null, null);
+            }
+            variables.add(variable);
+            position = end + SUFFIX.length();
+        }
+
+        return new InterpolationTemplate(source, literals.toArray(new String[literals.size()]), variables.toArray(new String[variables.size()]));
+    }
+
+    /**
+     * Render the template
+     *
+     * @param lookup Resolves the values of variables
+     * @return The template with variable interpolation performed
+     */
+    public String render(StrLookup<String> lookup) {
+        if (variables == null) {
+            return substitute(lookup);
+        }
+        if (variables.length == 0) {
+            return source;
+        }
+
+        StringBuilder result = new StringBuilder(source.length() + 16 * variables.length);
+        result.append(literals[0]);
+        for (int i = 0; i < variables.length; i++) {
+            String value = lookup.lookup(variables[i]);
+            if (value == null) {
+                // Unknown variables are left in place
+                result.append(PREFIX).append(variables[i]).append(SUFFIX);
+            } else if (value.indexOf('$') >= 0) {
+                // The value may itself need interpolating, or act as an escape character
+                return substitute(lookup);
+            } else {
+                result.append(value);
+            }
+            result.append(literals[i + 1]);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Gets the key used for list interpolation from a rendered value
+     * This is the value with the prefix and suffix removed
+     *
+     * @param rendered The result of rendering this template
+     * @return The list interpolation key
+     */
+    public String getListKey(String rendered) {
+        return constantListKey != null ? constantListKey : toListKey(rendered);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    private String substitute(StrLookup<String> lookup) {
+        return new StrSubstitutor(lookup, PREFIX, SUFFIX, StrSubstitutor.DEFAULT_ESCAPE).replace(source);
+    }
+
+    private static String toListKey(String rendered) {
+        if (!rendered.contains(PREFIX)) {
+            return rendered;
+        }
+
+        // The prefix and suffix are the same, so removing the prefix also removes the suffix
+        return rendered.replace(PREFIX, "");
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.*;
+
+/**
+ * Lays out a directed acyclic graph top to bottom in layers, in the style of Sugiyama et al
+ *
+ * Each node is placed in the layer given by the longest path leading to it, and edges spanning several layers are routed through
+ * invisible nodes in each layer they cross. The nodes in each layer are then ordered to reduce crossings with the barycenter heuristic,
+ * and finally each node is moved towards the average position of its neighbors while keeping the nodes in a layer apart.
+ *
+ * @author Andrew Johnson
+ */
+final class LayeredLayout {
+    static final double MARGIN = 16;
+    static final double LAYER_SPACING = 72;
+    static final double NODE_SPACING = 24;
+
+    // Width of the invisible nodes that edges are routed through, which keeps parallel edges apart
+    private static final double EDGE_WIDTH = 8;
+    private static final int ORDERING_SWEEPS = 8;
+    private static final int POSITIONING_SWEEPS = 8;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[][] edgePoints;
+    private final double width;
+    private final double height;
+
+    private LayeredLayout(double[] x, double[] y, double[][] edgePoints, double width, double height) {
+        this.x = x;
+        this.y = y;
+        this.edgePoints = edgePoints;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Lay out a graph
+     *
+     * @param widths The width of each node
+     * @param nodeHeight The height of every node
+     * @param sources The source node of each edge
+     * @param targets The target node of each edge
+     * @return The layout of the graph
+     * @throws IllegalArgumentException If the graph contains a cycle
+     */
+    static LayeredLayout compute(double[] widths, double nodeHeight, int[] sources, int[] targets) {
+        int nodeCount = widths.length;
+        int[] layers = assignLayers(nodeCount, sources, targets);
+
+        // Split edges spanning more than one layer into segments between adjacent layers
+        List<Integer> layerOf = new ArrayList<>();
+        List<Double> widthOf = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            layerOf.add(layers[i]);
+            widthOf.add(widths[i]);
+        }
+        int[][] chains = new int[sources.length][];
+        List<int[]> segments = new ArrayList<>();
+        for (int e = 0; e < sources.length; e++) {
+            int span = layers[targets[e]] - layers[sources[e]];
+            int[] chain = new int[span + 1];
+            chain[0] = sources[e];
+            chain[span] = targets[e];
+            for (int i = 1; i < span; i++) {
+                chain[i] = layerOf.size();
+                layerOf.add(layers[sources[e]] + i);
+                widthOf.add(EDGE_WIDTH);
+            }
+            for (int i = 0; i < span; i++) {
+                segments.add(new int[]{chain[i], chain[i + 1]});
+            }
+            chains[e] = chain;
+        }
+
+        int total = layerOf.size();
+        List<List<Integer>> above = new ArrayList<>(total);
+        List<List<Integer>> below = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            above.add(new ArrayList<Integer>(1));
+            below.add(new ArrayList<Integer>(1));
+        }
+        for (int[] segment : segments) {
+            below.get(segment[0]).add(segment[1]);
+            above.get(segment[1]).add(segment[0]);
+        }
+
+        int layerCount = 0;
+        for (int layer : layerOf) {
+            layerCount = Math.max(layerCount, layer + 1);
+        }
+        List<List<Integer>> order = new ArrayList<>(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            order.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < total; i++) {
+            order.get(layerOf.get(i)).add(i);
+        }
+
+        double[] allWidths = new double[total];
+        for (int i = 0; i < total; i++) {
+            allWidths[i] = widthOf.get(i);
+        }
+
+        reduceCrossings(order, above, below, total);
+        double[] positions = assignPositions(order, above, below, allWidths);
+
+        // Shift everything right so that the leftmost node starts at the margin
+        double left = Double.MAX_VALUE;
+        double right = -Double.MAX_VALUE;
+        for (int i = 0; i < total; i++) {
+            left = Math.min(left, positions[i] - allWidths[i] / 2);
+            right = Math.max(right, positions[i] + allWidths[i] / 2);
+        }
+        if (total == 0) {
+            left = 0;
+            right = 0;
+        }
+        double shift = MARGIN - left;
+
+        double[] nodeX = new double[nodeCount];
+        double[] nodeY = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeX[i] = positions[i] + shift;
+            nodeY[i] = MARGIN + nodeHeight / 2 + layers[i] * LAYER_SPACING;
+        }
+
+        // Edges leave the bottom of their source and enter the top of their target, passing through the middle of each layer between
+        double[][] edgePoints = new double[sources.length][];
+        for (int e = 0; e < sources.length; e++) {
+            int[] chain = chains[e];
+            double[] points = new double[chain.length * 2];
+            for (int i = 0; i < chain.length; i++) {
+                points[2 * i] = positions[chain[i]] + shift;
+                points[2 * i + 1] = MARGIN + nodeHeight / 2 + layerOf.get(chain[i]) * LAYER_SPACING;
+            }
+            points[1] += nodeHeight / 2;
+            points[points.length - 1] -= nodeHeight / 2;
+            edgePoints[e] = points;
+        }
+
+        double width = right - left + 2 * MARGIN;
+        double height = layerCount == 0 ? 2 * MARGIN : 2 * MARGIN + nodeHeight + (layerCount - 1) * LAYER_SPACING;
+        return new LayeredLayout(nodeX, nodeY, edgePoints, width, height);
+    }
+
+    /**
+     * Gets the horizontal position of the center of a node
+     */
+    double getX(int node) {
+        return x[node];
+    }
+
+    /**
+     * Gets the vertical position of the center of a node
+     */
+    double getY(int node) {
+        return y[node];
+    }
+
+    /**
+     * Gets the points an edge passes through, as alternating x and y coordinates
+     */
+    double[] getEdgePoints(int edge) {
+        return edgePoints[edge];
+    }
+
+    double getWidth() {
+        return width;
+    }
+
+    double getHeight() {
+        return height;
+    }
+
+    /**
+     * Places each node in the layer given by the length of the longest path leading to it
+     */
+    private static int[] assignLayers(int nodeCount, int[] sources, int[] targets) {
+        int[] inDegree = new int[nodeCount];
+        List<List<Integer>> outEdges = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            outEdges.add(new ArrayList<Integer>(1));
+        }
+        for (int e = 0; e < sources.length; e++) {
+            outEdges.get(sources[e]).add(e);
+            inDegree[targets[e]]++;
+        }
+
+        int[] layers = new int[nodeCount];
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < nodeCount; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            visited++;
+            for (int e : outEdges.get(node)) {
+                int target = targets[e];
+                layers[target] = Math.max(layers[target], layers[node] + 1);
+                if (--inDegree[target] == 0) {
+                    ready.add(target);
+                }
+            }
+        }
+        Preconditions.checkArgument(visited == nodeCount, "Graph contains a cycle");
+
+        return layers;
+    }
+
+    /**
+     * Orders the nodes in each layer by the average position of their neighbors in the previous layer,
+     * sweeping alternately down and up the layers
+     */
+    private static void reduceCrossings(List<List<Integer>> order, List<List<Integer>> above, List<List<Integer>> below, int total) {
+        final double[] position = new double[total];
+        for (List<Integer> layer : order) {
+            for (int i = 0; i < layer.size(); i++) {
+                position[layer.get(i)] = i;
+            }
+        }
+
+        final double[] barycenter = new double[total];
+        Comparator<Integer> byBarycenter = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(barycenter[o1], barycenter[o2]);
+            }
+        };
+        for (int sweep = 0; sweep < ORDERING_SWEEPS; sweep++) {
+            boolean down = sweep % 2 == 0;
+            List<List<Integer>> neighbors = down ? above : below;
+            for (int l = 0; l < order.size(); l++) {
+                List<Integer> layer = order.get(down ? l : order.size() - 1 - l);
+                for (int node : layer) {
+                    // A node with no neighbors on this side keeps its place
+                    barycenter[node] = average(neighbors.get(node), position, position[node]);
+                }
+                // The sort is stable, so nodes with equal barycenters keep their relative order
+                Collections.sort(layer, byBarycenter);
+                for (int i = 0; i < layer.size(); i++) {
+                    position[layer.get(i)] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns the horizontal position of each node, moving nodes towards their neighbors while keeping the order within each layer
+     */
+    private static double[] assignPositions(List<List<Integer>> order, List<List<Integer>> above, List<List<Integer>> below, double[] widths) {
+        double[] x = new double[widths.length];
+        for (List<Integer> layer : order) {
+            double next = 0;
+            for (int node : layer) {
+                x[node] = next + widths[node] / 2;
+                next += widths[node] + NODE_SPACING;
+            }
+        }
+
+        for (int sweep = 0; sweep < POSITIONING_SWEEPS; sweep++) {
+            boolean down = sweep % 2 == 0;
+            List<List<Integer>> neighbors = down ? above : below;
+            for (int l = 0; l < order.size(); l++) {
+                List<Integer> layer = order.get(down ? l : order.size() - 1 - l);
+                int size = layer.size();
+                double[] desired = new double[size];
+                for (int i = 0; i < size; i++) {
+                    desired[i] = average(neighbors.get(layer.get(i)), x, x[layer.get(i)]);
+                }
+
+                // Pushing nodes apart from the left and from the right each keep the required spacing, and so does their average
+                double[] fromLeft = new double[size];
+                double[] fromRight = new double[size];
+                for (int i = 0; i < size; i++) {
+                    fromLeft[i] = i == 0 ? desired[i] : Math.max(desired[i], fromLeft[i - 1] + separation(widths, layer.get(i - 1), layer.get(i)));
+                }
+                for (int i = size - 1; i >= 0; i--) {
+                    fromRight[i] = i == size - 1 ? desired[i] : Math.min(desired[i], fromRight[i + 1] - separation(widths, layer.get(i), layer.get(i + 1)));
+                }
+                for (int i = 0; i < size; i++) {
+                    x[layer.get(i)] = (fromLeft[i] + fromRight[i]) / 2;
+                }
+            }
+        }
+
+        return x;
+    }
+
+    private static double separation(double[] widths, int left, int right) {
+        return (widths[left] + widths[right]) / 2 + NODE_SPACING;
+    }
+
+    private static double average(List<Integer> nodes, double[] values, double defaultValue) {
+        if (nodes.isEmpty()) {
+            return defaultValue;
+        }
+
+        double sum = 0;
+        for (int node : nodes) {
+            sum += values[node];
+        }
+        return sum / nodes.size();
+    }
+}
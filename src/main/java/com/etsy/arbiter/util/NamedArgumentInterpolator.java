@@ -16,14 +16,13 @@
 
 package com.etsy.arbiter.util;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Maps;
+import org.apache.commons.lang3.text.StrLookup;
 import org.apache.commons.lang3.text.StrSubstitutor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Performs variable interpolation using the named arguments from an Action
@@ -40,6 +39,7 @@ public class NamedArgumentInterpolator {
     /**
      * Performs variable interpolation using the named arguments from an Action
      * This will create a new map if any interpolation is performed
+     * To interpolate the same arguments repeatedly, compile them once with ArgumentTemplates instead
      *
      * @param input The positional arguments possibly containing keys to be interpolated
      * @param namedArgs The key/value pairs used for interpolation
@@ -54,29 +54,13 @@ public class NamedArgumentInterpolator {
             return input;
         }
 
-        final Map<String, String> interpolationArgs = createFinalInterpolationMap(namedArgs, defaultArgs);
-
-        return Maps.transformValues(input, new Function<List<String>, List<String>>() {
-            @Override
-            public List<String> apply(List<String> input) {
-                List<String> result = new ArrayList<>(input.size());
-                for (String s : input) {
-                    String interpolated = StrSubstitutor.replace(s, interpolationArgs, PREFIX, SUFFIX);
-                    String listInterpolationKey = interpolated.replace(PREFIX, "").replace(SUFFIX, ""); // Strip out the prefix/suffix to get the actual key
-
-                    // If we have a standalone key we can use it for list interpolation
-                    // We only support standalone entries as it does not make sense to interpolate a list as part of a string
-                    if (listArgs != null && listArgs.containsKey(listInterpolationKey)) {
-                        result.addAll(listArgs.get(listInterpolationKey));
-                        listArgs.remove(listInterpolationKey);
-                    } else {
-                        result.add(interpolated);
-                    }
-                }
+        Set<String> splicedKeys = new HashSet<>();
+        Map<String, List<String>> result = ArgumentTemplates.compile(input).render(namedArgs, defaultArgs, listArgs, splicedKeys);
+        if (listArgs != null) {
+            listArgs.keySet().removeAll(splicedKeys);
+        }
 
-                return result;
-            }
-        });
+        return result;
     }
 
     /**
@@ -93,21 +77,31 @@ public class NamedArgumentInterpolator {
             return input;
         }
 
-        final Map<String, String> interpolationArgs = createFinalInterpolationMap(namedArgs, defaultArgs);
-
-        return StrSubstitutor.replace(input, interpolationArgs, PREFIX, SUFFIX);
+        return new StrSubstitutor(createLookup(namedArgs, defaultArgs), PREFIX, SUFFIX, StrSubstitutor.DEFAULT_ESCAPE).replace(input);
     }
 
-    private static Map<String, String> createFinalInterpolationMap(final Map<String, String> namedArgs, final Map<String, String> defaultArgs) {
-        Map<String, String> interpolationArgs = new HashMap<>();
-        if (defaultArgs != null) {
-            // We want entries from namedArgs to overwrite entries from defaultArgs
-            interpolationArgs.putAll(defaultArgs);
-            interpolationArgs.putAll(namedArgs);
-        } else {
-            interpolationArgs.putAll(namedArgs);
-        }
+    /**
+     * Creates a lookup for interpolation variables
+     * Entries from namedArgs take precedence over entries from defaultArgs
+     *
+     * @param namedArgs The key/value pairs used for interpolation
+     * @param defaultArgs Default values for the named args, may be null
+     * @return A lookup resolving interpolation keys to their values
+     */
+    static StrLookup<String> createLookup(final Map<String, String> namedArgs, final Map<String, String> defaultArgs) {
+        return new StrLookup<String>() {
+            @Override
+            public String lookup(String key) {
+                Object value;
+                if (namedArgs.containsKey(key) || defaultArgs == null) {
+                    value = namedArgs.get(key);
+                } else {
+                    value = defaultArgs.get(key);
+                }
 
-        return interpolationArgs;
+                // Values from YAML may not be strings
+                return value == null ? null : value.toString();
+            }
+        };
     }
 }
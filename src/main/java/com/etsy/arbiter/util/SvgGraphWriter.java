@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Action;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Renders a workflow graph as an SVG image without Graphviz
+ * Nodes are placed by a LayeredLayout, so the graph is drawn top to bottom like dot would draw it
+ *
+ * @author Andrew Johnson
+ */
+public class SvgGraphWriter {
+    private SvgGraphWriter() { }
+
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+    private static final String STYLE = "text{font-family:Helvetica,Arial,sans-serif;font-size:14px;text-anchor:middle;dominant-baseline:central}"
+            + ".node{fill:#ffffff;stroke:#000000}"
+            + ".control{fill:#eeeeee;stroke:#000000}"
+            + ".edge{fill:none;stroke:#000000}"
+            + "#arrow{fill:#000000}";
+
+    private static final double NODE_HEIGHT = 36;
+    // An estimate of the width of a character, as the actual width depends on the font used by the viewer
+    private static final double CHARACTER_WIDTH = 8;
+    private static final double PADDING = 24;
+    private static final double MINIMUM_WIDTH = 54;
+
+    // XMLOutputFactory is not guaranteed to be thread-safe, and images are rendered on several threads at once
+    private static final ThreadLocal<XMLOutputFactory> FACTORY = new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+            return XMLOutputFactory.newInstance();
+        }
+    };
+
+    /**
+     * Write a workflow graph as an SVG image
+     *
+     * @param graph The graph to write
+     * @param stream The stream to which to write the image. This is closed once the image is written
+     * @throws IOException
+     */
+    public static void write(DirectedAcyclicGraph<Action, DefaultEdge> graph, OutputStream stream) throws IOException {
+        List<Action> vertices = new ArrayList<>(graph.vertexSet());
+        Map<Action, Integer> indices = new HashMap<>();
+        double[] widths = new double[vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            indices.put(vertices.get(i), i);
+            widths[i] = getWidth(vertices.get(i));
+        }
+
+        List<DefaultEdge> edges = new ArrayList<>(graph.edgeSet());
+        int[] sources = new int[edges.size()];
+        int[] targets = new int[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            sources[i] = indices.get(graph.getEdgeSource(edges.get(i)));
+            targets[i] = indices.get(graph.getEdgeTarget(edges.get(i)));
+        }
+
+        LayeredLayout layout = LayeredLayout.compute(widths, NODE_HEIGHT, sources, targets);
+
+        try (XmlWriter xml = new XmlWriter(stream, FACTORY.get(), true)) {
+            xml.startElement("svg")
+                    .defaultNamespace(SVG_NAMESPACE)
+                    .attribute("width", format(layout.getWidth()))
+                    .attribute("height", format(layout.getHeight()))
+                    .attribute("viewBox", "0 0 " + format(layout.getWidth()) + " " + format(layout.getHeight()));
+
+            xml.startElement("style").text(STYLE).endElement();
+            xml.startElement("defs")
+                    .startElement("marker")
+                    .attribute("id", "arrow")
+                    .attribute("viewBox", "0 0 10 10")
+                    .attribute("refX", "10")
+                    .attribute("refY", "5")
+                    .attribute("markerWidth", "8")
+                    .attribute("markerHeight", "8")
+                    .attribute("orient", "auto")
+                    .emptyElement("path")
+                    .attribute("d", "M0,0L10,5L0,10Z")
+                    .endElement()
+                    .endElement();
+
+            for (int i = 0; i < edges.size(); i++) {
+                double[] points = layout.getEdgePoints(i);
+                StringBuilder pointList = new StringBuilder();
+                for (int p = 0; p < points.length; p += 2) {
+                    if (p > 0) {
+                        pointList.append(' ');
+                    }
+                    pointList.append(format(points[p])).append(',').append(format(points[p + 1]));
+                }
+                xml.startElement("polyline")
+                        .attribute("class", "edge")
+                        .attribute("points", pointList.toString())
+                        .attribute("marker-end", "url(#arrow)")
+                        .textElement("title", vertices.get(sources[i]).getName() + "->" + vertices.get(targets[i]).getName())
+                        .endElement();
+            }
+
+            for (int i = 0; i < vertices.size(); i++) {
+                Action action = vertices.get(i);
+                xml.startElement("g").attribute("id", "node-" + i);
+                xml.textElement("title", action.getName());
+                writeShape(xml, action.getType(), layout.getX(i), layout.getY(i), widths[i]);
+                xml.startElement("text")
+                        .attribute("x", format(layout.getX(i)))
+                        .attribute("y", format(layout.getY(i)))
+                        .text(action.getName())
+                        .endElement();
+                xml.endElement();
+            }
+
+            xml.endElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Draw the outline of a node
+     * Control nodes are drawn like Oozie's own workflow graphs: ellipses for start, end and kill and hexagons for fork and join
+     */
+    private static void writeShape(XmlWriter xml, String type, double x, double y, double width) throws XMLStreamException {
+        double left = x - width / 2;
+        double top = y - NODE_HEIGHT / 2;
+        switch (type == null ? "" : type) {
+            case "start":
+            case "end":
+            case "kill":
+                xml.emptyElement("ellipse")
+                        .attribute("class", "control")
+                        .attribute("cx", format(x))
+                        .attribute("cy", format(y))
+                        .attribute("rx", format(width / 2))
+                        .attribute("ry", format(NODE_HEIGHT / 2));
+                break;
+            case "fork":
+            case "join":
+                double inset = NODE_HEIGHT / 2;
+                xml.emptyElement("polygon")
+                        .attribute("class", "control")
+                        .attribute("points", format(left) + "," + format(y)
+                                + " " + format(left + inset) + "," + format(top)
+                                + " " + format(left + width - inset) + "," + format(top)
+                                + " " + format(left + width) + "," + format(y)
+                                + " " + format(left + width - inset) + "," + format(top + NODE_HEIGHT)
+                                + " " + format(left + inset) + "," + format(top + NODE_HEIGHT));
+                break;
+            default:
+                xml.emptyElement("rect")
+                        .attribute("class", "node")
+                        .attribute("x", format(left))
+                        .attribute("y", format(top))
+                        .attribute("width", format(width))
+                        .attribute("height", format(NODE_HEIGHT))
+                        .attribute("rx", "4");
+                break;
+        }
+    }
+
+    private static double getWidth(Action action) {
+        String name = action.getName() == null ? "" : action.getName();
+        return Math.max(MINIMUM_WIDTH, name.length() * CHARACTER_WIDTH + PADDING);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Streams an XML document directly to an output stream
+ * Elements are written as soon as they are added, so no representation of the document is held in memory
+ * When indenting, the layout matches that of an indenting Transformer: elements containing only text are kept on one line
+ * The prolog and the root element are always written on separate lines
+ *
+ * @author Andrew Johnson
+ */
+public class XmlWriter implements Closeable {
+    private static final String INDENT = "  ";
+
+    private final Writer output;
+    private final XMLStreamWriter xml;
+    private final boolean indent;
+
+    // One entry per open element, recording whether the element has any child elements
+    private final Deque<Boolean> hasChildren = new ArrayDeque<>();
+
+    // The start tag of an element is held back until we know whether it has children, so that empty elements are self-closing
+    private String pendingElement;
+    private final List<String> pendingAttributes = new ArrayList<>();
+    private String pendingNamespace;
+
+    /**
+     * Start a new XML document
+     *
+     * @param stream The stream to which to write the document
+     * @param factory The factory used to create the underlying StAX writer
+     * @param indent Whether or not to indent the document. If false the document is written without any whitespace between elements
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    public XmlWriter(OutputStream stream, XMLOutputFactory factory, boolean indent) throws XMLStreamException, IOException {
+        this.output = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        this.indent = indent;
+
+        // StAX cannot produce the standalone declaration, so the prolog is written by hand
+        // The root element always starts on a new line so that a comment can be placed between it and the prolog
+        output.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        xml = factory.createXMLStreamWriter(output);
+    }
+
+    /**
+     * Open an element that will contain other elements
+     * Attributes may be added until the first child is added
+     *
+     * @param name The name of the element
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter startElement(String name) throws XMLStreamException {
+        beforeChild();
+        pendingElement = name;
+        hasChildren.push(false);
+        return this;
+    }
+
+    /**
+     * Add an element with no content
+     * Attributes may be added immediately after this
+     *
+     * @param name The name of the element
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter emptyElement(String name) throws XMLStreamException {
+        beforeChild();
+        xml.writeEmptyElement(name);
+        return this;
+    }
+
+    /**
+     * Add an element containing only text
+     *
+     * @param name The name of the element
+     * @param text The text content of the element
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter textElement(String name, Object text) throws XMLStreamException {
+        beforeChild();
+        xml.writeStartElement(name);
+        xml.writeCharacters(text.toString());
+        xml.writeEndElement();
+        return this;
+    }
+
+    /**
+     * Add text to the most recently started element
+     * This is for elements containing only text that also need attributes. No attributes or children may be added after it
+     *
+     * @param text The text to add
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter text(Object text) throws XMLStreamException {
+        if (pendingElement != null) {
+            writePendingElement(false);
+        }
+        xml.writeCharacters(text.toString());
+        return this;
+    }
+
+    /**
+     * Add a comment
+     * A comment added before the root element is placed on its own line
+     *
+     * @param text The text of the comment
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter comment(String text) throws XMLStreamException {
+        beforeChild();
+        xml.writeComment(text);
+        if (hasChildren.isEmpty()) {
+            xml.writeCharacters("\n");
+        }
+        return this;
+    }
+
+    /**
+     * Add an attribute to the most recently started element
+     *
+     * @param name The name of the attribute
+     * @param value The value of the attribute
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter attribute(String name, String value) throws XMLStreamException {
+        if (pendingElement != null) {
+            pendingAttributes.add(name);
+            pendingAttributes.add(value);
+        } else {
+            xml.writeAttribute(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Set the default namespace of the most recently started element
+     *
+     * @param uri The namespace URI
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter defaultNamespace(String uri) throws XMLStreamException {
+        if (pendingElement != null) {
+            pendingNamespace = uri;
+        } else {
+            xml.writeDefaultNamespace(uri);
+        }
+        return this;
+    }
+
+    /**
+     * Close the most recently started element
+     *
+     * @return This writer
+     * @throws XMLStreamException
+     */
+    public XmlWriter endElement() throws XMLStreamException {
+        boolean children = hasChildren.pop();
+        if (pendingElement != null) {
+            writePendingElement(true);
+        } else {
+            if (children) {
+                newline(hasChildren.size());
+            }
+            xml.writeEndElement();
+        }
+        return this;
+    }
+
+    /**
+     * Finish the document and close the underlying stream
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.writeEndDocument();
+            xml.flush();
+            output.write("\n");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Records that the current element has a child and writes the whitespace preceding the child
+     *
+     * @throws XMLStreamException
+     */
+    private void beforeChild() throws XMLStreamException {
+        if (pendingElement != null) {
+            writePendingElement(false);
+        }
+
+        // The root element follows the prolog directly
+        if (!hasChildren.isEmpty()) {
+            hasChildren.pop();
+            hasChildren.push(true);
+            newline(hasChildren.size());
+        }
+    }
+
+    /**
+     * Writes the start tag held back by startElement
+     *
+     * @param empty Whether or not the element is known to have no children
+     * @throws XMLStreamException
+     */
+    private void writePendingElement(boolean empty) throws XMLStreamException {
+        if (empty) {
+            xml.writeEmptyElement(pendingElement);
+        } else {
+            xml.writeStartElement(pendingElement);
+        }
+        if (pendingNamespace != null) {
+            xml.writeDefaultNamespace(pendingNamespace);
+        }
+        for (int i = 0; i < pendingAttributes.size(); i += 2) {
+            xml.writeAttribute(pendingAttributes.get(i), pendingAttributes.get(i + 1));
+        }
+
+        pendingElement = null;
+        pendingNamespace = null;
+        pendingAttributes.clear();
+    }
+
+    private void newline(int depth) throws XMLStreamException {
+        if (!indent) {
+            return;
+        }
+
+        StringBuilder whitespace = new StringBuilder(1 + depth * INDENT.length());
+        whitespace.append('\n');
+        for (int i = 0; i < depth; i++) {
+            whitespace.append(INDENT);
+        }
+        xml.writeCharacters(whitespace.toString());
+    }
+}
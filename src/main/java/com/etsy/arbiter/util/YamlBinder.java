@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.yaml.snakeyaml.nodes.*;
+
+import java.util.*;
+
+/**
+ * Builds an object directly from a YAML node tree
+ * Each binder names the keys it accepts and how their values are read, so no reflection or bean introspection is involved
+ * Binders hold no state, so one binder may be shared between threads
+ *
+ * @param <T> The type of object to build
+ * @author Andrew Johnson
+ */
+public abstract class YamlBinder<T> {
+    /**
+     * Build an object from a YAML node
+     *
+     * @param node The node to read. A missing or null node produces null
+     * @return The object represented by the node
+     * @throws YamlBindingException If the node does not have the expected structure
+     */
+    public abstract T bind(Node node);
+
+    /**
+     * @return true if the node is missing or is an explicit null
+     */
+    protected static boolean isNull(Node node) {
+        return node == null || (node instanceof ScalarNode && Tag.NULL.equals(node.getTag()));
+    }
+
+    /**
+     * Gets the entries of a mapping in the order they should be applied
+     * Entries merged in with the << key come first, so that keys given explicitly override them
+     *
+     * @param node The mapping node
+     * @param description What the mapping represents, for error messages
+     * @return The key and value nodes of each entry
+     */
+    protected static List<NodeTuple> entries(Node node, String description) {
+        if (!(node instanceof MappingNode)) {
+            throw error(node, "Expected a mapping for " + description);
+        }
+
+        List<NodeTuple> merged = new ArrayList<>();
+        List<NodeTuple> explicit = new ArrayList<>();
+        for (NodeTuple entry : ((MappingNode) node).getValue()) {
+            Node key = entry.getKeyNode();
+            if (!Tag.MERGE.equals(key.getTag())) {
+                explicit.add(entry);
+            } else if (entry.getValueNode() instanceof SequenceNode) {
+                // Mappings earlier in a merged list take precedence, so they are applied last
+                List<Node> sources = new ArrayList<>(((SequenceNode) entry.getValueNode()).getValue());
+                Collections.reverse(sources);
+                for (Node source : sources) {
+                    merged.addAll(entries(source, description));
+                }
+            } else {
+                merged.addAll(entries(entry.getValueNode(), description));
+            }
+        }
+
+        merged.addAll(explicit);
+        return merged;
+    }
+
+    /**
+     * Gets the key of a mapping entry
+     */
+    protected static String key(NodeTuple entry) {
+        Node key = entry.getKeyNode();
+        if (!(key instanceof ScalarNode)) {
+            throw error(key, "Expected a string key");
+        }
+        return ((ScalarNode) key).getValue();
+    }
+
+    /**
+     * Reads a scalar as the text written in the YAML, whatever type it would otherwise be resolved to
+     *
+     * @return The text of the scalar, or null for a null node
+     */
+    protected static String string(Node node, String description) {
+        if (isNull(node)) {
+            return null;
+        }
+        if (!(node instanceof ScalarNode)) {
+            throw error(node, "Expected a string for " + description);
+        }
+        return ((ScalarNode) node).getValue();
+    }
+
+    protected static int integer(Node node, String description) {
+        String value = string(node, description);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw error(node, "Expected an integer for " + description);
+        }
+    }
+
+    protected static boolean bool(Node node, String description) {
+        String value = isNull(node) ? "" : string(node, description).toLowerCase(Locale.ROOT);
+        switch (value) {
+            case "true":
+            case "yes":
+            case "on":
+                return true;
+            case "false":
+            case "no":
+            case "off":
+                return false;
+            default:
+                throw error(node, "Expected true or false for " + description);
+        }
+    }
+
+    /**
+     * @return The strings in a sequence, or null for a null node
+     */
+    protected static ArrayList<String> stringList(Node node, String description) {
+        if (isNull(node)) {
+            return null;
+        }
+        if (!(node instanceof SequenceNode)) {
+            throw error(node, "Expected a list of strings for " + description);
+        }
+
+        List<Node> items = ((SequenceNode) node).getValue();
+        ArrayList<String> result = new ArrayList<>(items.size());
+        for (Node item : items) {
+            result.add(string(item, description));
+        }
+        return result;
+    }
+
+    /**
+     * @return The mapping of strings to strings, or null for a null node
+     */
+    protected static Map<String, String> stringMap(Node node, String description) {
+        if (isNull(node)) {
+            return null;
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+        for (NodeTuple entry : entries(node, description)) {
+            result.put(key(entry), string(entry.getValueNode(), description));
+        }
+        return result;
+    }
+
+    /**
+     * @return The mapping of strings to lists of strings, or null for a null node
+     */
+    protected static Map<String, List<String>> stringListMap(Node node, String description) {
+        if (isNull(node)) {
+            return null;
+        }
+
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (NodeTuple entry : entries(node, description)) {
+            result.put(key(entry), stringList(entry.getValueNode(), description));
+        }
+        return result;
+    }
+
+    /**
+     * @param elementBinder Builds each element of the list
+     * @return The objects built from each item in a sequence, or null for a null node
+     */
+    protected static <E> List<E> list(Node node, YamlBinder<E> elementBinder, String description) {
+        if (isNull(node)) {
+            return null;
+        }
+        if (!(node instanceof SequenceNode)) {
+            throw error(node, "Expected a list for " + description);
+        }
+
+        List<Node> items = ((SequenceNode) node).getValue();
+        List<E> result = new ArrayList<>(items.size());
+        for (Node item : items) {
+            result.add(elementBinder.bind(item));
+        }
+        return result;
+    }
+
+    /**
+     * Create an exception for a node that has an unexpected structure
+     *
+     * @param node The offending node
+     * @param problem A description of the problem
+     * @return The exception to throw
+     */
+    protected static YamlBindingException error(Node node, String problem) {
+        return new YamlBindingException(problem, node != null ? node.getStartMark() : null);
+    }
+
+    /**
+     * Create an exception for a key that the object being built does not have
+     */
+    protected static YamlBindingException unknownKey(NodeTuple entry, String description) {
+        return error(entry.getKeyNode(), String.format("Unknown key %s in %s", key(entry), description));
+    }
+}
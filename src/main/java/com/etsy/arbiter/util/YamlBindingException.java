@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+
+/**
+ * Represents YAML that is well-formed but does not have the structure expected by a YamlBinder
+ * The message gives the line and column of the offending node
+ *
+ * @author Andrew Johnson
+ */
+public class YamlBindingException extends MarkedYAMLException {
+    public YamlBindingException(String problem, Mark problemMark) {
+        super(null, null, problem, problemMark);
+    }
+}
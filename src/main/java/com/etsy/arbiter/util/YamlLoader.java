@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.exception.InputFileException;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads many YAML files in parallel
+ * Each worker thread has its own YamlReader and takes the next unread file until none are left
+ *
+ * @param <T> The type of object to produce at the root of each YAML document
+ * @author Andrew Johnson
+ */
+public class YamlLoader<T> {
+    private final YamlBinder<T> binder;
+    private final int threads;
+
+    /**
+     * @param binder Builds the object for each file
+     * @param threads The maximum number of files to read at once
+     */
+    public YamlLoader(YamlBinder<T> binder, int threads) {
+        Preconditions.checkArgument(threads > 0, "Thread count must be positive");
+        this.binder = binder;
+        this.threads = threads;
+    }
+
+    /**
+     * Read YAML files
+     *
+     * @param files The files to read
+     * @return The object read from each file, in the same order as the files
+     * @throws InputFileException If any file cannot be read, listing every file that failed
+     */
+    public List<T> read(List<File> files) {
+        List<T> result = new ArrayList<>(files.size());
+        for (Object object : load(files, null)) {
+            @SuppressWarnings("unchecked")
+            T typed = (T) object;
+            result.add(typed);
+        }
+        return result;
+    }
+
+    /**
+     * Read YAML files along with the hash of the content each was read from
+     *
+     * @param files The files to read
+     * @param hashFunction The function with which to hash the content of each file
+     * @return A Pair of the object read from each file and the hash of its content, in the same order as the files
+     * @throws InputFileException If any file cannot be read, listing every file that failed
+     */
+    public List<Pair<T, HashCode>> read(List<File> files, HashFunction hashFunction) {
+        Preconditions.checkNotNull(hashFunction);
+        List<Pair<T, HashCode>> result = new ArrayList<>(files.size());
+        for (Object object : load(files, hashFunction)) {
+            @SuppressWarnings("unchecked")
+            Pair<T, HashCode> typed = (Pair<T, HashCode>) object;
+            result.add(typed);
+        }
+        return result;
+    }
+
+    /**
+     * Read YAML files, hashing their content if a hash function is given
+     */
+    private Object[] load(final List<File> files, final HashFunction hashFunction) {
+        final Object[] results = new Object[files.size()];
+        final Throwable[] failures = new Throwable[files.size()];
+        final AtomicInteger next = new AtomicInteger();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                YamlReader<T> reader = new YamlReader<>(binder);
+                for (int i = next.getAndIncrement(); i < files.size(); i = next.getAndIncrement()) {
+                    try {
+                        results[i] = hashFunction == null ? reader.read(files.get(i)) : reader.read(files.get(i), hashFunction);
+                    } catch (RuntimeException e) {
+                        failures[i] = e;
+                    }
+                }
+            }
+        };
+
+        int workers = Math.min(threads, files.size());
+        if (workers <= 1) {
+            worker.run();
+        } else {
+            runWorkers(worker, workers);
+        }
+
+        Map<String, Throwable> failed = new LinkedHashMap<>();
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null) {
+                failed.put(files.get(i).getPath(), failures[i]);
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new InputFileException(failed);
+        }
+
+        return results;
+    }
+
+    private static void runWorkers(Runnable worker, int workers) {
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+                .setNameFormat("yaml-loader-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            List<Future<?>> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                running.add(executor.submit(worker));
+            }
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while reading input files", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Error reading input files", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -17,32 +17,38 @@
 package com.etsy.arbiter.util;
 
 import com.google.common.base.Preconditions;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.constructor.Constructor;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.io.Files;
+import org.apache.commons.lang3.tuple.Pair;
+import org.yaml.snakeyaml.composer.Composer;
 import org.yaml.snakeyaml.nodes.Tag;
-import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.reader.UnicodeReader;
 import org.yaml.snakeyaml.resolver.Resolver;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.net.URL;
 
 /**
  * Utility class for reading YAML into type-safe collections
+ * The YAML is parsed into a node tree, from which a YamlBinder builds the result
  *
  * @param <T> The type of object to produce at the root of the YAML document
  * @author Andrew Johnson
  */
 public class YamlReader<T> {
-    private Yaml yamlParser;
+    private final YamlBinder<T> binder;
+    private final Resolver resolver = new CustomResolver();
 
-    public YamlReader(Constructor rootConstructor) {
-        Representer representer = new Representer();
-        representer.getPropertyUtils().setSkipMissingProperties(true);
-        yamlParser = new Yaml(rootConstructor, representer, new DumperOptions(), new CustomResolver());
+    public YamlReader(YamlBinder<T> binder) {
+        this.binder = binder;
     }
 
     /**
@@ -51,12 +57,11 @@ public class YamlReader<T> {
      * @param file A URL representing a YAML file
      * @return An instance of T representing the given YAML file
      */
-    @SuppressWarnings("unchecked")
     public T read(URL file) {
         Preconditions.checkNotNull(file);
 
         try (InputStream stream = file.openStream()) {
-            return (T) yamlParser.load(stream);
+            return read(stream);
         } catch (IOException e) {
             throw new RuntimeException("Could not load config file: " + file.getFile(), e);
         }
@@ -68,17 +73,49 @@ public class YamlReader<T> {
      * @param file The YAML file to read
      * @return An instance of T representing the given YAML file
      */
-    @SuppressWarnings("unchecked")
     public T read(File file) {
         Preconditions.checkNotNull(file);
 
         try (InputStream stream = new FileInputStream(file)) {
-            return (T) yamlParser.load(stream);
+            return read(stream);
         } catch (IOException e) {
             throw new RuntimeException("Could not load config file: " + file.getName(), e);
         }
     }
 
+    /**
+     * Read a YAML file and hash its content
+     * The file is read only once, so the hash is of the content that was parsed even if the file is changed at the same time
+     *
+     * @param file The YAML file to read
+     * @param hashFunction The function with which to hash the content of the file
+     * @return A Pair of the instance of T representing the given YAML file and the hash of its content
+     */
+    public Pair<T, HashCode> read(File file, HashFunction hashFunction) {
+        Preconditions.checkNotNull(file);
+
+        byte[] content;
+        try {
+            content = Files.toByteArray(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load config file: " + file.getName(), e);
+        }
+        return Pair.of(read(new ByteArrayInputStream(content)), hashFunction.hashBytes(content));
+    }
+
+    /**
+     * Read YAML from a stream
+     * The stream is not closed
+     *
+     * @param stream The YAML to read
+     * @return An instance of T representing the given YAML
+     */
+    public T read(InputStream stream) {
+        Reader reader = new UnicodeReader(stream);
+        Composer composer = new Composer(new ParserImpl(new StreamReader(reader)), resolver);
+        return binder.bind(composer.getSingleNode());
+    }
+
     /**
      * A custom Resolver to ensure certain strings (like dates) are not translated into objects
      */
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Creates the fork/join pairs for a single workflow, remembering which fork each join closes
+ * A factory is local to one build so that workflows can be built concurrently
+ *
+ * @author Andrew Johnson
+ */
+final class ForkJoinFactory {
+    // Every fork/join pair needs a unique name
+    // To keep the names short, we just number them sequentially
+    private int count = 0;
+
+    // Fork and join actions are only ever compared with themselves, so identity is enough and avoids hashing their contents
+    private final Map<Action, Pair<Action, Action>> pairsByJoin = new IdentityHashMap<>();
+    private final Map<Action, Pair<Action, Action>> pairsByFork = new IdentityHashMap<>();
+
+    /**
+     * Create a fork/join pair with the next number
+     *
+     * @return A Pair of actions. The left action is the fork and the right action is the join
+     */
+    Pair<Action, Action> create() {
+        Action fork = new Action();
+        fork.setName("fork-" + count);
+        fork.setType("fork");
+
+        Action join = new Action();
+        join.setName("join-" + count);
+        join.setType("join");
+        count++;
+
+        Pair<Action, Action> forkJoin = Pair.of(fork, join);
+        pairsByFork.put(fork, forkJoin);
+        pairsByJoin.put(join, forkJoin);
+        return forkJoin;
+    }
+
+    /**
+     * @param action An action in the workflow
+     * @return The fork/join pair if the action is a fork created by this factory, otherwise null
+     */
+    Pair<Action, Action> getPairForFork(Action action) {
+        return pairsByFork.get(action);
+    }
+
+    /**
+     * @param action An action in the workflow
+     * @return The fork/join pair if the action is a join created by this factory, otherwise null
+     */
+    Pair<Action, Action> getPairForJoin(Action action) {
+        return pairsByJoin.get(action);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+
+import java.util.*;
+
+/**
+ * Inserts fork/join pairs into a workflow graph in near-linear time
+ *
+ * This produces the same fork/join structure as the recursive algorithm in WorkflowGraphBuilder without copying the graph at every level.
+ * The recursive algorithm repeatedly removes the actions with no remaining dependencies and splits what is left into connected components.
+ * An action is therefore removed at a depth equal to the length of the longest chain of dependencies leading to it,
+ * and the components at each depth are the connected components of the actions at that depth or deeper.
+ * Both are computed here in one pass: depths from a topological sort, and components by merging them from the deepest level up with union-find.
+ *
+ * Parallel actions and components are ordered as they appear in the workflow definition rather than by hash code
+ *
+ * @author Andrew Johnson
+ */
+final class LayeredGraphBuilder {
+    private LayeredGraphBuilder() { }
+
+    /**
+     * A connected component of the actions at a given depth or deeper
+     */
+    private static class Component {
+        // The actions in this component at exactly its depth, which run first and in parallel
+        private final List<Integer> sources = new ArrayList<>();
+        // The components one level deeper that are contained in this one, which run in parallel after the sources
+        private final List<Component> children = new ArrayList<>();
+        private int firstIndex = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Build the fork/join graph for an input graph
+     *
+     * @param inputGraph The graph of actions and their dependencies
+     * @param result The graph to which to add the actions with fork/join pairs inserted
+     * @param forkJoins Creates the fork/join pairs within the workflow being built
+     * @return A Pair with the numbers in the result of the "first" node and the "last" node added
+     * @throws WorkflowGraphException If the input graph is empty
+     */
+    static Pair<Integer, Integer> buildGraph(WorkflowGraph inputGraph, WorkflowGraph.Builder result, ForkJoinFactory forkJoins) throws WorkflowGraphException {
+        int[] depths = getDepths(inputGraph);
+
+        List<Component> components = buildComponents(inputGraph, depths);
+        return emit(inputGraph, components, result, forkJoins);
+    }
+
+    /**
+     * Computes the depth of each action, which is the length of the longest chain of dependencies leading to it
+     */
+    private static int[] getDepths(WorkflowGraph inputGraph) throws WorkflowGraphException {
+        int[] order;
+        try {
+            order = inputGraph.getTopologicalOrder();
+        } catch (DirectedAcyclicGraph.CycleFoundException e) {
+            throw new WorkflowGraphException("Cycle found while generating workflow", e);
+        }
+
+        int[] depths = new int[inputGraph.size()];
+        for (int action : order) {
+            for (int i = 0; i < inputGraph.getOutDegree(action); i++) {
+                int target = inputGraph.getSuccessor(action, i);
+                depths[target] = Math.max(depths[target], depths[action] + 1);
+            }
+        }
+
+        return depths;
+    }
+
+    /**
+     * Builds the tree of components, from the deepest level up
+     *
+     * @return The components at depth 0, ordered by their first action
+     */
+    private static List<Component> buildComponents(WorkflowGraph inputGraph, int[] depths) {
+        int count = inputGraph.size();
+        int maxDepth = -1;
+        for (int depth : depths) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        // Bucket the actions by depth, keeping them in workflow order within each depth
+        int[] levelStarts = new int[maxDepth + 2];
+        for (int depth : depths) {
+            levelStarts[depth + 1]++;
+        }
+        for (int d = 0; d <= maxDepth; d++) {
+            levelStarts[d + 1] += levelStarts[d];
+        }
+        int[] byDepth = new int[count];
+        int[] next = Arrays.copyOf(levelStarts, maxDepth + 1);
+        for (int i = 0; i < count; i++) {
+            byDepth[next[depths[i]]++] = i;
+        }
+
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+        }
+
+        Component[] componentsByRoot = new Component[count];
+        List<Component> deeper = new ArrayList<>();
+        List<Integer> deeperRepresentatives = new ArrayList<>();
+        for (int d = maxDepth; d >= 0; d--) {
+            // Every dependency of an action is shallower than it, so the edges that join actions at this depth or deeper
+            // are exactly the edges leaving actions at this depth
+            for (int i = levelStarts[d]; i < levelStarts[d + 1]; i++) {
+                int action = byDepth[i];
+                for (int j = 0; j < inputGraph.getOutDegree(action); j++) {
+                    union(parents, action, inputGraph.getSuccessor(action, j));
+                }
+            }
+
+            List<Component> current = new ArrayList<>();
+            List<Integer> currentRepresentatives = new ArrayList<>();
+            for (int i = levelStarts[d]; i < levelStarts[d + 1]; i++) {
+                int action = byDepth[i];
+                int root = find(parents, action);
+                Component component = componentsByRoot[root];
+                if (component == null) {
+                    component = new Component();
+                    componentsByRoot[root] = component;
+                    current.add(component);
+                    currentRepresentatives.add(action);
+                }
+                component.sources.add(action);
+                component.firstIndex = Math.min(component.firstIndex, action);
+            }
+
+            // Every deeper component is connected to at least one action at this depth
+            for (int i = 0; i < deeper.size(); i++) {
+                Component child = deeper.get(i);
+                Component parent = componentsByRoot[find(parents, deeperRepresentatives.get(i))];
+                parent.children.add(child);
+                parent.firstIndex = Math.min(parent.firstIndex, child.firstIndex);
+            }
+
+            for (int representative : currentRepresentatives) {
+                componentsByRoot[find(parents, representative)] = null;
+            }
+
+            sortByFirstIndex(current, currentRepresentatives);
+            deeper = current;
+            deeperRepresentatives = currentRepresentatives;
+        }
+
+        return deeper;
+    }
+
+    /**
+     * Emits the fork/join graph for the components
+     * Fork/join pairs are numbered in the same order as in the recursive algorithm,
+     * so a fork for parallel actions is numbered before any nested within it, and a fork for parallel components after them
+     */
+    private static Pair<Integer, Integer> emit(WorkflowGraph inputGraph, List<Component> topLevel, WorkflowGraph.Builder result, ForkJoinFactory forkJoins) throws WorkflowGraphException {
+        // Vertices are identified by their position in this list, which is a topological order of the result
+        // The fork for parallel components is numbered after the components, so its place is reserved and filled in later
+        List<Action> vertices = new ArrayList<>();
+        List<int[]> edges = new ArrayList<>();
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        Component root = new Component();
+        root.children.addAll(topLevel);
+        stack.push(new Frame(root, null));
+
+        Frame finished = null;
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!frame.started) {
+                frame.started = true;
+                emitSources(frame, inputGraph, vertices, edges, forkJoins);
+                if (frame.component.children.size() > 1) {
+                    frame.wrapperFork = vertices.size();
+                    vertices.add(null);
+                }
+            }
+
+            if (frame.nextChild < frame.component.children.size()) {
+                stack.push(new Frame(frame.component.children.get(frame.nextChild++), frame));
+                continue;
+            }
+
+            stack.pop();
+            int groupFirst = -1;
+            int groupLast = -1;
+            if (frame.childFirsts.size() == 1) {
+                groupFirst = frame.childFirsts.get(0);
+                groupLast = frame.childLasts.get(0);
+            } else if (frame.childFirsts.size() > 1) {
+                Pair<Action, Action> forkJoin = forkJoins.create();
+                vertices.set(frame.wrapperFork, forkJoin.getLeft());
+                int join = vertices.size();
+                vertices.add(forkJoin.getRight());
+                for (int i = 0; i < frame.childFirsts.size(); i++) {
+                    edges.add(new int[]{frame.wrapperFork, frame.childFirsts.get(i)});
+                    edges.add(new int[]{frame.childLasts.get(i), join});
+                }
+                groupFirst = frame.wrapperFork;
+                groupLast = join;
+            }
+
+            if (frame.sourcesFirst >= 0 && groupFirst >= 0) {
+                edges.add(new int[]{frame.sourcesLast, groupFirst});
+            }
+            frame.first = frame.sourcesFirst >= 0 ? frame.sourcesFirst : groupFirst;
+            frame.last = groupLast >= 0 ? groupLast : frame.sourcesLast;
+
+            if (frame.parent != null) {
+                frame.parent.childFirsts.add(frame.first);
+                frame.parent.childLasts.add(frame.last);
+            }
+            finished = frame;
+        }
+
+        if (finished.first < 0) {
+            throw new WorkflowGraphException("No actions found in workflow");
+        }
+
+        int offset = result.size();
+        for (Action vertex : vertices) {
+            result.addVertex(vertex);
+        }
+        for (int[] edge : edges) {
+            result.addEdge(offset + edge[0], offset + edge[1]);
+        }
+
+        return Pair.of(offset + finished.first, offset + finished.last);
+    }
+
+    /**
+     * Emits the actions that run first in a component, inside a fork/join pair if there is more than one
+     */
+    private static void emitSources(Frame frame, WorkflowGraph inputGraph, List<Action> vertices, List<int[]> edges, ForkJoinFactory forkJoins) {
+        List<Integer> sources = frame.component.sources;
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        if (sources.size() == 1) {
+            frame.sourcesFirst = vertices.size();
+            frame.sourcesLast = frame.sourcesFirst;
+            vertices.add(inputGraph.getAction(sources.get(0)));
+            return;
+        }
+
+        Pair<Action, Action> forkJoin = forkJoins.create();
+        int fork = vertices.size();
+        vertices.add(forkJoin.getLeft());
+        int join = fork + sources.size() + 1;
+        for (int source : sources) {
+            int vertex = vertices.size();
+            vertices.add(inputGraph.getAction(source));
+            edges.add(new int[]{fork, vertex});
+            edges.add(new int[]{vertex, join});
+        }
+        vertices.add(forkJoin.getRight());
+
+        frame.sourcesFirst = fork;
+        frame.sourcesLast = join;
+    }
+
+    /**
+     * The state of a component being emitted
+     */
+    private static class Frame {
+        private final Component component;
+        private final Frame parent;
+        private boolean started = false;
+        private int nextChild = 0;
+        private int sourcesFirst = -1;
+        private int sourcesLast = -1;
+        private int wrapperFork = -1;
+        private final List<Integer> childFirsts = new ArrayList<>();
+        private final List<Integer> childLasts = new ArrayList<>();
+        private int first = -1;
+        private int last = -1;
+
+        Frame(Component component, Frame parent) {
+            this.component = component;
+            this.parent = parent;
+        }
+    }
+
+    private static void sortByFirstIndex(List<Component> components, List<Integer> representatives) {
+        Integer[] order = new Integer[components.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        final List<Component> unsorted = new ArrayList<>(components);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Integer.compare(unsorted.get(o1).firstIndex, unsorted.get(o2).firstIndex);
+            }
+        });
+
+        List<Integer> unsortedRepresentatives = new ArrayList<>(representatives);
+        for (int i = 0; i < order.length; i++) {
+            components.set(i, unsorted.get(order[i]));
+            representatives.set(i, unsortedRepresentatives.get(order[i]));
+        }
+    }
+
+    private static int find(int[] parents, int action) {
+        int root = action;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+
+        // Compress the path so later lookups are fast
+        while (parents[action] != root) {
+            int next = parents[action];
+            parents[action] = root;
+            action = next;
+        }
+
+        return root;
+    }
+
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents[secondRoot] = firstRoot;
+        }
+    }
+}
@@ -0,0 +1,657 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+/**
+ * Inserts fork/join pairs into a workflow graph while adding as few false dependencies as it can
+ *
+ * Oozie only allows properly nested fork/join pairs, so a workflow must be series-parallel and some actions may have to wait for
+ * actions they do not depend on. The recursive and layered algorithms always run the actions with no dependencies first, so every
+ * action waits for the slowest action of the previous layer. Here a connected set of actions is instead split into a series of parts:
+ * first at every point where each action before it is already a dependency of each action after it, which adds no false dependencies,
+ * and otherwise at the single point that adds the fewest. Points are taken between the layers of the longest chain of dependencies
+ * leading to each action and between the layers of the longest chain leading from it. Unconnected sets run in parallel as before.
+ *
+ * The cheapest point is not always the best, as it can leave parts that are expensive to split in turn. So when a set cannot be split for
+ * free, both the cheapest point and the split after the actions with no dependencies are followed to the end, each splitting its parts
+ * the same way, and the split whose whole decomposition adds fewer false dependencies is taken. Following the second alone adds no more
+ * false dependencies than the layered algorithm, so neither does the result.
+ *
+ * Counting the false dependencies of a split needs every action's descendants, which takes time and memory quadratic in the size of the
+ * set. This is only done for sets that cannot be split for free, which are usually much smaller than the workflow. Sets larger than
+ * COUNTED_LIMIT are split between layers as the layered algorithm does, until the actions left are few enough to count.
+ *
+ * Parallel branches are ordered as they appear in the workflow definition
+ *
+ * @author Andrew Johnson
+ */
+final class SeriesParallelGraphBuilder {
+    // Larger sets that cannot be split for free are split as the layered algorithm would, without counting false dependencies
+    static final int COUNTED_LIMIT = 500;
+
+    private final WorkflowGraph inputGraph;
+    private final WorkflowGraph.Builder result;
+    private final ForkJoinFactory forkJoins;
+
+    // The set being split is marked with its own stamp, and each action in it records its position in the set
+    private final int[] stamps;
+    private final int[] positions;
+    private int stamp = 0;
+
+    // The false dependencies added by each set already followed to the end, for each way of splitting it
+    private final Map<Key, Long> costs = new HashMap<>();
+
+    private SeriesParallelGraphBuilder(WorkflowGraph inputGraph, WorkflowGraph.Builder result, ForkJoinFactory forkJoins) {
+        this.inputGraph = inputGraph;
+        this.result = result;
+        this.forkJoins = forkJoins;
+        this.stamps = new int[inputGraph.size()];
+        this.positions = new int[inputGraph.size()];
+    }
+
+    /**
+     * Build the fork/join graph for an input graph
+     *
+     * @param inputGraph The graph of actions and their dependencies, which must not be empty
+     * @param result The graph to which to add the actions with fork/join pairs inserted
+     * @param forkJoins Creates the fork/join pairs within the workflow being built
+     * @return A Pair with the numbers in the result of the "first" node and the "last" node added
+     */
+    static Pair<Integer, Integer> buildGraph(WorkflowGraph inputGraph, WorkflowGraph.Builder result, ForkJoinFactory forkJoins) {
+        int[] actions = new int[inputGraph.size()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = i;
+        }
+
+        int[] firstAndLast = new SeriesParallelGraphBuilder(inputGraph, result, forkJoins).build(actions);
+        return Pair.of(firstAndLast[0], firstAndLast[1]);
+    }
+
+    /**
+     * Add a set of actions to the result
+     *
+     * @param actions The actions to add, in workflow order
+     * @return The numbers in the result of the "first" node and the "last" node added
+     */
+    private int[] build(int[] actions) {
+        if (actions.length == 1) {
+            int vertex = result.addVertex(inputGraph.getAction(actions[0]));
+            return new int[]{vertex, vertex};
+        }
+
+        stamp++;
+        for (int i = 0; i < actions.length; i++) {
+            stamps[actions[i]] = stamp;
+            positions[actions[i]] = i;
+        }
+        int[][] successors = getSuccessors(actions);
+
+        List<int[]> components = getComponents(actions, successors);
+        if (components.size() > 1) {
+            return buildParallel(components);
+        }
+
+        Split split = split(actions, successors, false);
+        if (split.falseDependencies > 0) {
+            Split sourcesFirst = split(actions, successors, true);
+            if (complete(sourcesFirst, true) < complete(split, false)) {
+                split = sourcesFirst;
+            }
+        }
+        return buildSeries(split.parts);
+    }
+
+    /**
+     * Counts the false dependencies a set of actions adds when always split the same way, without adding anything to the result
+     *
+     * @param actions The actions in workflow order
+     * @param sourcesFirst Whether connected sets are always split after the actions with no dependencies, or at the cheapest point
+     * @return The number of false dependencies added
+     */
+    private long cost(int[] actions, boolean sourcesFirst) {
+        if (actions.length == 1) {
+            return 0;
+        }
+        Key key = new Key(actions, sourcesFirst);
+        Long cached = costs.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        stamp++;
+        for (int i = 0; i < actions.length; i++) {
+            stamps[actions[i]] = stamp;
+            positions[actions[i]] = i;
+        }
+        int[][] successors = getSuccessors(actions);
+
+        long total = 0;
+        List<int[]> components = getComponents(actions, successors);
+        if (components.size() > 1) {
+            for (int[] component : components) {
+                total += cost(component, sourcesFirst);
+            }
+        } else {
+            total = complete(split(actions, successors, sourcesFirst), sourcesFirst);
+        }
+        costs.put(key, total);
+        return total;
+    }
+
+    /**
+     * Counts the false dependencies added by a split together with those added splitting each of its parts the same way
+     */
+    private long complete(Split split, boolean sourcesFirst) {
+        long total = split.falseDependencies;
+        for (int[] part : split.parts) {
+            total += cost(part, sourcesFirst);
+        }
+        return total;
+    }
+
+    private int[] buildParallel(List<int[]> branches) {
+        Pair<Action, Action> forkJoin = forkJoins.create();
+        int fork = result.addVertex(forkJoin.getLeft());
+        int join = result.addVertex(forkJoin.getRight());
+        for (int[] branch : branches) {
+            int[] firstAndLast = build(branch);
+            result.addEdge(fork, firstAndLast[0]);
+            result.addEdge(firstAndLast[1], join);
+        }
+        return new int[]{fork, join};
+    }
+
+    private int[] buildSeries(List<int[]> parts) {
+        int first = -1;
+        int last = -1;
+        for (int[] part : parts) {
+            int[] firstAndLast = build(part);
+            if (last >= 0) {
+                result.addEdge(last, firstAndLast[0]);
+            } else {
+                first = firstAndLast[0];
+            }
+            last = firstAndLast[1];
+        }
+        return new int[]{first, last};
+    }
+
+    /**
+     * Gets the successors of each action within the set being split, by position in the set
+     */
+    private int[][] getSuccessors(int[] actions) {
+        int[][] successors = new int[actions.length][];
+        int[] buffer = new int[16];
+        for (int i = 0; i < actions.length; i++) {
+            int count = 0;
+            for (int j = 0; j < inputGraph.getOutDegree(actions[i]); j++) {
+                int successor = inputGraph.getSuccessor(actions[i], j);
+                if (stamps[successor] == stamp) {
+                    if (count == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, count * 2);
+                    }
+                    buffer[count++] = positions[successor];
+                }
+            }
+            successors[i] = Arrays.copyOf(buffer, count);
+        }
+        return successors;
+    }
+
+    /**
+     * Splits a set of actions into its connected components, ordered by their first action
+     * Each component is keyed by its first action, as the root of a merged component is always the earlier of the two
+     */
+    private static List<int[]> getComponents(int[] actions, int[][] successors) {
+        int[] parents = new int[actions.length];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < actions.length; i++) {
+            for (int successor : successors[i]) {
+                int first = find(parents, i);
+                int second = find(parents, successor);
+                if (first != second) {
+                    parents[Math.max(first, second)] = Math.min(first, second);
+                }
+            }
+        }
+
+        int[] roots = new int[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            roots[i] = find(parents, i);
+        }
+        return group(actions, roots);
+    }
+
+    /**
+     * Splits a connected set of actions into a series of parts
+     *
+     * @param actions The actions in workflow order
+     * @param successors The successors of each action by position
+     * @param sourcesFirst Whether to split after the actions with no dependencies, as the layered algorithm does, or at the cheapest point
+     *                     Sets too large to count are always split as the layered algorithm does
+     * @return Two or more parts, each of which runs after all of the parts before it
+     */
+    private static Split split(int[] actions, int[][] successors, boolean sourcesFirst) {
+        int count = actions.length;
+        int[] order = getTopologicalOrder(successors);
+
+        // The layer of each action counting from the start, given by the longest chain of dependencies leading to it
+        int[] depths = new int[count];
+        int maxDepth = 0;
+        for (int action : order) {
+            for (int successor : successors[action]) {
+                depths[successor] = Math.max(depths[successor], depths[action] + 1);
+                maxDepth = Math.max(maxDepth, depths[successor]);
+            }
+        }
+
+        List<Integer> freeCuts = findFreeCuts(successors, depths, maxDepth);
+        if (!freeCuts.isEmpty()) {
+            int[] parts = new int[maxDepth + 1];
+            int part = 0;
+            for (int d = 0; d <= maxDepth; d++) {
+                parts[d] = part;
+                if (part < freeCuts.size() && freeCuts.get(part) == d) {
+                    part++;
+                }
+            }
+            int[] partOf = new int[count];
+            for (int i = 0; i < count; i++) {
+                partOf[i] = parts[depths[i]];
+            }
+            return new Split(group(actions, partOf), 0);
+        }
+
+        if (count > COUNTED_LIMIT) {
+            return splitLayers(actions, successors, depths, maxDepth);
+        }
+
+        if (sourcesFirst) {
+            int[] partOf = new int[count];
+            for (int i = 0; i < count; i++) {
+                partOf[i] = depths[i] == 0 ? 0 : 1;
+            }
+            // Sources have no ancestors, so the real dependencies crossing the split are just their descendants
+            long[] descendantCounts = new long[count];
+            countRelatives(order, successors, descendantCounts, new long[count]);
+            long before = 0;
+            long dependencies = 0;
+            for (int i = 0; i < count; i++) {
+                if (depths[i] == 0) {
+                    before++;
+                    dependencies += descendantCounts[i];
+                }
+            }
+            return new Split(group(actions, partOf), before * (count - before) - dependencies);
+        }
+
+        // The layer of each action counting from the end, given by the longest chain of dependents following it
+        int[] heights = new int[count];
+        int maxHeight = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            int action = order[i];
+            for (int successor : successors[action]) {
+                heights[action] = Math.max(heights[action], heights[successor] + 1);
+            }
+            maxHeight = Math.max(maxHeight, heights[action]);
+        }
+
+        // Every split adds some false dependencies, so count the dependencies each action really has within the set
+        long[] descendantCounts = new long[count];
+        long[] ancestorCounts = new long[count];
+        countRelatives(order, successors, descendantCounts, ancestorCounts);
+
+        // Moving a whole layer across the split changes the number of real dependencies crossing it by the dependencies of that layer alone,
+        // as every ancestor of an action is in an earlier layer and every descendant in a later one
+        Cut fromStart = findCheapestCut(depths, maxDepth, descendantCounts, ancestorCounts, count, true);
+        Cut fromEnd = findCheapestCut(heights, maxHeight, descendantCounts, ancestorCounts, count, false);
+        Cut cut = fromEnd.isCheaperThan(fromStart, count) ? fromEnd : fromStart;
+
+        int[] partOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            boolean before = cut.fromStart ? depths[i] <= cut.layer : heights[i] > cut.layer;
+            partOf[i] = before ? 0 : 1;
+        }
+        return new Split(group(actions, partOf), cut.falseDependencies);
+    }
+
+    /**
+     * Splits a connected set too large to count between each of its first layers, as the layered algorithm would
+     *
+     * The layered algorithm removes one layer at a time until the actions left are no longer connected, and here layers are also only
+     * split off until the actions left are few enough to count. Whether the actions left after each layer are still connected is found
+     * for every layer at once by merging them from the deepest layer up, so a long set is split in one pass rather than one layer at a time.
+     *
+     * @param actions The actions in workflow order
+     * @param successors The successors of each action by position
+     * @param depths The layer of each action by position
+     * @param maxDepth The deepest layer
+     * @return One part for each layer split off and one for the actions left, with no false dependencies counted
+     */
+    private static Split splitLayers(int[] actions, int[][] successors, int[] depths, int maxDepth) {
+        int count = actions.length;
+        int[] layerStarts = new int[maxDepth + 2];
+        for (int depth : depths) {
+            layerStarts[depth + 1]++;
+        }
+        for (int d = 0; d <= maxDepth; d++) {
+            layerStarts[d + 1] += layerStarts[d];
+        }
+        int[] byDepth = new int[count];
+        int[] next = Arrays.copyOf(layerStarts, maxDepth + 1);
+        for (int i = 0; i < count; i++) {
+            byDepth[next[depths[i]]++] = i;
+        }
+
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+        }
+
+        // The shallowest layer whose actions and those after it are few enough to count or not connected, which the deepest layer always is
+        int firstLeft = maxDepth;
+        int components = 0;
+        for (int d = maxDepth; d > 0; d--) {
+            for (int i = layerStarts[d]; i < layerStarts[d + 1]; i++) {
+                int action = byDepth[i];
+                components++;
+                for (int successor : successors[action]) {
+                    int first = find(parents, action);
+                    int second = find(parents, successor);
+                    if (first != second) {
+                        parents[Math.max(first, second)] = Math.min(first, second);
+                        components--;
+                    }
+                }
+            }
+            if (count - layerStarts[d] <= COUNTED_LIMIT || components > 1) {
+                firstLeft = d;
+            }
+        }
+
+        int[] partOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            partOf[i] = Math.min(depths[i], firstLeft);
+        }
+        return new Split(group(actions, partOf), 0);
+    }
+
+    /**
+     * Counts the descendants and ancestors of each action within a connected set
+     *
+     * @param order The actions of the set in topological order
+     * @param successors The successors of each action by position
+     * @param descendantCounts Filled with the number of descendants of each action
+     * @param ancestorCounts Filled with the number of ancestors of each action
+     */
+    private static void countRelatives(int[] order, int[][] successors, long[] descendantCounts, long[] ancestorCounts) {
+        int count = order.length;
+        BitSet[] descendants = new BitSet[count];
+        for (int i = count - 1; i >= 0; i--) {
+            int action = order[i];
+            BitSet reachable = new BitSet(count);
+            for (int successor : successors[action]) {
+                reachable.set(successor);
+                reachable.or(descendants[successor]);
+            }
+            descendants[action] = reachable;
+            descendantCounts[action] = reachable.cardinality();
+            for (int j = reachable.nextSetBit(0); j >= 0; j = reachable.nextSetBit(j + 1)) {
+                ancestorCounts[j]++;
+            }
+        }
+    }
+
+    /**
+     * Finds the layers after which every action in the layers so far is already a dependency of every action in the later layers
+     *
+     * The actions of the next layer are the only ones in the later layers with no dependencies there, and the actions in the layers so far
+     * with no dependents there can only reach the later layers directly. So a split adds nothing exactly when each action of the next layer
+     * depends directly on each of those actions. An action has no dependents in the layers up to and including d when its shallowest
+     * dependent is deeper than d, so these are counted for every layer at once.
+     *
+     * @return The layers after which to split, in ascending order
+     */
+    private static List<Integer> findFreeCuts(int[][] successors, int[] depths, int maxDepth) {
+        int count = depths.length;
+        int[] shallowestDependent = new int[count];
+        int[] lastLayers = new int[maxDepth + 2];
+        for (int i = 0; i < count; i++) {
+            shallowestDependent[i] = maxDepth + 1;
+            for (int successor : successors[i]) {
+                shallowestDependent[i] = Math.min(shallowestDependent[i], depths[successor]);
+            }
+            // The action is among the last of the layers so far from its own layer until its shallowest dependent
+            lastLayers[depths[i]]++;
+            lastLayers[shallowestDependent[i]]--;
+        }
+        for (int d = 1; d <= maxDepth; d++) {
+            lastLayers[d] += lastLayers[d - 1];
+        }
+
+        // An edge from one of the last actions of the layers so far to the next layer always ends at the action's shallowest dependent
+        int[] lastDependencies = new int[count];
+        for (int i = 0; i < count; i++) {
+            for (int successor : successors[i]) {
+                if (depths[successor] == shallowestDependent[i]) {
+                    lastDependencies[successor]++;
+                }
+            }
+        }
+
+        boolean[] free = new boolean[maxDepth];
+        Arrays.fill(free, true);
+        for (int i = 0; i < count; i++) {
+            if (depths[i] > 0 && lastDependencies[i] != lastLayers[depths[i] - 1]) {
+                free[depths[i] - 1] = false;
+            }
+        }
+
+        List<Integer> cuts = new ArrayList<>();
+        for (int d = 0; d < maxDepth; d++) {
+            if (free[d]) {
+                cuts.add(d);
+            }
+        }
+        return cuts;
+    }
+
+    /**
+     * Finds the split between layers that adds the fewest false dependencies
+     *
+     * @param layers The layer of each action
+     * @param maxLayer The last layer
+     * @param descendantCounts The number of descendants of each action within the set
+     * @param ancestorCounts The number of ancestors of each action within the set
+     * @param count The number of actions in the set
+     * @param fromStart Whether layers count from the start, so that earlier layers run first, or from the end
+     * @return The cheapest split, preferring the most even split among equally cheap ones
+     */
+    private static Cut findCheapestCut(int[] layers, int maxLayer, long[] descendantCounts, long[] ancestorCounts, int count, boolean fromStart) {
+        long[] sizes = new long[maxLayer + 1];
+        long[] layerDescendants = new long[maxLayer + 1];
+        long[] layerAncestors = new long[maxLayer + 1];
+        for (int i = 0; i < count; i++) {
+            sizes[layers[i]]++;
+            layerDescendants[layers[i]] += descendantCounts[i];
+            layerAncestors[layers[i]] += ancestorCounts[i];
+        }
+
+        Cut best = null;
+        long before = 0;
+        long dependencies = 0;
+        for (int l = 0; l < maxLayer; l++) {
+            // Layers are moved in the order they run when counting from the start, and in reverse when counting from the end
+            int layer = fromStart ? l : maxLayer - l;
+            before += sizes[layer];
+            dependencies += layerDescendants[layer] - layerAncestors[layer];
+
+            Cut cut = new Cut(fromStart, fromStart ? layer : layer - 1, before * (count - before) - dependencies, before);
+            if (best == null || cut.isCheaperThan(best, count)) {
+                best = cut;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A set of actions split into a series of parts
+     */
+    private static class Split {
+        private final List<int[]> parts;
+        private final long falseDependencies;
+
+        Split(List<int[]> parts, long falseDependencies) {
+            this.parts = parts;
+            this.falseDependencies = falseDependencies;
+        }
+    }
+
+    /**
+     * A set of actions followed to the end with one way of splitting it
+     */
+    private static class Key {
+        private final int[] actions;
+        private final boolean sourcesFirst;
+
+        Key(int[] actions, boolean sourcesFirst) {
+            this.actions = actions;
+            this.sourcesFirst = sourcesFirst;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return sourcesFirst == other.sourcesFirst && Arrays.equals(actions, other.actions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(actions) + (sourcesFirst ? 1 : 0);
+        }
+    }
+
+    /**
+     * A split of a set of actions between two layers
+     */
+    private static class Cut {
+        // When counting from the start the actions up to and including the layer run first, otherwise those after it
+        private final boolean fromStart;
+        private final int layer;
+        private final long falseDependencies;
+        private final long before;
+
+        Cut(boolean fromStart, int layer, long falseDependencies, long before) {
+            this.fromStart = fromStart;
+            this.layer = layer;
+            this.falseDependencies = falseDependencies;
+            this.before = before;
+        }
+
+        /**
+         * Even splits are preferred among equally cheap ones, as they keep the nesting of the workflow shallow
+         */
+        boolean isCheaperThan(Cut other, int count) {
+            if (falseDependencies != other.falseDependencies) {
+                return falseDependencies < other.falseDependencies;
+            }
+            return Math.abs(count - 2 * before) < Math.abs(count - 2 * other.before);
+        }
+    }
+
+    /**
+     * Sorts the actions of a connected set so every action comes after its dependencies, keeping workflow order where possible
+     */
+    private static int[] getTopologicalOrder(int[][] successors) {
+        int count = successors.length;
+        int[] inDegrees = new int[count];
+        for (int[] targets : successors) {
+            for (int successor : targets) {
+                inDegrees[successor]++;
+            }
+        }
+
+        int[] order = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (inDegrees[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int action = order[head++];
+            for (int successor : successors[action]) {
+                if (--inDegrees[successor] == 0) {
+                    order[tail++] = successor;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Groups actions by key, with groups ordered by key and actions in workflow order within each group
+     */
+    private static List<int[]> group(int[] actions, int[] keys) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < actions.length; i++) {
+            List<Integer> members = groups.get(keys[i]);
+            if (members == null) {
+                members = new ArrayList<>();
+                groups.put(keys[i], members);
+            }
+            members.add(actions[i]);
+        }
+
+        List<int[]> result = new ArrayList<>(groups.size());
+        for (List<Integer> members : groups.values()) {
+            int[] group = new int[members.size()];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = members.get(i);
+            }
+            result.add(group);
+        }
+        return result;
+    }
+
+    private static int find(int[] parents, int action) {
+        int root = action;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+
+        // Compress the path so later lookups are fast
+        while (parents[action] != root) {
+            int next = parents[action];
+            parents[action] = root;
+            action = next;
+        }
+
+        return root;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.*;
+
+/**
+ * A compact, immutable workflow graph
+ * Actions are numbered densely from 0 and edges are stored as arrays of action numbers, so traversing the graph never hashes an Action
+ * Edges leaving or entering an action are kept in the order they were added
+ *
+ * The graph also records the start, end and kill actions, and the fork/join pair that directly encloses each action
+ * It can be converted to a jgrapht graph for Graphviz output
+ *
+ * @author Andrew Johnson
+ */
+public class WorkflowGraph {
+    /**
+     * The number used when there is no such action
+     */
+    public static final int NONE = -1;
+
+    private final Action[] actions;
+
+    // Edges in the order they were added, which is the order they are converted back to jgrapht
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+
+    // The successors of action i are outTargets[outOffsets[i]] up to outTargets[outOffsets[i + 1]]
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inSources;
+
+    private final int start;
+    private final int end;
+    private final int kill;
+
+    private final int[] enclosingForks;
+    private final int[] enclosingJoins;
+
+    private WorkflowGraph(Builder builder, int[] enclosingForks, int[] enclosingJoins) {
+        this.actions = builder.actions.toArray(new Action[builder.actions.size()]);
+        this.edgeSources = Arrays.copyOf(builder.edgeSources, builder.edgeCount);
+        this.edgeTargets = Arrays.copyOf(builder.edgeTargets, builder.edgeCount);
+        this.outOffsets = new int[actions.length + 1];
+        this.outTargets = new int[edgeSources.length];
+        this.inOffsets = new int[actions.length + 1];
+        this.inSources = new int[edgeSources.length];
+        index(edgeSources, edgeTargets, outOffsets, outTargets);
+        index(edgeTargets, edgeSources, inOffsets, inSources);
+        this.start = builder.start;
+        this.end = builder.end;
+        this.kill = builder.kill;
+        this.enclosingForks = enclosingForks;
+        this.enclosingJoins = enclosingJoins;
+    }
+
+    public int size() {
+        return actions.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeSources.length;
+    }
+
+    public Action getAction(int action) {
+        return actions[action];
+    }
+
+    public int getOutDegree(int action) {
+        return outOffsets[action + 1] - outOffsets[action];
+    }
+
+    /**
+     * @param action The action number
+     * @param i The position of the edge among the edges leaving the action
+     * @return The target of the edge
+     */
+    public int getSuccessor(int action, int i) {
+        return outTargets[outOffsets[action] + i];
+    }
+
+    public int getInDegree(int action) {
+        return inOffsets[action + 1] - inOffsets[action];
+    }
+
+    /**
+     * @param action The action number
+     * @param i The position of the edge among the edges entering the action
+     * @return The source of the edge
+     */
+    public int getPredecessor(int action, int i) {
+        return inSources[inOffsets[action] + i];
+    }
+
+    /**
+     * @return The number of the start action, or NONE if there is none
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return The number of the end action, or NONE if there is none
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return The number of the kill action, or NONE if there is none
+     */
+    public int getKill() {
+        return kill;
+    }
+
+    /**
+     * Gets the fork of the innermost fork/join pair enclosing an action
+     * For a fork or join this is the pair enclosing the whole fork/join, not the pair itself
+     *
+     * @param action The action number
+     * @return The number of the fork, or NONE if the action is not inside a fork/join
+     */
+    public int getEnclosingFork(int action) {
+        return enclosingForks[action];
+    }
+
+    /**
+     * Gets the join of the innermost fork/join pair enclosing an action
+     * For a fork or join this is the pair enclosing the whole fork/join, not the pair itself
+     *
+     * @param action The action number
+     * @return The number of the join, or NONE if the action is not inside a fork/join
+     */
+    public int getEnclosingJoin(int action) {
+        return enclosingJoins[action];
+    }
+
+    /**
+     * Gets the innermost fork/join pair enclosing an action
+     *
+     * @param action The action number
+     * @return A Pair of actions, where the left action is the fork and the right action is the join, or null if the action is not inside a fork/join
+     */
+    public Pair<Action, Action> getEnclosingForkJoin(int action) {
+        if (enclosingForks[action] == NONE) {
+            return null;
+        }
+
+        return Pair.of(actions[enclosingForks[action]], actions[enclosingJoins[action]]);
+    }
+
+    /**
+     * Lists the actions reachable from an action in depth-first order
+     * This is the same order as jgrapht's DepthFirstIterator, which visits the successors of an action starting from the last edge added
+     *
+     * @param from The action number from which to start
+     * @return The reachable action numbers, starting with the given action
+     */
+    public int[] getDepthFirstOrder(int from) {
+        boolean[] seen = new boolean[actions.length];
+        int[] order = new int[actions.length];
+        int count = 0;
+
+        // Each stack entry is an action and the number of its successors not yet considered
+        int[] stack = new int[actions.length];
+        int[] remaining = new int[actions.length];
+        int depth = 0;
+
+        seen[from] = true;
+        order[count++] = from;
+        stack[depth] = from;
+        remaining[depth++] = getOutDegree(from);
+        while (depth > 0) {
+            int action = stack[depth - 1];
+            if (remaining[depth - 1] == 0) {
+                depth--;
+                continue;
+            }
+
+            int next = getSuccessor(action, --remaining[depth - 1]);
+            if (!seen[next]) {
+                seen[next] = true;
+                order[count++] = next;
+                stack[depth] = next;
+                remaining[depth++] = getOutDegree(next);
+            }
+        }
+
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Convert this graph to a jgrapht graph, with the vertices and edges added in the same order as they were added to this graph
+     *
+     * @return A new DirectedAcyclicGraph with the same actions and edges
+     */
+    public DirectedAcyclicGraph<Action, DefaultEdge> toDirectedAcyclicGraph() {
+        DirectedAcyclicGraph<Action, DefaultEdge> result = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        for (Action action : actions) {
+            result.addVertex(action);
+        }
+
+        try {
+            for (int i = 0; i < edgeSources.length; i++) {
+                result.addDagEdge(actions[edgeSources[i]], actions[edgeTargets[i]]);
+            }
+        } catch (DirectedAcyclicGraph.CycleFoundException e) {
+            // Cycles are rejected when this graph is built
+            throw new IllegalStateException("Cycle found in workflow graph", e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Index a list of edges by their source, keeping the edges from each source in order
+     */
+    private static void index(int[] sources, int[] targets, int[] offsets, int[] indexed) {
+        for (int source : sources) {
+            offsets[source + 1]++;
+        }
+        for (int i = 0; i < offsets.length - 1; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < sources.length; i++) {
+            indexed[next[sources[i]]++] = targets[i];
+        }
+    }
+
+    /**
+     * Builds a WorkflowGraph one action and edge at a time
+     */
+    static class Builder {
+        private final List<Action> actions = new ArrayList<>();
+        private int[] edgeSources = new int[16];
+        private int[] edgeTargets = new int[16];
+        private int edgeCount = 0;
+        private int start = NONE;
+        private int end = NONE;
+        private int kill = NONE;
+
+        /**
+         * @param action The action to add
+         * @return The number of the new action
+         */
+        int addVertex(Action action) {
+            actions.add(action);
+            return actions.size() - 1;
+        }
+
+        /**
+         * @param source The number of the action at the start of the edge
+         * @param target The number of the action at the end of the edge
+         */
+        void addEdge(int source, int target) {
+            if (source == target) {
+                throw new IllegalArgumentException("loops not allowed");
+            }
+
+            if (edgeCount == edgeSources.length) {
+                edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+                edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+            }
+            edgeSources[edgeCount] = source;
+            edgeTargets[edgeCount] = target;
+            edgeCount++;
+        }
+
+        int size() {
+            return actions.size();
+        }
+
+        Action getAction(int action) {
+            return actions.get(action);
+        }
+
+        int getStart() {
+            return start;
+        }
+
+        void setStart(int action) {
+            start = action;
+        }
+
+        int getEnd() {
+            return end;
+        }
+
+        void setEnd(int action) {
+            end = action;
+        }
+
+        void setKill(int action) {
+            kill = action;
+        }
+
+        /**
+         * Build the graph
+         *
+         * @param forkJoins The factory which created the fork/join pairs in the graph, or null if there are none
+         * @return The new graph
+         * @throws DirectedAcyclicGraph.CycleFoundException If the edges form a cycle
+         */
+        WorkflowGraph build(ForkJoinFactory forkJoins) throws DirectedAcyclicGraph.CycleFoundException {
+            int[] enclosingForks = new int[actions.size()];
+            int[] enclosingJoins = new int[actions.size()];
+            Arrays.fill(enclosingForks, NONE);
+            Arrays.fill(enclosingJoins, NONE);
+            WorkflowGraph graph = new WorkflowGraph(this, enclosingForks, enclosingJoins);
+
+            int[] order = graph.getTopologicalOrder();
+            if (forkJoins != null) {
+                graph.findEnclosingForkJoins(order, forkJoins);
+            }
+
+            return graph;
+        }
+    }
+
+    /**
+     * Sorts the actions so every action comes after its predecessors
+     *
+     * @return The action numbers in topological order
+     * @throws DirectedAcyclicGraph.CycleFoundException If there is no such order
+     */
+    int[] getTopologicalOrder() throws DirectedAcyclicGraph.CycleFoundException {
+        int[] inDegrees = new int[actions.length];
+        int[] order = new int[actions.length];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < actions.length; i++) {
+            inDegrees[i] = getInDegree(i);
+            if (inDegrees[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+
+        while (head < tail) {
+            int action = order[head++];
+            for (int i = outOffsets[action]; i < outOffsets[action + 1]; i++) {
+                if (--inDegrees[outTargets[i]] == 0) {
+                    order[tail++] = outTargets[i];
+                }
+            }
+        }
+
+        if (tail < actions.length) {
+            throw new DirectedAcyclicGraph.CycleFoundException();
+        }
+
+        return order;
+    }
+
+    /**
+     * Finds the innermost fork/join pair enclosing each action in a single pass over the graph
+     * Every action has the same enclosing pair as its predecessor, unless the predecessor is a fork, in which case that fork encloses it
+     * A join has the same enclosing pair as its fork, which has already been visited since the graph is traversed in topological order
+     */
+    private void findEnclosingForkJoins(int[] order, ForkJoinFactory forkJoins) {
+        // Fork and join actions are only ever compared with themselves, so identity is enough and avoids hashing their contents
+        Map<Action, Integer> numbers = new IdentityHashMap<>();
+        for (int i = 0; i < actions.length; i++) {
+            if (forkJoins.getPairForFork(actions[i]) != null || forkJoins.getPairForJoin(actions[i]) != null) {
+                numbers.put(actions[i], i);
+            }
+        }
+
+        for (int action : order) {
+            Pair<Action, Action> forkJoin = forkJoins.getPairForJoin(actions[action]);
+            if (forkJoin != null) {
+                int fork = numbers.get(forkJoin.getLeft());
+                enclosingForks[action] = enclosingForks[fork];
+                enclosingJoins[action] = enclosingJoins[fork];
+                continue;
+            }
+
+            if (getInDegree(action) == 0) {
+                continue;
+            }
+
+            int predecessor = getPredecessor(action, 0);
+            Pair<Action, Action> predecessorForkJoin = forkJoins.getPairForFork(actions[predecessor]);
+            if (predecessorForkJoin != null) {
+                enclosingForks[action] = predecessor;
+                enclosingJoins[action] = numbers.get(predecessorForkJoin.getRight());
+            } else {
+                enclosingForks[action] = enclosingForks[predecessor];
+                enclosingJoins[action] = enclosingJoins[predecessor];
+            }
+        }
+    }
+}
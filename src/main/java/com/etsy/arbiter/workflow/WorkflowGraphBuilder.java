@@ -20,7 +20,11 @@ import com.etsy.arbiter.Action;
 import com.etsy.arbiter.Workflow;
 import com.etsy.arbiter.config.Config;
 import com.etsy.arbiter.exception.WorkflowGraphException;
-import com.etsy.arbiter.util.GraphvizGenerator;
+import com.etsy.arbiter.metrics.Phase;
+import com.etsy.arbiter.metrics.PhaseTimer;
+import com.etsy.arbiter.output.DirectoryOutputSink;
+import com.etsy.arbiter.output.OutputSink;
+import com.etsy.arbiter.util.GraphvizRenderer;
 import com.etsy.arbiter.util.NamedArgumentInterpolator;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.tuple.Pair;
@@ -30,6 +34,9 @@ import org.jgrapht.alg.ConnectivityInspector;
 import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
 import org.jgrapht.graph.DefaultEdge;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 
 
@@ -42,9 +49,26 @@ import java.util.*;
 public class WorkflowGraphBuilder {
     private WorkflowGraphBuilder() { }
 
-    // Every fork/join pair needs a unique name
-    // To keep the names short, we just number them sequentially
-    private static int forkCount = 0;
+    /**
+     * The algorithms available for inserting fork/join pairs
+     * RECURSIVE and LAYERED produce the same structure, but parallel branches and fork/join pairs may be ordered differently
+     */
+    public enum Algorithm {
+        /**
+         * Recursively splits the graph into connected components, copying the graph at each level
+         */
+        RECURSIVE,
+
+        /**
+         * Computes every level in a single pass over the graph, for very large workflows
+         */
+        LAYERED,
+
+        /**
+         * Splits the graph where it adds the fewest false dependencies rather than always after the actions with no dependencies
+         */
+        SERIES_PARALLEL
+    }
 
     /**
      * Build a workflow graph from the workflow definition, inserting fork/join pairs as appropriate for parallel
@@ -58,92 +82,274 @@ public class WorkflowGraphBuilder {
      * @throws WorkflowGraphException
      */
     public static DirectedAcyclicGraph<Action, DefaultEdge> buildWorkflowGraph(Workflow workflow, Config config, String outputDir, boolean generateGraphviz, String graphvizFormat) throws WorkflowGraphException {
-        forkCount = 0;
-        Map<String, Action> actionsByName = new HashMap<>();
-        List<Action> workflowActions = workflow.getActions();
+        return buildWorkflowGraph(workflow, config, outputDir, generateGraphviz, graphvizFormat, Algorithm.RECURSIVE);
+    }
+
+    /**
+     * Build a workflow graph from the workflow definition, inserting fork/join pairs as appropriate for parallel
+     *
+     * @param workflow Arbiter Workflow object
+     * @param config Arbiter Config object
+     * @param outputDir Output directory for Graphviz graphs
+     * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
+     * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @param algorithm The algorithm to use for inserting fork/join pairs
+     * @return DirectedAcyclicGraph DAG of the workflow
+     * @throws WorkflowGraphException
+     */
+    public static DirectedAcyclicGraph<Action, DefaultEdge> buildWorkflowGraph(Workflow workflow, Config config, String outputDir, boolean generateGraphviz, String graphvizFormat, Algorithm algorithm) throws WorkflowGraphException {
+        return build(workflow, config, outputDir, generateGraphviz, graphvizFormat, algorithm).toDirectedAcyclicGraph();
+    }
+
+    /**
+     * Build a workflow graph from the workflow definition, inserting fork/join pairs as appropriate for parallel
+     * The result is a compact graph that also records the fork/join pair enclosing each action
+     *
+     * @param workflow Arbiter Workflow object
+     * @param config Arbiter Config object
+     * @param outputDir Output directory for Graphviz graphs
+     * @param generateGraphviz Indicate if Graphviz graphs should be generated for workflows
+     * @param graphvizFormat The format in which Graphviz graphs should be generated if enabled
+     * @param algorithm The algorithm to use for inserting fork/join pairs
+     * @return WorkflowGraph The compact DAG of the workflow
+     * @throws WorkflowGraphException
+     */
+    public static WorkflowGraph build(Workflow workflow, Config config, String outputDir, boolean generateGraphviz, String graphvizFormat, Algorithm algorithm) throws WorkflowGraphException {
+        try (GraphvizRenderer graphviz = generateGraphviz ? new GraphvizRenderer(graphvizFormat, 1) : null) {
+            OutputSink sink = generateGraphviz ? new DirectoryOutputSink(new File(outputDir)) : null;
+            return build(workflow, config, sink, "", graphviz, algorithm, new PhaseTimer());
+        } catch (InterruptedIOException e) {
+            throw new WorkflowGraphException("Interrupted while generating Graphviz graphs", e);
+        } catch (IOException e) {
+            throw new WorkflowGraphException("Unable to create Graphviz output directory " + outputDir, e);
+        }
+    }
+
+    /**
+     * Build a workflow graph from the workflow definition, inserting fork/join pairs as appropriate for parallel
+     * The result is a compact graph that also records the fork/join pair enclosing each action
+     *
+     * @param workflow Arbiter Workflow object
+     * @param config Arbiter Config object
+     * @param sink The sink to which to write Graphviz graphs
+     * @param outputDir The directory within the sink for Graphviz graphs, or an empty string for the top of the sink
+     * @param graphviz Renders the Graphviz graph of the workflow as written, or null if no graph should be generated
+     * @param algorithm The algorithm to use for inserting fork/join pairs
+     * @param timer Records the time spent generating Graphviz graphs
+     * @return WorkflowGraph The compact DAG of the workflow
+     * @throws WorkflowGraphException
+     */
+    public static WorkflowGraph build(Workflow workflow, Config config, OutputSink sink, String outputDir, GraphvizRenderer graphviz, Algorithm algorithm, PhaseTimer timer) throws WorkflowGraphException {
+        WorkflowGraph inputGraph = buildInputGraph(workflow);
+
+        if (graphviz != null) {
+            timer.start(Phase.GRAPHVIZ);
+            graphviz.render(inputGraph.toDirectedAcyclicGraph(), sink, (outputDir.isEmpty() ? "" : outputDir + "/") + workflow.getName() + "-input.dot");
+            timer.stop();
+        }
+
+        if (inputGraph.size() == 0) {
+            throw new WorkflowGraphException("No actions found in workflow " + workflow.getName());
+        }
+
+        ForkJoinFactory forkJoins = new ForkJoinFactory();
+        WorkflowGraph.Builder workflowGraph = new WorkflowGraph.Builder();
+
+        // These are the standard control flow nodes that must be present in every workflow
+        Action start = new Action();
+        start.setName("start");
+        start.setType("start");
+
+        // Process the graph into its properly connected and organized structure.
+        int startTransitionNode;
+        int endTransitionNode;
+        if (algorithm == Algorithm.LAYERED || algorithm == Algorithm.SERIES_PARALLEL) {
+            workflowGraph.setStart(workflowGraph.addVertex(start));
+            Pair<Integer, Integer> firstAndLast = algorithm == Algorithm.LAYERED
+                    ? LayeredGraphBuilder.buildGraph(inputGraph, workflowGraph, forkJoins)
+                    : SeriesParallelGraphBuilder.buildGraph(inputGraph, workflowGraph, forkJoins);
+            startTransitionNode = firstAndLast.getLeft();
+            endTransitionNode = firstAndLast.getRight();
+        } else {
+            Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> workflowGraphTriple;
+            try {
+                workflowGraphTriple = processSubcomponents(inputGraph.toDirectedAcyclicGraph(), forkJoins);
+            } catch (DirectedAcyclicGraph.CycleFoundException e) {
+                throw new WorkflowGraphException("Cycle found while generating workflow", e);
+            }
+
+            Map<Action, Integer> numbers = addGraph(workflowGraph, workflowGraphTriple.getLeft());
+            startTransitionNode = numbers.get(workflowGraphTriple.getMiddle());
+            endTransitionNode = numbers.get(workflowGraphTriple.getRight());
+            workflowGraph.setStart(workflowGraph.addVertex(start));
+        }
+        workflowGraph.addEdge(workflowGraph.getStart(), startTransitionNode);
+
+        Action end = new Action();
+        end.setName("end");
+        end.setType("end");
+        workflowGraph.setEnd(workflowGraph.addVertex(end));
+
+        if (workflow.getErrorHandler() != null) {
+            int errorHandler = workflowGraph.addVertex(workflow.getErrorHandler());
+            workflowGraph.addEdge(errorHandler, workflowGraph.getEnd());
+            workflowGraph.addEdge(endTransitionNode, errorHandler);
+        } else {
+            workflowGraph.addEdge(endTransitionNode, workflowGraph.getEnd());
+        }
 
-        // Add all the actions to a map of string -> action
-        for (Action a : workflowActions) {
-            actionsByName.put(a.getName(), a);
+        // The kill node will be used as the error transition when generating the XML as appropriate
+        // These is no need to add any edges to it now
+        if (config.getKillMessage() != null && config.getKillName() != null) {
+            Action kill = new Action();
+            kill.setType("kill");
+            kill.setName(config.getKillName());
+            kill.setProperty("message", NamedArgumentInterpolator.interpolate(config.getKillMessage(), ImmutableMap.of("name", workflow.getName()), null));
+            workflowGraph.setKill(workflowGraph.addVertex(kill));
         }
 
-        // DAG of the workflow in its raw un-optimized state.
-        DirectedAcyclicGraph<Action, DefaultEdge> inputGraph = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        try {
+            return workflowGraph.build(forkJoins);
+        } catch (DirectedAcyclicGraph.CycleFoundException e) {
+            throw new WorkflowGraphException("Cycle found while generating workflow", e);
+        }
+    }
+
+    /**
+     * Count the false dependencies in a workflow graph
+     * A false dependency is a pair of actions where the second cannot start until the first has finished in the workflow graph,
+     * but does not depend on the first in the workflow definition, either directly or through other actions
+     * This takes memory quadratic in the number of actions
+     *
+     * @param workflow The workflow definition
+     * @param workflowGraph The graph built from the workflow definition
+     * @return The number of false dependencies
+     * @throws WorkflowGraphException If the workflow definition is invalid
+     */
+    public static long countFalseDependencies(Workflow workflow, WorkflowGraph workflowGraph) throws WorkflowGraphException {
+        WorkflowGraph inputGraph = buildInputGraph(workflow);
+
+        // The workflow graph holds the same actions, alongside the control nodes and error handler that are not counted
+        Map<Action, Integer> numbers = new IdentityHashMap<>();
+        for (int i = 0; i < inputGraph.size(); i++) {
+            numbers.put(inputGraph.getAction(i), i);
+        }
+        int[] inputNumbers = new int[workflowGraph.size()];
+        for (int i = 0; i < workflowGraph.size(); i++) {
+            Integer number = numbers.get(workflowGraph.getAction(i));
+            inputNumbers[i] = number == null ? WorkflowGraph.NONE : number;
+        }
+        int[] identity = new int[inputGraph.size()];
+        for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+        }
+
+        try {
+            return countDependencies(workflowGraph, inputNumbers, inputGraph.size()) - countDependencies(inputGraph, identity, inputGraph.size());
+        } catch (DirectedAcyclicGraph.CycleFoundException e) {
+            throw new WorkflowGraphException("Cycle found while counting dependencies", e);
+        }
+    }
+
+    /**
+     * Count the pairs of actions where the second runs after the first, either directly or through other actions
+     *
+     * @param graph The graph in which to count
+     * @param numbers The number of each action of the graph among the actions to count, or WorkflowGraph.NONE to not count it
+     * @param count The number of actions to count
+     * @return The number of pairs
+     */
+    private static long countDependencies(WorkflowGraph graph, int[] numbers, int count) throws DirectedAcyclicGraph.CycleFoundException {
+        int[] order = graph.getTopologicalOrder();
+        BitSet[] descendants = new BitSet[graph.size()];
+        long pairs = 0;
+        for (int i = order.length - 1; i >= 0; i--) {
+            int action = order[i];
+            BitSet reachable = new BitSet(count);
+            for (int j = 0; j < graph.getOutDegree(action); j++) {
+                int successor = graph.getSuccessor(action, j);
+                reachable.or(descendants[successor]);
+                if (numbers[successor] != WorkflowGraph.NONE) {
+                    reachable.set(numbers[successor]);
+                }
+            }
+            descendants[action] = reachable;
+            if (numbers[action] != WorkflowGraph.NONE) {
+                pairs += reachable.cardinality();
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Build the graph of the actions in a workflow and their dependencies, without any fork/join pairs
+     *
+     * @param workflow Arbiter Workflow object
+     * @return The graph of the workflow in its raw un-optimized state
+     * @throws WorkflowGraphException If a dependency is missing or the dependencies form a cycle
+     */
+    private static WorkflowGraph buildInputGraph(Workflow workflow) throws WorkflowGraphException {
+        WorkflowGraph.Builder inputGraph = new WorkflowGraph.Builder();
+        Map<String, Integer> numbersByName = new HashMap<>();
+        // A workflow without an actions list is reported as having no actions rather than failing here
+        List<Action> workflowActions = workflow.getActions() != null ? workflow.getActions() : Collections.<Action>emptyList();
+        int[] numbers = new int[workflowActions.size()];
+        boolean[] duplicates = new boolean[workflowActions.size()];
 
         // Add all the actions as vertices. At this point there are no connections within the graph, just vertices.
-        for (Action a : workflowActions) {
-            inputGraph.addVertex(a);
+        for (int i = 0; i < workflowActions.size(); i++) {
+            Action a = workflowActions.get(i);
+            Integer existing = numbersByName.get(a.getName());
+            // An action repeated exactly is the same vertex, as it would be in any other graph of actions
+            if (existing != null && inputGraph.getAction(existing).equals(a)) {
+                numbers[i] = existing;
+                duplicates[i] = true;
+            } else {
+                numbers[i] = inputGraph.addVertex(a);
+                numbersByName.put(a.getName(), numbers[i]);
+            }
         }
 
         // We need to traverse a second time so all the vertices are present when adding edges
-        for (Action a : workflowActions) {
-            if (a.getDependencies() != null) {
+        for (int i = 0; i < workflowActions.size(); i++) {
+            Action a = workflowActions.get(i);
+            if (a.getDependencies() != null && !duplicates[i]) {
                 for (String d : a.getDependencies()) {
-                    Action source = actionsByName.get(d);
+                    Integer source = numbersByName.get(d);
                     if (source == null) {
                         throw new WorkflowGraphException("Missing action for dependency " + d);
                     }
 
                     // Add the edge between the dep and the action
-                    try {
-                        inputGraph.addDagEdge(source, a);
-                    } catch (DirectedAcyclicGraph.CycleFoundException e) {
-                        throw new WorkflowGraphException("Cycle found while building original graph", e);
-                    }
+                    inputGraph.addEdge(source, numbers[i]);
                 }
             }
         }
 
-        if (generateGraphviz) {
-            GraphvizGenerator.generateGraphviz(inputGraph, outputDir + "/" + workflow.getName() + "-input.dot", graphvizFormat);
-        }
-
-        // Final DAG we will be returning
-        DirectedAcyclicGraph<Action, DefaultEdge> workflowGraph;
-        Action startTransitionNode;
-        Action endTransitionNode;
-
         try {
-            // Process the graph into its properly connected and organized structure.
-            Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> workflowGraphTriple = processSubcomponents(inputGraph);
-            workflowGraph = workflowGraphTriple.getLeft();
-            startTransitionNode = workflowGraphTriple.getMiddle();
-            endTransitionNode = workflowGraphTriple.getRight();
-
-            // These are the standard control flow nodes that must be present in every workflow
-            Action start = new Action();
-            start.setName("start");
-            start.setType("start");
-            workflowGraph.addVertex(start);
-            workflowGraph.addDagEdge(start, startTransitionNode);
-
-            Action end = new Action();
-            end.setName("end");
-            end.setType("end");
-            workflowGraph.addVertex(end);
-
-            if (workflow.getErrorHandler() != null) {
-                workflowGraph.addVertex(workflow.getErrorHandler());
-                workflowGraph.addDagEdge(workflow.getErrorHandler(), end);
-                workflowGraph.addDagEdge(endTransitionNode, workflow.getErrorHandler());
-            } else {
-                workflowGraph.addDagEdge(endTransitionNode, end);
-            }
-
-            // The kill node will be used as the error transition when generating the XML as appropriate
-            // These is no need to add any edges to it now
-            if (config.getKillMessage() != null && config.getKillName() != null) {
-                Action kill = new Action();
-                kill.setType("kill");
-                kill.setName(config.getKillName());
-                kill.setProperty("message", NamedArgumentInterpolator.interpolate(config.getKillMessage(), ImmutableMap.of("name", workflow.getName()), null));
-                workflowGraph.addVertex(kill);
-            }
+            return inputGraph.build(null);
         } catch (DirectedAcyclicGraph.CycleFoundException e) {
-            throw new WorkflowGraphException("Cycle found while generating workflow", e);
+            throw new WorkflowGraphException("Cycle found while building original graph", e);
+        }
+    }
+
+    /**
+     * Add all the vertices and edges of a jgrapht graph to a WorkflowGraph, in the order they were added to the jgrapht graph
+     *
+     * @param workflowGraph The graph to which to add the vertices and edges
+     * @param graph The graph to add
+     * @return The number in the WorkflowGraph of each vertex
+     */
+    private static Map<Action, Integer> addGraph(WorkflowGraph.Builder workflowGraph, DirectedAcyclicGraph<Action, DefaultEdge> graph) {
+        Map<Action, Integer> numbers = new IdentityHashMap<>();
+        for (Action vertex : graph.vertexSet()) {
+            numbers.put(vertex, workflowGraph.addVertex(vertex));
+        }
+        for (DefaultEdge edge : graph.edgeSet()) {
+            workflowGraph.addEdge(numbers.get(graph.getEdgeSource(edge)), numbers.get(graph.getEdgeTarget(edge)));
         }
 
-        return workflowGraph;
+        return numbers;
     }
 
     /**
@@ -151,11 +357,12 @@ public class WorkflowGraphBuilder {
      *
      * @param vertices The set of vertices to process
      * @param parentGraph The parentGraph graph of these vertices
+     * @param forkJoins Creates the fork/join pairs within the workflow being built
      * @return DirectedAcyclicGraph A new graph containing all the given vertices with appropriate fork/join pairs inserted
      * @throws WorkflowGraphException
      * @throws DirectedAcyclicGraph.CycleFoundException
      */
-    private static DirectedAcyclicGraph<Action, DefaultEdge> buildComponentGraph(Set<Action> vertices, DirectedAcyclicGraph<Action, DefaultEdge> parentGraph) throws WorkflowGraphException, DirectedAcyclicGraph.CycleFoundException {
+    private static DirectedAcyclicGraph<Action, DefaultEdge> buildComponentGraph(Set<Action> vertices, DirectedAcyclicGraph<Action, DefaultEdge> parentGraph, ForkJoinFactory forkJoins) throws WorkflowGraphException, DirectedAcyclicGraph.CycleFoundException {
         DirectedAcyclicGraph<Action, DefaultEdge> subgraph = buildSubgraph(parentGraph, vertices);
 
         // Start by pulling out the vertices with no incoming edges
@@ -181,7 +388,7 @@ public class WorkflowGraphBuilder {
             subgraph.removeVertex(vertex);
         } else {
             // If there are multiple nodes, insert a fork/join pair to run them in parallel
-            Pair<Action, Action> forkJoin = addForkJoin(result);
+            Pair<Action, Action> forkJoin = addForkJoin(result, forkJoins);
             Action fork = forkJoin.getLeft();
             Action join = forkJoin.getRight();
             for (Action vertex : initialNodes) {
@@ -194,7 +401,7 @@ public class WorkflowGraphBuilder {
         }
 
         // Now recursively process the graph with the processed nodes removed
-        Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> subComponentGraphTriple = processSubcomponents(subgraph);
+        Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> subComponentGraphTriple = processSubcomponents(subgraph, forkJoins);
         DirectedAcyclicGraph<Action, DefaultEdge> subComponentGraph = subComponentGraphTriple.getLeft();
 
         // Having processed the subcomponents, we attach the "last" node of the graph created here to
@@ -219,18 +426,19 @@ public class WorkflowGraphBuilder {
      * Processes all connected subcomponents of a given graph
      *
      * @param parentGraph The graph for which to process subcomponents
+     * @param forkJoins Creates the fork/join pairs within the workflow being built
      * @return A Triple with these elements - A new graph with fork/join pairs inserted, the "first" node in this graph, and the "last" node in this graph
      * @throws WorkflowGraphException
      * @throws DirectedAcyclicGraph.CycleFoundException
      */
-    private static Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> processSubcomponents(DirectedAcyclicGraph<Action, DefaultEdge> parentGraph) throws WorkflowGraphException, DirectedAcyclicGraph.CycleFoundException {
+    private static Triple<DirectedAcyclicGraph<Action, DefaultEdge>, Action, Action> processSubcomponents(DirectedAcyclicGraph<Action, DefaultEdge> parentGraph, ForkJoinFactory forkJoins) throws WorkflowGraphException, DirectedAcyclicGraph.CycleFoundException {
         ConnectivityInspector<Action, DefaultEdge> inspector = new ConnectivityInspector<>(parentGraph);
         List<Set<Action>> connectedComponents = inspector.connectedSets();
 
         // Recursively process each connected subcomponent of the graph
         List<DirectedAcyclicGraph<Action, DefaultEdge>> componentGraphs = new ArrayList<>(connectedComponents.size());
         for (Set<Action> subComponent : connectedComponents) {
-            componentGraphs.add(buildComponentGraph(subComponent, parentGraph));
+            componentGraphs.add(buildComponentGraph(subComponent, parentGraph, forkJoins));
         }
 
         DirectedAcyclicGraph<Action, DefaultEdge> result = new DirectedAcyclicGraph<>(DefaultEdge.class);
@@ -240,7 +448,7 @@ public class WorkflowGraphBuilder {
 
         // If we have more than one subcomponent, we must insert a fork/join to run them in parallel
         if (componentGraphs.size() > 1) {
-            Pair<Action, Action> forkJoin = addForkJoin(result);
+            Pair<Action, Action> forkJoin = addForkJoin(result, forkJoins);
             Action fork = forkJoin.getLeft();
             Action join = forkJoin.getRight();
             for (DirectedAcyclicGraph<Action, DefaultEdge> subSubgraph : componentGraphs) {
@@ -312,20 +520,14 @@ public class WorkflowGraphBuilder {
      * Create a fork/join pair and add it to a graph
      *
      * @param parentGraph The graph to which to add the fork/join actions
+     * @param forkJoins Creates the fork/join pairs within the workflow being built
      * @return A Pair of actions. The left action is the fork and the right action is the join
      */
-    private static Pair<Action, Action> addForkJoin(DirectedAcyclicGraph<Action, DefaultEdge> parentGraph) {
-        Action fork = new Action();
-        fork.setName("fork-" + forkCount);
-        fork.setType("fork");
-
-        Action join = new Action();
-        join.setName("join-" + forkCount);
-        join.setType("join");
-        forkCount++;
-        parentGraph.addVertex(fork);
-        parentGraph.addVertex(join);
-
-        return Pair.of(fork, join);
+    private static Pair<Action, Action> addForkJoin(DirectedAcyclicGraph<Action, DefaultEdge> parentGraph, ForkJoinFactory forkJoins) {
+        Pair<Action, Action> forkJoin = forkJoins.create();
+        parentGraph.addVertex(forkJoin.getLeft());
+        parentGraph.addVertex(forkJoin.getRight());
+
+        return forkJoin;
     }
 }
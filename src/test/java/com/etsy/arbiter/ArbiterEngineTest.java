@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.etsy.arbiter.metrics.GenerationMetrics;
+import com.etsy.arbiter.metrics.Phase;
+import com.etsy.arbiter.output.DirectoryOutputSink;
+import com.etsy.arbiter.output.MemoryOutputSink;
+import com.etsy.arbiter.util.GraphvizRenderer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ArbiterEngineTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ArbiterEngine engine;
+
+    @Before
+    public void setup() throws Exception {
+        File config = temporaryFolder.newFile("config.yaml");
+        FileUtils.copyURLToFile(getClass().getClassLoader().getResource("testconfig.yaml"), config);
+        engine = new ArbiterEngine.Builder()
+                .setConfigFiles(config.getPath())
+                .setThreads(2)
+                .build();
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        MemoryOutputSink sink = new MemoryOutputSink();
+        GenerationResult result = engine.generate(Collections.singletonList(createWorkflow("first", "test")), sink);
+
+        assertTrue(result.isSuccess());
+        assertEquals("first", result.getWorkflows().get(0).getName());
+        assertEquals(Collections.singleton("first/workflow.xml"), sink.getFiles().keySet());
+        assertTrue(sink.getString("first/workflow.xml").contains("<testaction xmlns=\"uri:oozie:test-action:0.1\">"));
+    }
+
+    @Test
+    public void testFailuresAreReported() throws Exception {
+        Workflow missingDependency = createWorkflow("missing-dependency", "test");
+        missingDependency.getActions().get(1).setDependencies(Collections.singleton("missing"));
+        List<Workflow> workflows = Arrays.asList(createWorkflow("unknown-type", "unknown"), createWorkflow("valid", "test"), missingDependency);
+
+        MemoryOutputSink sink = new MemoryOutputSink();
+        GenerationResult result = engine.generate(workflows, sink);
+
+        // Each workflow has its own result in the order given, and only the valid workflow is written
+        assertFalse(result.isSuccess());
+        assertEquals(3, result.getWorkflows().size());
+        assertTrue(result.getWorkflows().get(1).isSuccess());
+        List<GenerationResult.WorkflowResult> failures = result.getFailures();
+        assertEquals(2, failures.size());
+        assertEquals("unknown-type", failures.get(0).getName());
+        assertTrue(failures.get(0).getError() instanceof ConfigurationException);
+        assertEquals("missing-dependency", failures.get(1).getName());
+        assertTrue(failures.get(1).getError() instanceof WorkflowGraphException);
+        assertEquals(Collections.singleton("valid/workflow.xml"), sink.getFiles().keySet());
+    }
+
+    @Test
+    public void testConcurrentGeneration() throws Exception {
+        final List<Workflow> workflows = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            workflows.add(createWorkflow("workflow" + i, "test"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<MemoryOutputSink>> runs = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                runs.add(executor.submit(new Callable<MemoryOutputSink>() {
+                    @Override
+                    public MemoryOutputSink call() throws Exception {
+                        MemoryOutputSink sink = new MemoryOutputSink();
+                        assertTrue(engine.generate(workflows, sink).isSuccess());
+                        return sink;
+                    }
+                }));
+            }
+
+            // Generating the same workflows again gives the same output, so the engine keeps no state between runs
+            Map<String, String> expected = withoutComments(runs.get(0).get());
+            assertEquals(8, expected.size());
+            for (Future<MemoryOutputSink> run : runs) {
+                assertEquals(expected, withoutComments(run.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDirectoryOutput() throws Exception {
+        File output = new File(temporaryFolder.getRoot(), "output");
+        GenerationResult result = engine.generate(Collections.singletonList(createWorkflow("first", "test")), new DirectoryOutputSink(output));
+
+        assertTrue(result.isSuccess());
+        assertTrue(new File(output, "first/workflow.xml").isFile());
+    }
+
+    @Test
+    public void testGraphvizWrittenToSink() throws Exception {
+        ArbiterEngine graphvizEngine = new ArbiterEngine.Builder()
+                .setConfig(engine.getConfig())
+                .setGraphvizFormat(GraphvizRenderer.NATIVE_SVG_FORMAT)
+                .build();
+
+        MemoryOutputSink sink = new MemoryOutputSink();
+        assertTrue(graphvizEngine.generate(Collections.singletonList(createWorkflow("first", "test")), sink).isSuccess());
+
+        assertEquals(new TreeSet<>(Arrays.asList("first/first-input.dot", "first/first-input.dot.svg", "first/first.dot", "first/first.dot.svg", "first/workflow.xml")), sink.getFiles().keySet());
+        assertTrue(sink.getString("first/first.dot").startsWith("digraph"));
+        assertTrue(sink.getString("first/first.dot.svg").contains("<svg"));
+    }
+
+    @Test
+    public void testConcurrentGenerationWithMetrics() throws Exception {
+        GenerationMetrics metrics = new GenerationMetrics();
+        final ArbiterEngine metricsEngine = new ArbiterEngine.Builder()
+                .setConfig(engine.getConfig())
+                .setGraphvizFormat(GraphvizRenderer.NATIVE_SVG_FORMAT)
+                .setThreads(2)
+                .setMetrics(metrics)
+                .build();
+        final List<Workflow> workflows = Collections.singletonList(createWorkflow("first", "test"));
+
+        // Every call waits for its graphs and records the time taken, so the calls time the same phase at once
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<GenerationResult>> runs = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                runs.add(executor.submit(new Callable<GenerationResult>() {
+                    @Override
+                    public GenerationResult call() throws Exception {
+                        return metricsEngine.generate(workflows, new MemoryOutputSink());
+                    }
+                }));
+            }
+            for (Future<GenerationResult> run : runs) {
+                assertTrue(run.get().isSuccess());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The timer of the run belongs to the thread running it, so the calls only add their time to the metrics
+        assertEquals(100, metrics.getWorkflows().size());
+        assertTrue(metrics.getTimer().getPhaseNanos().isEmpty());
+        assertTrue(metrics.getPhaseNanos().containsKey(Phase.RENDER_GRAPHVIZ));
+    }
+
+    private static Workflow createWorkflow(String name, String type) {
+        List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Action action = new Action();
+            action.setName(name + "-" + i);
+            action.setType(type);
+            action.setProperty("input", "/data/" + i);
+            if (i > 0) {
+                action.setDependencies(Collections.singleton(name + "-0"));
+            }
+            actions.add(action);
+        }
+
+        Workflow workflow = new Workflow();
+        workflow.setName(name);
+        workflow.setActions(actions);
+        return workflow;
+    }
+
+    /**
+     * Gets the content of each file with the autogenerated comment removed, as it contains a timestamp
+     */
+    private static Map<String, String> withoutComments(MemoryOutputSink sink) {
+        Map<String, String> files = new TreeMap<>();
+        for (String path : sink.getFiles().keySet()) {
+            files.put(path, sink.getString(path).replaceAll("<!--.*-->", ""));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.exception.ConfigurationException;
+import com.etsy.arbiter.metrics.GenerationMetrics;
+import com.etsy.arbiter.metrics.Phase;
+import com.etsy.arbiter.metrics.WorkflowMetrics;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OozieWorkflowGeneratorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private Config config;
+    private List<Workflow> workflows;
+
+    @Before
+    public void setup() {
+        ActionType javaType = new ActionType();
+        javaType.setName("java");
+        javaType.setTag("java");
+        javaType.setXmlns("uri:oozie:java-action:0.1");
+        Map<String, List<String>> defaultArgs = new LinkedHashMap<>();
+        defaultArgs.put("main-class", Lists.newArrayList("$$main$$"));
+        defaultArgs.put("arg", Lists.newArrayList("--input", "$$input$$"));
+        javaType.setDefaultArgs(defaultArgs);
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("mapred.job.queue.name", "default");
+        javaType.setProperties(properties);
+        javaType.setConfigurationPosition(1);
+
+        config = new Config();
+        config.setKillName("kill");
+        config.setKillMessage("$$name$$ failed");
+        config.setActionTypes(Collections.singletonList(javaType));
+
+        workflows = new ArrayList<>();
+        workflows.add(createWorkflow("chain", 5, 1));
+        workflows.add(createWorkflow("wide", 12, 12));
+        workflows.add(createWorkflow("layered", 20, 4));
+        workflows.add(createWorkflow("single", 1, 1));
+        workflows.get(2).setErrorHandler(createAction("handler", Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        File output = temporaryFolder.newFolder("output");
+        new OozieWorkflowGenerator(config).generateOozieWorkflows(output.getAbsolutePath(), workflows, false, null);
+
+        for (Workflow workflow : workflows) {
+            assertTrue(new File(output, workflow.getName() + "/workflow.xml").isFile());
+        }
+
+        List<String> chain = FileUtils.readLines(new File(output, "chain/workflow.xml"), "UTF-8");
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>", chain.get(0));
+        assertTrue(chain.get(1).startsWith("<!-- chain workflow autogenerated by Arbiter on "));
+    }
+
+    @Test
+    public void testUnchangedWorkflowIsNotRewritten() throws Exception {
+        File output = temporaryFolder.newFolder("output");
+        OozieWorkflowGenerator generator = new OozieWorkflowGenerator(config);
+        generator.generateOozieWorkflows(output.getAbsolutePath(), workflows, false, null);
+
+        File chain = new File(output, "chain/workflow.xml");
+        File wide = new File(output, "wide/workflow.xml");
+        long lastModified = 1000000000000L;
+        assertTrue(chain.setLastModified(lastModified));
+        assertTrue(wide.setLastModified(lastModified));
+
+        workflows.get(1).getActions().get(0).setProperty("input", "/data/changed");
+        generator.generateOozieWorkflows(output.getAbsolutePath(), workflows, false, null);
+
+        assertEquals(lastModified, chain.lastModified());
+        assertTrue(wide.lastModified() != lastModified);
+        assertTrue(FileUtils.readFileToString(wide, "UTF-8").contains("/data/changed"));
+        // No temporary files should be left behind
+        assertEquals(1, new File(output, "chain").list().length);
+        assertEquals(1, new File(output, "wide").list().length);
+    }
+
+    @Test
+    public void testCompactOutput() throws Exception {
+        File indented = temporaryFolder.newFolder("indented");
+        File compact = temporaryFolder.newFolder("compact");
+
+        new OozieWorkflowGenerator(config, true).generateOozieWorkflows(indented.getAbsolutePath(), workflows, false, null);
+        new OozieWorkflowGenerator(config, false).generateOozieWorkflows(compact.getAbsolutePath(), workflows, false, null);
+
+        for (Workflow workflow : workflows) {
+            List<String> indentedLines = readWorkflow(indented, workflow.getName());
+            List<String> compactLines = readWorkflow(compact, workflow.getName());
+
+            // The prolog and comment are kept on their own lines, but the document itself is on one line
+            assertEquals(3, compactLines.size());
+            StringBuilder expected = new StringBuilder();
+            for (String line : indentedLines.subList(2, indentedLines.size())) {
+                expected.append(line.trim());
+            }
+            assertEquals(expected.toString(), compactLines.get(2));
+        }
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws Exception {
+        File sequential = temporaryFolder.newFolder("sequential");
+        File parallel = temporaryFolder.newFolder("parallel");
+
+        new OozieWorkflowGenerator(config).generateOozieWorkflows(sequential.getAbsolutePath(), workflows, false, null, 1);
+        new OozieWorkflowGenerator(config).generateOozieWorkflows(parallel.getAbsolutePath(), workflows, false, null, 4);
+
+        for (Workflow workflow : workflows) {
+            assertEquals(readWorkflow(sequential, workflow.getName()), readWorkflow(parallel, workflow.getName()));
+        }
+    }
+
+    @Test
+    public void testListInterpolation() throws Exception {
+        File output = temporaryFolder.newFolder("output");
+        Action action = workflows.get(3).getActions().get(0);
+        action.setProperty("input", "inputs");
+        action.setProperty("inputs", Lists.newArrayList("/data/a", "/data/b"));
+        action.setProperty("extra", Lists.newArrayList("x"));
+
+        new OozieWorkflowGenerator(config).generateOozieWorkflows(output.getAbsolutePath(), workflows.subList(3, 4), false, null);
+
+        String workflow = FileUtils.readFileToString(new File(output, "single/workflow.xml"), "UTF-8").replaceAll(">\\s+<", "><");
+        assertTrue(workflow.contains("<arg>--input</arg><arg>/data/a</arg><arg>/data/b</arg>"));
+        // The spliced list is not repeated as its own element, but other positional args are kept
+        assertEquals(-1, workflow.indexOf("<inputs>"));
+        assertTrue(workflow.contains("<extra>x</extra>"));
+        assertEquals(2, action.getPositionalArgs().size());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        File output = temporaryFolder.newFolder("output");
+        GenerationMetrics metrics = new GenerationMetrics();
+        new OozieWorkflowGenerator(config, true, WorkflowGraphBuilder.Algorithm.RECURSIVE, metrics).generateOozieWorkflows(output.getAbsolutePath(), workflows, false, null, 2);
+
+        List<WorkflowMetrics> generated = metrics.getWorkflows();
+        assertEquals(workflows.size(), generated.size());
+        WorkflowMetrics chain = generated.get(0);
+        assertEquals("chain", chain.getName());
+        assertEquals(5, chain.getActions());
+        assertEquals(0, chain.getForks());
+        // start, the five actions and end form a single path
+        assertEquals(6, chain.getEdges());
+        assertEquals(new File(output, "chain/workflow.xml").length(), chain.getOutputBytes());
+        assertTrue(chain.getTimer().getNanos(Phase.BUILD_GRAPH) > 0);
+        assertTrue(chain.getElapsedNanos() >= chain.getTimer().getNanos(Phase.BUILD_GRAPH));
+
+        WorkflowMetrics wide = generated.get(3);
+        assertEquals("wide", wide.getName());
+        assertEquals(12, wide.getActions());
+        assertEquals(1, wide.getForks());
+    }
+
+    @Test
+    public void testUnknownActionType() throws Exception {
+        File output = temporaryFolder.newFolder("output");
+        workflows.get(0).getActions().get(2).setType("missing");
+
+        exception.expect(ConfigurationException.class);
+        exception.expectMessage("chain-2");
+        new OozieWorkflowGenerator(config).generateOozieWorkflows(output.getAbsolutePath(), workflows.subList(0, 1), false, null);
+    }
+
+    /**
+     * Reads a generated workflow, skipping the autogenerated comment as it contains a timestamp
+     */
+    private List<String> readWorkflow(File outputBase, String name) throws IOException {
+        List<String> lines = FileUtils.readLines(new File(outputBase, name + "/workflow.xml"), "UTF-8");
+        if (lines.size() > 1 && lines.get(1).startsWith("<!--")) {
+            lines.set(1, "<!-- -->");
+        }
+        return lines;
+    }
+
+    /**
+     * Creates a workflow where each action depends on the actions in the previous layer
+     *
+     * @param name The name of the workflow
+     * @param actionCount The total number of actions
+     * @param width The number of actions in each layer
+     * @return The workflow
+     */
+    private Workflow createWorkflow(String name, int actionCount, int width) {
+        List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < actionCount; i++) {
+            Set<String> dependencies = new HashSet<>();
+            int layerStart = (i / width) * width;
+            for (int j = layerStart - width; j >= 0 && j < layerStart; j++) {
+                if ((i + j) % 2 == 0 || j == layerStart - 1) {
+                    dependencies.add(name + "-" + j);
+                }
+            }
+            actions.add(createAction(name + "-" + i, dependencies));
+        }
+
+        Workflow workflow = new Workflow();
+        workflow.setName(name);
+        workflow.setActions(actions);
+        return workflow;
+    }
+
+    private Action createAction(String name, Set<String> dependencies) {
+        Action action = new Action();
+        action.setName(name);
+        action.setType("java");
+        action.setDependencies(dependencies.isEmpty() ? null : Sets.newHashSet(dependencies));
+        action.setProperty("main", "com.etsy." + name);
+        action.setProperty("input", "/data/" + name);
+        return action;
+    }
+}
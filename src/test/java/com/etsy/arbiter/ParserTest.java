@@ -16,15 +16,21 @@
 
 package com.etsy.arbiter;
 
+import com.etsy.arbiter.util.YamlBindingException;
 import com.etsy.arbiter.util.YamlReader;
 import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,11 +41,14 @@ public class ParserTest {
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private YamlReader<Workflow> parser;
 
     @Before
     public void setup() {
-        parser = new YamlReader<>(Workflow.getYamlConstructor());
+        parser = new YamlReader<>(Workflow.getYamlBinder());
     }
 
     @Test
@@ -90,4 +99,47 @@ public class ParserTest {
         exception.expect(NullPointerException.class);
         parser.read(getClass().getClassLoader().getResource("nonexistent.yaml"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testScalarArguments() throws IOException {
+        Workflow actual = read("name: w\n"
+                + "actions:\n"
+                + "  - <<: {type: test, queue: low}\n"
+                + "    name: a\n"
+                + "    queue: high\n"
+                + "    retries: 3\n"
+                + "    verbose: true\n"
+                + "    args: [x, 1, 2.5]\n");
+
+        Action expected = new Action();
+        expected.setName("a");
+        expected.setType("test");
+        expected.setProperty("queue", "high");
+        expected.setProperty("retries", "3");
+        expected.setProperty("verbose", "true");
+        expected.setProperty("args", new ArrayList<>(Arrays.asList("x", "1", "2.5")));
+
+        assertEquals(Collections.singletonList(expected), actual.getActions());
+    }
+
+    @Test
+    public void testUnknownKey() throws IOException {
+        exception.expect(YamlBindingException.class);
+        exception.expectMessage("Unknown key actoins in workflow");
+        exception.expectMessage("line 2, column 1");
+        read("name: w\nactoins: []\n");
+    }
+
+    @Test
+    public void testNestedArguments() throws IOException {
+        exception.expect(YamlBindingException.class);
+        exception.expectMessage("Expected a string for args");
+        read("name: w\nactions:\n  - name: a\n    args: [x, [y]]\n");
+    }
+
+    private Workflow read(String yaml) throws IOException {
+        File file = temporaryFolder.newFile();
+        FileUtils.writeStringToFile(file, yaml, "UTF-8");
+        return parser.read(file);
+    }
+}
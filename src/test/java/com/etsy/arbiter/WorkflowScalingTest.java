@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that building and generating workflows grows no faster than a declared bound as workflows get larger
+ *
+ * The time taken for each shape of workflow is measured at two sizes, and the growth exponent is estimated from the ratio of the times.
+ * Linear growth gives an exponent of 1 and quadratic growth an exponent of 2.
+ * The tolerance allows for timing noise and logarithmic factors but not for an extra factor of n.
+ * A measurement over the bound is repeated before failing, as a real change in growth fails every time while noise rarely does.
+ *
+ * The recursive algorithm copies the remaining graph at every level, so its bounds are declared per shape and it is measured on smaller workflows.
+ * The series-parallel algorithm is linear on large workflows but counts false dependencies on smaller sets, so it is also measured below that size.
+ *
+ * These tests take a while and depend on the machine being otherwise idle, so they only run with the scaling profile: mvn test -Pscaling
+ */
+public class WorkflowScalingTest {
+    private static final int SMALL = 1000;
+    private static final int LARGE = 16000;
+    private static final int RECURSIVE_SMALL = 50;
+    private static final int RECURSIVE_LARGE = 200;
+    // Both below the size above which the series-parallel algorithm stops counting false dependencies
+    private static final int COUNTED_SMALL = 100;
+    private static final int COUNTED_LARGE = 400;
+    private static final int WARMUP = 5;
+    private static final int REPEATS = 10;
+    private static final int ATTEMPTS = 3;
+    private static final double TOLERANCE = 0.5;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Config config;
+
+    /**
+     * The shapes of workflow that have caused super-linear behavior
+     */
+    private enum Shape {
+        // One action that every other action depends on, followed by one action that depends on all of them
+        FAN_OUT,
+        // Every action depends on the one before it
+        CHAIN,
+        // A chain of diamonds, each a pair of parallel actions between two others
+        DIAMONDS,
+        // Many small chains with no dependencies between them
+        COMPONENTS,
+        // Two chains where each action of the second also depends on the previous action of the first, which cannot be split for free
+        LADDER
+    }
+
+    /**
+     * An operation whose running time is measured
+     */
+    private interface Operation {
+        void run(Workflow workflow) throws Exception;
+    }
+
+    @Before
+    public void setup() {
+        ActionType javaType = new ActionType();
+        javaType.setName("java");
+        javaType.setTag("java");
+        javaType.setXmlns("uri:oozie:java-action:0.1");
+        Map<String, List<String>> defaultArgs = new LinkedHashMap<>();
+        defaultArgs.put("main-class", Lists.newArrayList("$$main$$"));
+        javaType.setDefaultArgs(defaultArgs);
+        javaType.setProperties(Collections.singletonMap("mapred.job.queue.name", "default"));
+
+        config = new Config();
+        config.setKillName("kill");
+        config.setKillMessage("$$name$$ failed");
+        config.setActionTypes(Collections.singletonList(javaType));
+    }
+
+    @Test
+    public void testLayeredGraphIsLinear() throws Exception {
+        for (Shape shape : Shape.values()) {
+            assertGrowth("layered graph", shape, SMALL, LARGE, 1, buildGraph(WorkflowGraphBuilder.Algorithm.LAYERED));
+        }
+    }
+
+    @Test
+    public void testRecursiveGraph() throws Exception {
+        assertGrowth("recursive graph", Shape.FAN_OUT, RECURSIVE_SMALL, RECURSIVE_LARGE, 2, buildGraph(WorkflowGraphBuilder.Algorithm.RECURSIVE));
+        // Every action in a chain is its own level, and each level copies the graph and reorders it as edges are added
+        assertGrowth("recursive graph", Shape.CHAIN, RECURSIVE_SMALL, RECURSIVE_LARGE, 3, buildGraph(WorkflowGraphBuilder.Algorithm.RECURSIVE));
+        assertGrowth("recursive graph", Shape.DIAMONDS, RECURSIVE_SMALL, RECURSIVE_LARGE, 3, buildGraph(WorkflowGraphBuilder.Algorithm.RECURSIVE));
+        assertGrowth("recursive graph", Shape.COMPONENTS, RECURSIVE_SMALL, RECURSIVE_LARGE, 1, buildGraph(WorkflowGraphBuilder.Algorithm.RECURSIVE));
+    }
+
+    @Test
+    public void testSeriesParallelGraph() throws Exception {
+        for (Shape shape : Shape.values()) {
+            assertGrowth("series-parallel graph", shape, SMALL, LARGE, 1, buildGraph(WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL));
+        }
+        // Below the counted limit every split counts the relatives of each action in the set, and a ladder only loses a layer or two per split
+        assertGrowth("series-parallel graph", Shape.LADDER, COUNTED_SMALL, COUNTED_LARGE, 3, buildGraph(WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL));
+    }
+
+    @Test
+    public void testLayeredGenerationIsLinear() throws Exception {
+        final OozieWorkflowGenerator generator = new OozieWorkflowGenerator(config, false, WorkflowGraphBuilder.Algorithm.LAYERED);
+        final File output = temporaryFolder.newFolder("output");
+        for (Shape shape : Shape.values()) {
+            assertGrowth("layered generation", shape, SMALL, LARGE, 1, new Operation() {
+                @Override
+                public void run(Workflow workflow) throws Exception {
+                    generator.generateOozieWorkflows(output.getAbsolutePath(), Collections.singletonList(workflow), false, null);
+                }
+            });
+        }
+    }
+
+    private Operation buildGraph(final WorkflowGraphBuilder.Algorithm algorithm) {
+        return new Operation() {
+            @Override
+            public void run(Workflow workflow) throws Exception {
+                WorkflowGraphBuilder.build(workflow, config, null, false, null, algorithm);
+            }
+        };
+    }
+
+    /**
+     * Asserts that an operation on workflows of a given shape grows no faster than n to the power of the bound
+     */
+    private void assertGrowth(String description, Shape shape, int smallSize, int largeSize, int bound, Operation operation) throws Exception {
+        Workflow small = createWorkflow(shape, smallSize);
+        Workflow large = createWorkflow(shape, largeSize);
+
+        // Run both sizes first so that neither measurement includes class loading or compilation
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run(small);
+            operation.run(large);
+        }
+
+        double exponent = Double.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS && exponent > bound + TOLERANCE; attempt++) {
+            exponent = Math.log((double) time(operation, large) / time(operation, small)) / Math.log((double) largeSize / smallSize);
+        }
+        assertTrue(String.format("%s on %s workflows grew as n^%.2f, expected at most n^%d", description, shape, exponent, bound), exponent <= bound + TOLERANCE);
+    }
+
+    /**
+     * Gets the fastest of several runs of an operation, as the fastest run is the least affected by other work on the machine
+     */
+    private static long time(Operation operation, Workflow workflow) throws Exception {
+        long best = Long.MAX_VALUE;
+        System.gc();
+        for (int i = 0; i < REPEATS; i++) {
+            long start = System.nanoTime();
+            operation.run(workflow);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(best, 1);
+    }
+
+    private static Workflow createWorkflow(Shape shape, int actionCount) {
+        List<Action> actions = new ArrayList<>(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            Set<String> dependencies = new HashSet<>();
+            switch (shape) {
+                case FAN_OUT:
+                    if (i == actionCount - 1) {
+                        for (int j = 1; j < i; j++) {
+                            dependencies.add("action-" + j);
+                        }
+                    } else if (i > 0) {
+                        dependencies.add("action-0");
+                    }
+                    break;
+                case CHAIN:
+                    if (i > 0) {
+                        dependencies.add("action-" + (i - 1));
+                    }
+                    break;
+                case DIAMONDS:
+                    // Actions 3k + 1 and 3k + 2 both depend on 3k, and 3k + 3 depends on both of them
+                    if (i % 3 == 0 && i > 0) {
+                        dependencies.add("action-" + (i - 1));
+                        dependencies.add("action-" + (i - 2));
+                    } else if (i % 3 == 1) {
+                        dependencies.add("action-" + (i - 1));
+                    } else if (i % 3 == 2) {
+                        dependencies.add("action-" + (i - 2));
+                    }
+                    break;
+                case COMPONENTS:
+                    if (i % 4 != 0) {
+                        dependencies.add("action-" + (i - 1));
+                    }
+                    break;
+                case LADDER:
+                    // Action 2k depends on 2k - 2, and 2k + 1 depends on both 2k - 2 and 2k - 1
+                    if (i >= 2) {
+                        dependencies.add("action-" + (i - i % 2 - 2));
+                    }
+                    if (i >= 2 && i % 2 == 1) {
+                        dependencies.add("action-" + (i - 2));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown shape " + shape);
+            }
+
+            Action action = new Action();
+            action.setName("action-" + i);
+            action.setType("java");
+            action.setDependencies(dependencies.isEmpty() ? null : dependencies);
+            action.setProperty("main", "com.etsy.Action" + i);
+            actions.add(action);
+        }
+
+        Workflow workflow = new Workflow();
+        workflow.setName(shape.name().toLowerCase(Locale.ROOT));
+        workflow.setActions(actions);
+        return workflow;
+    }
+}
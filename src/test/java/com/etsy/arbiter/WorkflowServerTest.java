@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkflowServerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String WORKFLOW = "name: served\n"
+            + "actions:\n"
+            + "    - name: first\n"
+            + "      type: test\n"
+            + "    - name: second\n"
+            + "      type: test\n"
+            + "      dependencies: [first]\n";
+
+    private WorkflowServer server;
+
+    @Before
+    public void setup() throws Exception {
+        File config = temporaryFolder.newFile("config.yaml");
+        FileUtils.copyURLToFile(getClass().getClassLoader().getResource("testconfig.yaml"), config);
+        ArbiterEngine engine = new ArbiterEngine.Builder()
+                .setConfigFiles(config.getPath())
+                .build();
+
+        server = new WorkflowServer(engine, 0, 2);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.close();
+    }
+
+    @Test
+    public void testGenerateXml() throws IOException {
+        Response response = request("POST", "/workflow", WORKFLOW);
+
+        assertEquals(200, response.status);
+        assertTrue(response.body.contains("<workflow-app xmlns=\"uri:oozie:workflow:0.2\" name=\"served\">"));
+        assertTrue(response.body.contains("<action name=\"second\">"));
+
+        // The server keeps no state between requests, so the same workflow gives the same XML
+        Response again = request("POST", "/workflow", WORKFLOW);
+        assertEquals(withoutComment(response.body), withoutComment(again.body));
+    }
+
+    @Test
+    public void testGenerateDot() throws IOException {
+        Response response = request("POST", "/workflow?format=dot", WORKFLOW);
+
+        assertEquals(200, response.status);
+        assertTrue(response.body.startsWith("digraph"));
+        assertTrue(response.body.contains("label=\"second\""));
+    }
+
+    @Test
+    public void testInvalidWorkflows() throws IOException {
+        Response unknownType = request("POST", "/workflow", WORKFLOW.replace("type: test", "type: missing"));
+        assertEquals(400, unknownType.status);
+        assertTrue(unknownType.body.contains("unknown type missing"));
+
+        Response missingDependency = request("POST", "/workflow", WORKFLOW.replace("[first]", "[third]"));
+        assertEquals(400, missingDependency.status);
+        assertTrue(missingDependency.body.contains("Missing action for dependency third"));
+
+        Response invalidYaml = request("POST", "/workflow", "name: [unclosed\n");
+        assertEquals(400, invalidYaml.status);
+
+        Response unknownFormat = request("POST", "/workflow?format=png", WORKFLOW);
+        assertEquals(400, unknownFormat.status);
+
+        // A workflow is checked the same way whichever format is requested
+        for (String path : new String[]{"/workflow", "/workflow?format=dot"}) {
+            Response noActions = request("POST", path, "name: empty\n");
+            assertEquals(400, noActions.status);
+            assertTrue(noActions.body.contains("No actions found in workflow empty"));
+
+            Response unknownActionType = request("POST", path, WORKFLOW.replace("type: test", "type: missing"));
+            assertEquals(400, unknownActionType.status);
+            assertTrue(unknownActionType.body.contains("unknown type missing"));
+        }
+    }
+
+    @Test
+    public void testUnknownPaths() throws IOException {
+        assertEquals(404, request("POST", "/workflowsXYZ", WORKFLOW).status);
+        assertEquals(404, request("POST", "/workflow/served", WORKFLOW).status);
+        assertEquals(404, request("GET", "/healthz", null).status);
+    }
+
+    @Test
+    public void testNodelayIsLeftToTheCaller() {
+        // Creating a server must not change the JDK servers of the rest of the process
+        assertNull(System.getProperty(WorkflowServer.NODELAY_PROPERTY));
+    }
+
+    @Test
+    public void testMethods() throws IOException {
+        assertEquals(405, request("GET", "/workflow", null).status);
+        assertEquals(200, request("GET", "/health", null).status);
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream stream = connection.getOutputStream()) {
+                stream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        try (InputStream stream = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            response.body = IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+        return response;
+    }
+
+    private static String withoutComment(String xml) {
+        return xml.replaceAll("<!--.*-->", "");
+    }
+
+    private static class Response {
+        private int status;
+        private String body;
+    }
+}
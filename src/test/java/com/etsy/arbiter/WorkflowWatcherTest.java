@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter;
+
+import com.etsy.arbiter.workflow.WorkflowGraphBuilder;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkflowWatcherTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File config;
+    private File first;
+    private File second;
+    private File output;
+    private WorkflowWatcher watcher;
+
+    @Before
+    public void setup() throws Exception {
+        config = temporaryFolder.newFile("config.yaml");
+        writeConfig("default");
+        first = temporaryFolder.newFile("first.yaml");
+        writeWorkflow(first, "first", "/data/first");
+        second = temporaryFolder.newFile("second.yaml");
+        writeWorkflow(second, "second", "/data/second");
+        output = temporaryFolder.newFolder("output");
+
+        watcher = new WorkflowWatcher(new String[]{config.getPath()}, null, new String[]{first.getPath(), second.getPath()}, output.getPath(), false, null, 1, true, WorkflowGraphBuilder.Algorithm.RECURSIVE);
+        watcher.generateAll();
+    }
+
+    @Test
+    public void testWorkflowChangeRegeneratesOnlyThatWorkflow() throws Exception {
+        writeWorkflow(first, "first", "/data/changed");
+
+        List<Path> regenerated = watcher.handleChanges(paths(first));
+
+        assertEquals(Collections.singletonList(first.toPath().toAbsolutePath()), regenerated);
+        assertTrue(readWorkflow("first").contains("/data/changed"));
+    }
+
+    @Test
+    public void testConfigChangeRegeneratesAllWorkflows() throws Exception {
+        writeConfig("changed-queue");
+
+        List<Path> regenerated = watcher.handleChanges(paths(config));
+
+        assertEquals(2, regenerated.size());
+        assertTrue(readWorkflow("first").contains("changed-queue"));
+        assertTrue(readWorkflow("second").contains("changed-queue"));
+    }
+
+    @Test
+    public void testUnrelatedChangesAreIgnored() throws Exception {
+        File other = temporaryFolder.newFile("other.yaml");
+
+        assertTrue(watcher.handleChanges(paths(other)).isEmpty());
+    }
+
+    @Test
+    public void testInvalidWorkflowDoesNotStopWatcher() throws Exception {
+        FileUtils.writeStringToFile(first, "name: [", "UTF-8");
+        writeWorkflow(second, "second", "/data/changed");
+
+        List<Path> regenerated = watcher.handleChanges(paths(first, second));
+
+        assertEquals(Collections.singletonList(second.toPath().toAbsolutePath()), regenerated);
+        assertTrue(readWorkflow("second").contains("/data/changed"));
+        assertFalse(readWorkflow("first").contains("/data/changed"));
+    }
+
+    @Test
+    public void testLowPrecedenceConfigsAreMergedInArgumentOrder() throws Exception {
+        File a = temporaryFolder.newFile("low-a.yaml");
+        writeConfig(a, "queue-a", "message-a");
+        File b = temporaryFolder.newFile("low-b.yaml");
+        writeConfig(b, "queue-b", "message-b");
+
+        // The kill message is taken from the first configuration that sets one, so both orders must match the arguments
+        for (File[] lowPrecedence : new File[][]{{a, b}, {b, a}}) {
+            WorkflowWatcher lowPrecedenceWatcher = new WorkflowWatcher(null, new String[]{lowPrecedence[0].getPath(), lowPrecedence[1].getPath()},
+                    new String[]{first.getPath()}, output.getPath(), false, null, 1, true, WorkflowGraphBuilder.Algorithm.RECURSIVE);
+            lowPrecedenceWatcher.generateAll();
+
+            String workflow = readWorkflow("first");
+            assertTrue(workflow.contains(lowPrecedence[0] == a ? "message-a" : "message-b"));
+            assertFalse(workflow.contains(lowPrecedence[0] == a ? "message-b" : "message-a"));
+        }
+    }
+
+    private void writeConfig(String queue) throws IOException {
+        writeConfig(config, queue, "failed");
+    }
+
+    private void writeConfig(File file, String queue, String killMessage) throws IOException {
+        FileUtils.writeStringToFile(file, "---\n"
+                + "killName: kill\n"
+                + "killMessage: " + killMessage + "\n"
+                + "actionTypes:\n"
+                + "    - tag: java\n"
+                + "      name: java\n"
+                + "      xmlns: uri:oozie:java-action:0.1\n"
+                + "      defaultArgs: {main-class: [com.etsy.Main], arg: [$$input$$]}\n"
+                + "      properties: {mapred.job.queue.name: " + queue + "}\n"
+                + "      configurationPosition: 1\n", "UTF-8");
+    }
+
+    private void writeWorkflow(File file, String name, String input) throws IOException {
+        FileUtils.writeStringToFile(file, "---\n"
+                + "name: " + name + "\n"
+                + "actions:\n"
+                + "    - name: action\n"
+                + "      type: java\n"
+                + "      input: " + input + "\n", "UTF-8");
+    }
+
+    private String readWorkflow(String name) throws IOException {
+        return FileUtils.readFileToString(new File(output, name + "/workflow.xml"), "UTF-8");
+    }
+
+    private HashSet<Path> paths(File... files) {
+        HashSet<Path> result = new HashSet<>();
+        for (File file : Arrays.asList(files)) {
+            result.add(file.toPath().toAbsolutePath());
+        }
+        return result;
+    }
+}
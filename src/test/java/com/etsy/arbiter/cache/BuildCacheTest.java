@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.cache;
+
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.ActionType;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.util.YamlReader;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BuildCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Config config;
+    private File outputDir;
+    private File input;
+
+    @Before
+    public void setup() throws IOException {
+        ActionType type = new ActionType();
+        type.setName("test");
+        type.setTag("test");
+        Map<String, List<String>> defaultArgs = new HashMap<>();
+        defaultArgs.put("arg", Lists.newArrayList("a", "b"));
+        type.setDefaultArgs(defaultArgs);
+
+        config = new Config();
+        config.setKillName("kill");
+        config.setKillMessage("message");
+        config.setActionTypes(Collections.singletonList(type));
+
+        outputDir = temporaryFolder.newFolder("output");
+        input = temporaryFolder.newFile("workflow.yaml");
+        FileUtils.write(input, "name: workflow\n", "UTF-8");
+    }
+
+    @Test
+    public void testEmptyCache() throws IOException {
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        assertFalse(cache.isUpToDate(input));
+    }
+
+    @Test
+    public void testUnchangedInput() throws IOException {
+        generate(BuildCache.fingerprint(config));
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        assertTrue(cache.isUpToDate(input));
+    }
+
+    @Test
+    public void testChangedInput() throws IOException {
+        generate(BuildCache.fingerprint(config));
+        FileUtils.write(input, "name: workflow\nactions: []\n", "UTF-8");
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        assertFalse(cache.isUpToDate(input));
+    }
+
+    @Test
+    public void testMissingOutput() throws IOException {
+        generate(BuildCache.fingerprint(config));
+        FileUtils.forceDelete(new File(outputDir, "workflow"));
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        assertFalse(cache.isUpToDate(input));
+    }
+
+    @Test
+    public void testChangedWhileGenerating() throws IOException {
+        // The hash is taken when the workflow is read, so a change saved before generation finishes is not recorded as generated
+        String hash = new YamlReader<>(Workflow.getYamlBinder()).read(input, BuildCache.INPUT_HASH).getRight().toString();
+        FileUtils.write(input, "name: workflow\nactions: []\n", "UTF-8");
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        FileUtils.write(new File(outputDir, "workflow/workflow.xml"), "<workflow-app/>", "UTF-8");
+        cache.update(input, hash, "workflow");
+        cache.save();
+
+        assertFalse(BuildCache.load(outputDir, BuildCache.fingerprint(config)).isUpToDate(input));
+    }
+
+    @Test
+    public void testMissingGraph() throws IOException {
+        String fingerprint = BuildCache.fingerprint(config, "true", "svg");
+        generate(fingerprint);
+        for (String graph : new String[]{"workflow-input.dot", "workflow-input.dot.svg", "workflow.dot", "workflow.dot.svg"}) {
+            FileUtils.write(new File(outputDir, "workflow/" + graph), "graph", "UTF-8");
+        }
+        assertTrue(BuildCache.load(outputDir, fingerprint, "svg").isUpToDate(input));
+
+        FileUtils.forceDelete(new File(outputDir, "workflow/workflow.dot.svg"));
+        assertFalse(BuildCache.load(outputDir, fingerprint, "svg").isUpToDate(input));
+        // Only the workflow is checked when no graphs are generated
+        assertTrue(BuildCache.load(outputDir, fingerprint).isUpToDate(input));
+    }
+
+    @Test
+    public void testChangedConfig() throws IOException {
+        generate(BuildCache.fingerprint(config));
+        config.getActionTypes().get(0).getDefaultArgs().get("arg").add("c");
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config));
+        assertFalse(cache.isUpToDate(input));
+    }
+
+    @Test
+    public void testChangedOptions() throws IOException {
+        generate(BuildCache.fingerprint(config, "true"));
+
+        BuildCache cache = BuildCache.load(outputDir, BuildCache.fingerprint(config, "false"));
+        assertFalse(cache.isUpToDate(input));
+    }
+
+    private void generate(String fingerprint) throws IOException {
+        BuildCache cache = BuildCache.load(outputDir, fingerprint);
+        FileUtils.write(new File(outputDir, "workflow/workflow.xml"), "<workflow-app/>", "UTF-8");
+        cache.update(input, cache.hashInput(input), "workflow");
+        cache.save();
+    }
+}
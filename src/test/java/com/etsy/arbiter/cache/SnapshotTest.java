@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.cache;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.Arbiter;
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.config.ConfigurationMerger;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private String[] configFiles;
+    private String[] inputFiles;
+    private File snapshotFile;
+
+    @Before
+    public void setup() throws IOException {
+        configFiles = new String[]{writeToTempFile("testconfig.yaml").getAbsolutePath()};
+        inputFiles = new String[]{writeToTempFile("testworkflow.yaml").getAbsolutePath()};
+        snapshotFile = new File(temporaryFolder.getRoot(), "arbiter.snapshot");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Config config = ConfigurationMerger.mergeConfiguration(Arbiter.readConfigFiles(configFiles, false));
+        List<Workflow> workflows = Arbiter.readWorkflowFiles(inputFiles);
+        String fingerprint = Snapshot.sourceFingerprint(configFiles, null, inputFiles);
+
+        new Snapshot(fingerprint, config, workflows).write(snapshotFile);
+        Snapshot loaded = Snapshot.load(snapshotFile, fingerprint);
+
+        assertNotNull(loaded);
+        assertEquals(config, loaded.getConfig());
+        assertEquals(workflows, loaded.getWorkflows());
+    }
+
+    @Test
+    public void testPreservesOrder() throws Exception {
+        Action action = new Action();
+        action.setName("action");
+        action.setType("test");
+        action.setDependencies(new LinkedHashSet<>(Arrays.asList("z", "a", "m")));
+        Map<String, String> namedArgs = new LinkedHashMap<>();
+        for (int i = 20; i > 0; i--) {
+            namedArgs.put("key" + i, "value" + i);
+        }
+        action.setNamedArgs(namedArgs);
+        Map<String, List<String>> positionalArgs = new HashMap<>();
+        positionalArgs.put("arg", Lists.newArrayList("a", null, "c"));
+        action.setPositionalArgs(positionalArgs);
+        // The binder reads every scalar as text, so values that look like numbers or booleans are still strings
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("int", "1");
+        properties.put("long", "10000000000");
+        properties.put("double", "1.5");
+        properties.put("boolean", "true");
+        properties.put("empty", null);
+        action.setConfigurationProperties(properties);
+
+        Workflow workflow = new Workflow();
+        workflow.setName("workflow");
+        workflow.setActions(Collections.singletonList(action));
+
+        new Snapshot("fingerprint", new Config(), Collections.singletonList(workflow)).write(snapshotFile);
+        Action loaded = Snapshot.load(snapshotFile, "fingerprint").getWorkflows().get(0).getActions().get(0);
+
+        assertEquals(action, loaded);
+        assertEquals(new ArrayList<>(action.getDependencies()), new ArrayList<>(loaded.getDependencies()));
+        assertEquals(new ArrayList<>(namedArgs.keySet()), new ArrayList<>(loaded.getNamedArgs().keySet()));
+        assertEquals(new ArrayList<>(properties.values()), new ArrayList<>(loaded.getConfigurationProperties().values()));
+        assertNull(loaded.getForceOk());
+        assertNull(loaded.getConfigurationProperties().get("empty"));
+        assertTrue(loaded.getConfigurationProperties().containsKey("empty"));
+    }
+
+    @Test
+    public void testChangedSourceInvalidatesSnapshot() throws Exception {
+        Config config = ConfigurationMerger.mergeConfiguration(Arbiter.readConfigFiles(configFiles, false));
+        String fingerprint = Snapshot.sourceFingerprint(configFiles, null, inputFiles);
+        new Snapshot(fingerprint, config, Arbiter.readWorkflowFiles(inputFiles)).write(snapshotFile);
+
+        FileUtils.writeStringToFile(new File(inputFiles[0]), "\n# changed", "UTF-8", true);
+        String changed = Snapshot.sourceFingerprint(configFiles, null, inputFiles);
+
+        assertNotEquals(fingerprint, changed);
+        assertNull(Snapshot.load(snapshotFile, changed));
+        // The same file given as a low-priority configuration is a different source
+        assertNotEquals(changed, Snapshot.sourceFingerprint(null, configFiles, inputFiles));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        Config config = ConfigurationMerger.mergeConfiguration(Arbiter.readConfigFiles(configFiles, false));
+        new Snapshot("fingerprint", config, Arbiter.readWorkflowFiles(inputFiles)).write(snapshotFile);
+
+        byte[] content = FileUtils.readFileToByteArray(snapshotFile);
+        FileUtils.writeByteArrayToFile(snapshotFile, Arrays.copyOf(content, content.length / 2));
+
+        assertNull(Snapshot.load(snapshotFile, "fingerprint"));
+        assertNull(Snapshot.load(new File(temporaryFolder.getRoot(), "missing"), "fingerprint"));
+    }
+
+    @Test
+    public void testOlderFormatIsIgnored() throws Exception {
+        Config config = ConfigurationMerger.mergeConfiguration(Arbiter.readConfigFiles(configFiles, false));
+        new Snapshot("fingerprint", config, Arbiter.readWorkflowFiles(inputFiles)).write(snapshotFile);
+
+        // Version 1 also stored typed scalars, which the binder never produces
+        byte[] content = FileUtils.readFileToByteArray(snapshotFile);
+        ByteBuffer.wrap(content).putInt(4, 1);
+        FileUtils.writeByteArrayToFile(snapshotFile, content);
+
+        assertNull(Snapshot.load(snapshotFile, "fingerprint"));
+    }
+
+    @Test
+    public void testOnlyStringValuesAreStored() throws Exception {
+        Action action = new Action();
+        action.setName("action");
+        action.setType("test");
+        setConfigurationProperties(action, Collections.<Object, Object>singletonMap("int", 1));
+
+        Workflow workflow = new Workflow();
+        workflow.setName("workflow");
+        workflow.setActions(Collections.singletonList(action));
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("java.lang.Integer");
+        new Snapshot("fingerprint", new Config(), Collections.singletonList(workflow)).write(snapshotFile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setConfigurationProperties(Action action, Map<Object, Object> properties) {
+        // Only possible by bypassing the declared types, as the binder only creates strings
+        action.setConfigurationProperties((Map) properties);
+    }
+
+    private File writeToTempFile(String resourceName) throws IOException {
+        URL resource = getClass().getClassLoader().getResource(resourceName);
+        if (resource == null) {
+            throw new RuntimeException("Unable to load resource " + resourceName);
+        }
+
+        File tempFile = temporaryFolder.newFile(resourceName);
+        FileUtils.copyURLToFile(resource, tempFile);
+
+        return tempFile;
+    }
+}
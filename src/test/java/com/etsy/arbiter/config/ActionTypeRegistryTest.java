@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.config;
+
+import com.etsy.arbiter.exception.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ActionTypeRegistryTest {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testLookup() throws ConfigurationException {
+        ActionType first = createActionType("java", "first");
+        ActionType duplicate = createActionType("java", "duplicate");
+        ActionType shell = createActionType("shell", "shell");
+
+        ActionTypeRegistry registry = new ActionTypeRegistry(Arrays.asList(first, duplicate, shell));
+
+        // As with a linear search, the first ActionType with a given name wins
+        assertSame(first, registry.get("java"));
+        assertSame(shell, registry.find("shell"));
+        assertNull(registry.find("missing"));
+        assertNull(registry.find(null));
+    }
+
+    @Test
+    public void testUnknownType() throws ConfigurationException {
+        ActionTypeRegistry registry = new ActionTypeRegistry(null);
+
+        exception.expect(ConfigurationException.class);
+        exception.expectMessage("missing");
+        registry.get("missing");
+    }
+
+    @Test
+    public void testConfigRebuildsRegistry() {
+        Config config = new Config();
+        config.setActionTypes(Collections.singletonList(createActionType("java", "java")));
+        ActionTypeRegistry registry = config.getActionTypeRegistry();
+        assertSame(registry, config.getActionTypeRegistry());
+        assertNotNull(config.getActionTypeByName("java"));
+
+        config.setActionTypes(Collections.singletonList(createActionType("shell", "shell")));
+        assertNotSame(registry, config.getActionTypeRegistry());
+        assertNull(config.getActionTypeByName("java"));
+        assertNotNull(config.getActionTypeByName("shell"));
+    }
+
+    private ActionType createActionType(String name, String tag) {
+        ActionType type = new ActionType();
+        type.setName(name);
+        type.setTag(tag);
+        return type;
+    }
+}
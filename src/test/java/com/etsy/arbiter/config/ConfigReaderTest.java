@@ -16,14 +16,18 @@
 
 package com.etsy.arbiter.config;
 
+import com.etsy.arbiter.util.YamlBindingException;
 import com.etsy.arbiter.util.YamlReader;
 import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
@@ -32,11 +36,14 @@ public class ConfigReaderTest {
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private YamlReader<Config> reader;
 
     @Before
     public void setup() {
-        reader = new YamlReader<>(Config.getYamlConstructor());
+        reader = new YamlReader<>(Config.getYamlBinder());
     }
 
     @Test
@@ -75,4 +82,14 @@ public class ConfigReaderTest {
         exception.expect(RuntimeException.class);
         reader.read(new File("nonexistent.yaml"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInvalidConfigurationPosition() throws IOException {
+        File file = temporaryFolder.newFile();
+        FileUtils.writeStringToFile(file, "actionTypes:\n  - name: test\n    configurationPosition: first\n", "UTF-8");
+
+        exception.expect(YamlBindingException.class);
+        exception.expectMessage("Expected an integer for configurationPosition");
+        reader.read(file);
+    }
+}
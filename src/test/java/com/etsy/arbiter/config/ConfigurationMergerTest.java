@@ -127,6 +127,79 @@ public class ConfigurationMergerTest {
         assertEquals(expected, ConfigurationMerger.mergeConfiguration(c1, c2));
     }
 
+    @Test
+    public void testRepeatedMergeDoesNotModifyInputs() throws ConfigurationException {
+        Config c1 = new Config();
+        c1.setActionTypes(Collections.singletonList(actionTypes.get(0)));
+
+        Config c2 = new Config();
+        c2.setActionTypes(Collections.singletonList(actionTypes.get(1)));
+
+        Config first = ConfigurationMerger.mergeConfiguration(c1, c2);
+        Config second = ConfigurationMerger.mergeConfiguration(c1, c2);
+
+        assertEquals(first, second);
+        assertEquals(Lists.newArrayList("a", "b", "c"), actionTypes.get(0).getDefaultArgs().get("a"));
+        assertEquals(Lists.newArrayList("d", "c"), actionTypes.get(1).getDefaultArgs().get("a"));
+        assertEquals(2, actionTypes.get(1).getProperties().size());
+    }
+
+    @Test
+    public void testMergedConfigurationIsUnmodifiable() throws ConfigurationException {
+        Config c1 = new Config();
+        c1.setActionTypes(Collections.singletonList(actionTypes.get(0)));
+
+        ActionType copied = ConfigurationMerger.mergeConfiguration(c1).getActionTypes().get(0);
+
+        // An action type with nothing to merge with is copied, so changes to the original don't reach the merged configuration
+        assertEquals(actionTypes.get(0), copied);
+        actionTypes.get(0).getDefaultArgs().get("a").add("d");
+        assertEquals(Lists.newArrayList("a", "b", "c"), copied.getDefaultArgs().get("a"));
+
+        exception.expect(UnsupportedOperationException.class);
+        copied.getDefaultArgs().get("a").add("d");
+    }
+
+    @Test
+    public void testRepeatedArgsAreKept() throws ConfigurationException {
+        actionTypes.get(0).getDefaultArgs().put("arg", Lists.newArrayList("-D", "a=1", "-D", "b=2"));
+        actionTypes.get(1).getDefaultArgs().put("main-class", Lists.newArrayList("com.etsy.Main"));
+
+        Config c1 = new Config();
+        c1.setActionTypes(Collections.singletonList(actionTypes.get(0)));
+
+        Config c2 = new Config();
+        c2.setActionTypes(Collections.singletonList(actionTypes.get(1)));
+
+        ActionType merged = ConfigurationMerger.mergeConfiguration(c1, c2).getActionTypes().get(0);
+        assertEquals(Lists.newArrayList("-D", "a=1", "-D", "b=2"), merged.getDefaultArgs().get("arg"));
+        assertEquals(Lists.newArrayList("com.etsy.Main"), merged.getDefaultArgs().get("main-class"));
+    }
+
+    @Test
+    public void testMergeDefaultInterpolations() throws ConfigurationException {
+        Map<String, String> interpolations = new HashMap<>();
+        interpolations.put("i1", "v1");
+        interpolations.put("i2", "v2");
+        actionTypes.get(0).setDefaultInterpolations(interpolations);
+        interpolations = new HashMap<>();
+        interpolations.put("i2", "low");
+        interpolations.put("i3", "v3");
+        actionTypes.get(1).setDefaultInterpolations(interpolations);
+
+        Config c1 = new Config();
+        c1.setActionTypes(Collections.singletonList(actionTypes.get(0)));
+
+        Config c2 = new Config();
+        c2.setActionTypes(Collections.singletonList(actionTypes.get(1)));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("i1", "v1");
+        expected.put("i2", "v2");
+        expected.put("i3", "v3");
+        assertEquals(expected, ConfigurationMerger.mergeConfiguration(c1, c2).getActionTypes().get(0).getDefaultInterpolations());
+    }
+
     @Test
     public void testGetFirstNonNullValue() {
         actionTypes.get(0).setName(null);
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GenerationMetricsTest {
+    private final PhaseTimerTest.FakeTicker ticker = new PhaseTimerTest.FakeTicker();
+
+    @Test
+    public void testJson() {
+        GenerationMetrics metrics = new GenerationMetrics(ticker);
+        metrics.setOption("graphBuilder", "layered");
+        metrics.getTimer().start(Phase.GENERATE);
+
+        // Workflows are reported in order of name regardless of the order they finished in
+        metrics.add(createWorkflow(metrics, "second", 2500000));
+        metrics.add(createWorkflow(metrics, "fir\"st", 1000000));
+
+        ticker.advance(4000000);
+        metrics.getTimer().stop();
+
+        String expected = "{\n"
+                + "  \"options\": {\"graphBuilder\": \"layered\"},\n"
+                + "  \"elapsedMillis\": 7.500,\n"
+                + "  \"phases\": {\"generate\": 7.500},\n"
+                + "  \"totals\": {\"workflows\": 2, \"actions\": 6, \"edges\": 10, \"forks\": 2, \"outputBytes\": 200, \"phases\": {\"buildGraph\": 3.500}},\n"
+                + "  \"workflows\": [\n"
+                + "    {\"name\": \"fir\\\"st\", \"elapsedMillis\": 1.000, \"actions\": 3, \"edges\": 5, \"forks\": 1, \"outputBytes\": 100, \"phases\": {\"buildGraph\": 1.000}},\n"
+                + "    {\"name\": \"second\", \"elapsedMillis\": 2.500, \"actions\": 3, \"edges\": 5, \"forks\": 1, \"outputBytes\": 100, \"phases\": {\"buildGraph\": 2.500}}\n"
+                + "  ]\n"
+                + "}\n";
+        assertEquals(expected, metrics.toJson());
+    }
+
+    @Test
+    public void testAddedPhases() {
+        GenerationMetrics metrics = new GenerationMetrics(ticker);
+        metrics.getTimer().start(Phase.GENERATE);
+        ticker.advance(3000000);
+        metrics.addPhaseNanos(Phase.RENDER_GRAPHVIZ, 1000000);
+        metrics.addPhaseNanos(Phase.RENDER_GRAPHVIZ, 500000);
+        metrics.getTimer().stop();
+
+        // Added time is reported alongside the phases of the run without being taken from the phase running at the time
+        assertEquals("  \"phases\": {\"generate\": 3.000, \"renderGraphviz\": 1.500},", metrics.toJson().split("\n")[3]);
+    }
+
+    @Test
+    public void testEmptyJson() {
+        String json = new GenerationMetrics(ticker).toJson();
+        assertEquals("  \"workflows\": []", json.split("\n")[5]);
+    }
+
+    private WorkflowMetrics createWorkflow(GenerationMetrics metrics, String name, long buildNanos) {
+        WorkflowMetrics workflow = metrics.newWorkflow(name);
+        workflow.getTimer().start(Phase.BUILD_GRAPH);
+        ticker.advance(buildNanos);
+        workflow.getTimer().stop();
+        workflow.setActions(3);
+        workflow.setEdges(5);
+        workflow.setForks(1);
+        workflow.setOutputBytes(100);
+        workflow.finish();
+        return workflow;
+    }
+}
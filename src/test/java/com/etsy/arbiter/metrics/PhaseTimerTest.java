@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.metrics;
+
+import com.google.common.base.Ticker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class PhaseTimerTest {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void testNestedPhasesAreExclusive() {
+        PhaseTimer timer = new PhaseTimer(ticker);
+        ticker.advance(5);
+        timer.start(Phase.BUILD_GRAPH);
+        ticker.advance(10);
+        timer.start(Phase.GRAPHVIZ);
+        ticker.advance(100);
+        timer.stop();
+        ticker.advance(20);
+        timer.stop();
+        ticker.advance(7);
+
+        assertEquals(30, timer.getNanos(Phase.BUILD_GRAPH));
+        assertEquals(100, timer.getNanos(Phase.GRAPHVIZ));
+        assertEquals(0, timer.getNanos(Phase.WRITE_XML));
+        assertEquals(142, timer.getElapsedNanos());
+    }
+
+    @Test
+    public void testRepeatedPhasesAccumulate() {
+        PhaseTimer timer = new PhaseTimer(ticker);
+        timer.start(Phase.WRITE_XML);
+        ticker.advance(3);
+        timer.stop();
+        timer.start(Phase.GRAPHVIZ);
+        ticker.advance(4);
+        timer.stop();
+        timer.start(Phase.WRITE_XML);
+        ticker.advance(5);
+        timer.stop();
+
+        assertEquals(8, timer.getNanos(Phase.WRITE_XML));
+        // Phases are reported in the order they are declared, not the order they ran
+        assertEquals(Arrays.asList(Phase.WRITE_XML, Phase.GRAPHVIZ), new ArrayList<>(timer.getPhaseNanos().keySet()));
+    }
+
+    @Test
+    public void testStopWithoutStart() {
+        exception.expect(IllegalStateException.class);
+        new PhaseTimer(ticker).stop();
+    }
+
+    /**
+     * A ticker that only moves when told to
+     */
+    static class FakeTicker extends Ticker {
+        private long now = 1000;
+
+        void advance(long nanos) {
+            now += nanos;
+        }
+
+        @Override
+        public long read() {
+            return now;
+        }
+    }
+}
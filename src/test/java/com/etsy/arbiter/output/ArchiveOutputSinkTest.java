@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.etsy.arbiter.output;
+
+import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class ArchiveOutputSinkTest {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testZip() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputSink sink = new ZipOutputSink(archive)) {
+            write(sink, "first/workflow.xml", "<workflow/>");
+            assertTrue(sink.contains("first/workflow.xml"));
+
+            // A discarded entry is left out of the archive
+            OutputEntry discarded = sink.create("second/workflow.xml", Predicates.<String>alwaysFalse());
+            discarded.getStream().write(1);
+            discarded.discard();
+            assertFalse(sink.contains("second/workflow.xml"));
+        }
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), IOUtils.toString(zip, StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(1, entries.size());
+        assertEquals("<workflow/>", entries.get("first/workflow.xml"));
+    }
+
+    @Test
+    public void testTar() throws Exception {
+        String longName = Strings.repeat("a", 120) + "/workflow.xml";
+        String longestName = Strings.repeat("b", 200) + ".xml";
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarOutputSink sink = new TarOutputSink(archive)) {
+            write(sink, "first/workflow.xml", "<workflow/>");
+            write(sink, longName, "");
+            write(sink, longestName, Strings.repeat("x", 600));
+        }
+
+        byte[] bytes = archive.toByteArray();
+        assertEquals(0, bytes.length % (20 * 512));
+        Map<String, String> entries = readTar(bytes);
+        assertEquals(Arrays.asList("first/workflow.xml", longName, longestName), Arrays.asList(entries.keySet().toArray()));
+        assertEquals("<workflow/>", entries.get("first/workflow.xml"));
+        assertEquals("", entries.get(longName));
+        assertEquals(Strings.repeat("x", 600), entries.get(longestName));
+    }
+
+    @Test
+    public void testDuplicatePath() throws Exception {
+        try (TarOutputSink sink = new TarOutputSink(new ByteArrayOutputStream())) {
+            write(sink, "first/workflow.xml", "<workflow/>");
+
+            exception.expect(IOException.class);
+            write(sink, "first/workflow.xml", "<workflow/>");
+        }
+    }
+
+    private static void write(OutputSink sink, String path, String content) throws IOException {
+        OutputEntry entry = sink.create(path, Predicates.<String>alwaysFalse());
+        entry.getStream().write(content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(entry.commit());
+    }
+
+    /**
+     * Reads the regular files in a tar archive, checking the checksum of each header and applying pax paths
+     */
+    private static Map<String, String> readTar(byte[] archive) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        String paxPath = null;
+        int offset = 0;
+        while (archive[offset] != 0) {
+            long checksum = 0;
+            for (int i = 0; i < 512; i++) {
+                checksum += i >= 148 && i < 156 ? ' ' : archive[offset + i] & 0xff;
+            }
+            assertEquals(checksum, Long.parseLong(field(archive, offset + 148, 7), 8));
+            assertEquals("ustar", field(archive, offset + 257, 6));
+
+            String prefix = field(archive, offset + 345, 155);
+            String name = (prefix.isEmpty() ? "" : prefix + "/") + field(archive, offset + 0, 100);
+            int size = Integer.parseInt(field(archive, offset + 124, 12), 8);
+            String content = new String(archive, offset + 512, size, StandardCharsets.UTF_8);
+            char type = (char) archive[offset + 156];
+
+            if (type == 'x') {
+                assertEquals(content.length(), Integer.parseInt(content.substring(0, content.indexOf(' '))));
+                paxPath = content.substring(content.indexOf("path=") + 5, content.length() - 1);
+            } else {
+                assertEquals('0', type);
+                entries.put(paxPath != null ? paxPath : name, content);
+                paxPath = null;
+            }
+            offset += 512 + (size + 511) / 512 * 512;
+        }
+        return entries;
+    }
+
+    private static String field(byte[] archive, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && archive[end] != 0) {
+            end++;
+        }
+        return new String(archive, offset, end - offset, StandardCharsets.UTF_8);
+    }
+}
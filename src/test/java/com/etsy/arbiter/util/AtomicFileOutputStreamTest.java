@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.google.common.base.Predicate;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AtomicFileOutputStreamTest {
+    private static final long LAST_MODIFIED = 1000000000000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File target;
+
+    @Before
+    public void setup() throws IOException {
+        target = new File(temporaryFolder.getRoot(), "target.txt");
+    }
+
+    @Test
+    public void testWriteNewFile() throws IOException {
+        assertTrue(write("one\ntwo\n", null));
+        assertEquals("one\ntwo\n", FileUtils.readFileToString(target, "UTF-8"));
+        assertEquals(1, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testUnchangedFileIsNotRewritten() throws IOException {
+        write("one\ntwo\n", null);
+        assertTrue(target.setLastModified(LAST_MODIFIED));
+
+        assertFalse(write("one\ntwo\n", null));
+        assertEquals(LAST_MODIFIED, target.lastModified());
+        assertEquals(1, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testChangedFileIsReplaced() throws IOException {
+        write("one\ntwo\n", null);
+        assertTrue(write("one\nthree\n", null));
+        assertEquals("one\nthree\n", FileUtils.readFileToString(target, "UTF-8"));
+    }
+
+    @Test
+    public void testIgnoredLines() throws IOException {
+        Predicate<String> timestamp = new Predicate<String>() {
+            @Override
+            public boolean apply(String input) {
+                return input.startsWith("time:");
+            }
+        };
+
+        write("time: 1\nbody\n", timestamp);
+        assertFalse(write("time: 2\nbody\n", timestamp));
+        assertEquals("time: 1\nbody\n", FileUtils.readFileToString(target, "UTF-8"));
+
+        assertTrue(write("time: 3\nother\n", timestamp));
+        assertEquals("time: 3\nother\n", FileUtils.readFileToString(target, "UTF-8"));
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        write("one\n", null);
+
+        AtomicFileOutputStream output = new AtomicFileOutputStream(target);
+        output.write("partial".getBytes(StandardCharsets.UTF_8));
+        output.discard();
+
+        assertEquals("one\n", FileUtils.readFileToString(target, "UTF-8"));
+        assertEquals(1, temporaryFolder.getRoot().list().length);
+    }
+
+    private boolean write(String content, Predicate<String> ignoredLines) throws IOException {
+        AtomicFileOutputStream output = ignoredLines == null ? new AtomicFileOutputStream(target) : new AtomicFileOutputStream(target, ignoredLines);
+        try {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+            return output.commit();
+        } finally {
+            output.discard();
+        }
+    }
+}
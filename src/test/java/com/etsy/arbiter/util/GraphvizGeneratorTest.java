@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Action;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GraphvizGeneratorTest {
+    private DirectedAcyclicGraph<Action, DefaultEdge> graph;
+
+    @Before
+    public void setup() throws DirectedAcyclicGraph.CycleFoundException {
+        // start -> fork-0 -> (a, fork-1 -> (b, c) -> join-1) -> join-0 -> end
+        graph = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        Action start = addAction("start", "start");
+        Action outerFork = addAction("fork-0", "fork");
+        Action a = addAction("a", "java");
+        Action innerFork = addAction("fork-1", "fork");
+        Action b = addAction("b", "java");
+        Action c = addAction("c", "java");
+        Action innerJoin = addAction("join-1", "join");
+        Action outerJoin = addAction("join-0", "join");
+        Action end = addAction("end", "end");
+
+        graph.addDagEdge(start, outerFork);
+        graph.addDagEdge(outerFork, a);
+        graph.addDagEdge(outerFork, innerFork);
+        graph.addDagEdge(innerFork, b);
+        graph.addDagEdge(innerFork, c);
+        graph.addDagEdge(b, innerJoin);
+        graph.addDagEdge(c, innerJoin);
+        graph.addDagEdge(a, outerJoin);
+        graph.addDagEdge(innerJoin, outerJoin);
+        graph.addDagEdge(outerJoin, end);
+    }
+
+    @Test
+    public void testCollapseOutermost() {
+        DirectedAcyclicGraph<Action, DefaultEdge> collapsed = GraphvizGenerator.collapse(graph, 0);
+
+        assertEquals(Arrays.asList("start", "fork-0 to join-0 (3 actions)", "end"), getNames(collapsed));
+        assertEquals(2, collapsed.edgeSet().size());
+    }
+
+    @Test
+    public void testCollapseNested() {
+        DirectedAcyclicGraph<Action, DefaultEdge> collapsed = GraphvizGenerator.collapse(graph, 1);
+
+        List<String> names = getNames(collapsed);
+        assertEquals(6, names.size());
+        assertTrue(names.contains("fork-1 to join-1 (2 actions)"));
+        assertTrue(names.contains("a"));
+        assertEquals(6, collapsed.edgeSet().size());
+    }
+
+    @Test
+    public void testNothingToCollapse() {
+        assertSame(graph, GraphvizGenerator.collapse(graph, 2));
+    }
+
+    private Action addAction(String name, String type) {
+        Action action = new Action();
+        action.setName(name);
+        action.setType(type);
+        graph.addVertex(action);
+        return action;
+    }
+
+    private static List<String> getNames(DirectedAcyclicGraph<Action, DefaultEdge> graph) {
+        List<String> names = new ArrayList<>();
+        Iterator<Action> actions = graph.iterator();
+        while (actions.hasNext()) {
+            names.add(actions.next().getName());
+        }
+        return names;
+    }
+}
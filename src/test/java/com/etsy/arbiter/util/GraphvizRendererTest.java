@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.output.MemoryOutputSink;
+import org.apache.commons.io.FileUtils;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class GraphvizRendererTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File calls;
+    private String dotFile;
+
+    @Before
+    public void setup() throws IOException {
+        // The fake dot is a shell script, so these tests need a POSIX shell
+        assumeTrue(new File("/bin/sh").canExecute());
+        calls = new File(temporaryFolder.getRoot(), "calls.log");
+        dotFile = new File(temporaryFolder.newFolder("output"), "workflow.dot").getPath();
+    }
+
+    @Test
+    public void testUnchangedGraphIsNotRendered() throws Exception {
+        File executable = createExecutable("echo rendered > \"$4\"");
+
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 2, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), dotFile));
+        }
+        assertEquals("rendered\n", FileUtils.readFileToString(new File(dotFile + ".svg"), "UTF-8"));
+        assertTrue(FileUtils.readFileToString(new File(dotFile), "UTF-8").startsWith("digraph"));
+
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 2, executable.getPath())) {
+            assertFalse(renderer.render(createGraph("a", "b"), dotFile));
+            assertTrue(renderer.render(createGraph("a", "c"), dotFile));
+        }
+        assertEquals(2, readCalls().size());
+
+        // A missing rendered file is rendered again even though the graph is unchanged
+        assertTrue(new File(dotFile + ".svg").delete());
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 2, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "c"), dotFile));
+        }
+        assertEquals(3, readCalls().size());
+        assertTrue(readCalls().get(0).startsWith("-Tsvg " + dotFile + " -o "));
+    }
+
+    @Test
+    public void testFailedRenderIsRetried() throws Exception {
+        File executable = createExecutable("echo rendered > \"$4\"");
+        try (GraphvizRenderer renderer = new GraphvizRenderer("png", 1, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "c"), dotFile));
+        }
+        assertTrue(new File(dotFile + ".png").isFile());
+
+        File failing = createExecutable("echo partial > \"$4\"; echo broken; exit 1");
+        try (GraphvizRenderer renderer = new GraphvizRenderer("png", 1, failing.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), dotFile));
+        }
+
+        // Neither the partial output nor the render of the previous graph is left where it would be taken as up to date
+        assertFalse(new File(dotFile + ".png").exists());
+        assertEquals(1, new File(dotFile).getParentFile().list().length);
+
+        try (GraphvizRenderer renderer = new GraphvizRenderer("png", 1, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), dotFile));
+        }
+        assertTrue(new File(dotFile + ".png").isFile());
+        assertEquals(3, readCalls().size());
+    }
+
+    @Test
+    public void testNativeSvg() throws Exception {
+        File executable = createExecutable("echo rendered > \"$4\"");
+        try (GraphvizRenderer renderer = new GraphvizRenderer(GraphvizRenderer.NATIVE_SVG_FORMAT, 1, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), dotFile));
+        }
+
+        // The graph is rendered without running dot, but the DOT file is still written to detect changes
+        assertFalse(calls.exists());
+        assertTrue(FileUtils.readFileToString(new File(dotFile + ".svg"), "UTF-8").contains("<svg"));
+        assertTrue(new File(dotFile).isFile());
+
+        try (GraphvizRenderer renderer = new GraphvizRenderer(GraphvizRenderer.NATIVE_SVG_FORMAT, 1, executable.getPath())) {
+            assertFalse(renderer.render(createGraph("a", "b"), dotFile));
+        }
+    }
+
+    @Test
+    public void testCollapsedGraph() throws Exception {
+        File executable = createExecutable("echo rendered > \"$4\"");
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 1, 0, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), dotFile));
+        }
+        String full = FileUtils.readFileToString(new File(dotFile), "UTF-8");
+
+        // Changing the depth only renders the graph again if it changes what is drawn
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 1, 3, executable.getPath())) {
+            assertFalse(renderer.render(createGraph("a", "b"), dotFile));
+        }
+        assertEquals(full, FileUtils.readFileToString(new File(dotFile), "UTF-8"));
+    }
+
+    @Test
+    public void testRenderToSink() throws Exception {
+        File executable = createExecutable("echo rendered > \"$4\"");
+        MemoryOutputSink sink = new MemoryOutputSink();
+        try (GraphvizRenderer renderer = new GraphvizRenderer("svg", 1, executable.getPath())) {
+            assertTrue(renderer.render(createGraph("a", "b"), sink, "first/workflow.dot"));
+        }
+
+        // dot is given a temporary copy of the DOT file, which is removed once the graph is rendered
+        assertTrue(sink.getString("first/workflow.dot").startsWith("digraph"));
+        assertEquals("rendered\n", sink.getString("first/workflow.dot.svg"));
+        assertFalse(new File(readCalls().get(0).split(" ")[1]).exists());
+    }
+
+    /**
+     * Creates a fake dot executable that records its arguments and then runs the given commands
+     */
+    private File createExecutable(String commands) throws IOException {
+        File executable = temporaryFolder.newFile();
+        FileUtils.writeStringToFile(executable, "#!/bin/sh\necho \"$@\" >> " + calls.getPath() + "\n" + commands + "\n", "UTF-8");
+        assertTrue(executable.setExecutable(true));
+        return executable;
+    }
+
+    private List<String> readCalls() throws IOException {
+        return FileUtils.readLines(calls, "UTF-8");
+    }
+
+    private static DirectedAcyclicGraph<Action, DefaultEdge> createGraph(String... names) throws DirectedAcyclicGraph.CycleFoundException {
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        Action previous = null;
+        for (String name : names) {
+            Action action = new Action();
+            action.setName(name);
+            action.setType("test");
+            graph.addVertex(action);
+            if (previous != null) {
+                graph.addDagEdge(previous, action);
+            }
+            previous = action;
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class InputFilesTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private String root;
+
+    @Before
+    public void setup() throws IOException {
+        root = temporaryFolder.getRoot().getPath();
+        for (String file : Arrays.asList("b.yaml", "a.yml", "notes.txt", "sub/c.yaml", "sub/deeper/d.yaml", "other/e.yaml")) {
+            File created = new File(root, file);
+            FileUtils.forceMkdir(created.getParentFile());
+            FileUtils.touch(created);
+        }
+    }
+
+    @Test
+    public void testDirectory() throws IOException {
+        // Files keep the order of the inputs naming them, and are only listed the first time
+        assertArrayEquals(paths("sub/c.yaml", "sub/deeper/d.yaml", "a.yml", "b.yaml", "other/e.yaml"), InputFiles.expand(new String[]{root + "/sub", root}, null));
+    }
+
+    @Test
+    public void testGlob() throws IOException {
+        assertArrayEquals(paths("b.yaml"), InputFiles.expand(new String[]{root + "/*.yaml"}, null));
+        assertArrayEquals(paths("other/e.yaml", "sub/c.yaml"), InputFiles.expand(new String[]{root + "/*/*.yaml"}, null));
+        assertArrayEquals(paths("sub/c.yaml", "sub/deeper/d.yaml"), InputFiles.expand(new String[]{root + "/sub/**.yaml"}, null));
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        File manifest = new File(root, "inputs.txt");
+        FileUtils.writeStringToFile(manifest, "# Workflows to generate\nb.yaml\n\n  sub/*.yaml  \n" + root + "/other\nmissing.yaml\n", "UTF-8");
+
+        // Files are only listed once, and a plain file that doesn't exist is left to be reported when it is read
+        assertArrayEquals(paths("b.yaml", "sub/c.yaml", "other/e.yaml", "missing.yaml"), InputFiles.expand(new String[]{root + "/b.yaml"}, manifest.getPath()));
+    }
+
+    @Test
+    public void testNoMatches() throws IOException {
+        exception.expect(IOException.class);
+        exception.expectMessage("No workflow files found for input " + root + "/*.json");
+        InputFiles.expand(new String[]{root + "/*.json"}, null);
+    }
+
+    private String[] paths(String... files) {
+        String[] paths = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            paths[i] = new File(root, files[i]).getPath();
+        }
+        return paths;
+    }
+}
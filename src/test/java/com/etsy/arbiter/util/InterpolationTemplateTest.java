@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class InterpolationTemplateTest {
+    private Map<String, String> namedArgs;
+    private Map<String, String> defaultArgs;
+
+    @Before
+    public void setup() {
+        namedArgs = new HashMap<>();
+        namedArgs.put("key", "value");
+        namedArgs.put("dollar", "a$");
+        namedArgs.put("nested", "$$key$$");
+        namedArgs.put("empty", "");
+        namedArgs.put("overridden", null);
+
+        defaultArgs = new HashMap<>();
+        defaultArgs.put("default", "default_value");
+        defaultArgs.put("overridden", "default_value");
+    }
+
+    @Test
+    public void testMatchesStrSubstitutor() {
+        List<String> inputs = Lists.newArrayList(
+                "plain",
+                "a$b",
+                "$",
+                "$$",
+                "$$$$",
+                "$$key$$",
+                "hello $$key$$ and $$default$$!",
+                "$$missing$$",
+                "$$missing$$ $$key$$",
+                "$$key$$$$key$$",
+                "$$missing$$$$key$$",
+                "$$$key$$",
+                "$$key$$$",
+                "$$key$$$$",
+                "$$dollar$$$$key$$",
+                "x$$dollar$$ y",
+                "$$nested$$",
+                "$$empty$$",
+                "$$overridden$$",
+                "$$key:-fallback$$",
+                "$$missing:-fallback$$",
+                "$$unterminated",
+                "$$a$b$$"
+        );
+
+        Map<String, String> merged = new HashMap<>(defaultArgs);
+        merged.putAll(namedArgs);
+        for (String input : inputs) {
+            String expected = StrSubstitutor.replace(input, merged, NamedArgumentInterpolator.PREFIX, NamedArgumentInterpolator.SUFFIX);
+            String actual = InterpolationTemplate.compile(input).render(NamedArgumentInterpolator.createLookup(namedArgs, defaultArgs));
+            assertEquals(input, expected, actual);
+        }
+    }
+
+    @Test
+    public void testLiteralIsNotCopied() {
+        String input = "no variables here";
+        assertSame(input, InterpolationTemplate.compile(input).render(NamedArgumentInterpolator.createLookup(namedArgs, null)));
+    }
+
+    @Test
+    public void testListKey() {
+        InterpolationTemplate template = InterpolationTemplate.compile("$$missing$$");
+        String rendered = template.render(NamedArgumentInterpolator.createLookup(namedArgs, null));
+        assertEquals("missing", template.getListKey(rendered));
+        assertEquals("plain", InterpolationTemplate.compile("plain").getListKey("plain"));
+    }
+
+    @Test
+    public void testArgumentTemplatesDoNotModifyListArgs() {
+        Map<String, List<String>> args = new LinkedHashMap<>();
+        args.put("one", Arrays.asList("$$list_key$$", "$$key$$"));
+        args.put("two", Arrays.asList("$$list_key$$"));
+
+        Map<String, List<String>> listArgs = new HashMap<>();
+        listArgs.put("list_key", Arrays.asList("a", "b"));
+
+        Set<String> splicedKeys = new HashSet<>();
+        Map<String, List<String>> result = ArgumentTemplates.compile(args).render(namedArgs, null, listArgs, splicedKeys);
+
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        expected.put("one", Arrays.asList("a", "b", "value"));
+        // A list argument is only spliced in once
+        expected.put("two", Arrays.asList("$$list_key$$"));
+
+        assertEquals(expected, result);
+        assertEquals(Collections.singleton("list_key"), splicedKeys);
+        assertTrue(listArgs.containsKey("list_key"));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredLayoutTest {
+    private static final double HEIGHT = 30;
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void testEdgesPointDown() {
+        // a -> b -> c plus a -> c, which must pass through the layer of b
+        LayeredLayout layout = LayeredLayout.compute(widths(3, 50), HEIGHT, new int[]{0, 1, 0}, new int[]{1, 2, 2});
+
+        assertTrue(layout.getY(0) < layout.getY(1));
+        assertTrue(layout.getY(1) < layout.getY(2));
+        assertEquals(LayeredLayout.LAYER_SPACING, layout.getY(1) - layout.getY(0), DELTA);
+
+        double[] longEdge = layout.getEdgePoints(2);
+        assertEquals(6, longEdge.length);
+        assertEquals(layout.getY(0) + HEIGHT / 2, longEdge[1], DELTA);
+        assertEquals(layout.getY(1), longEdge[3], DELTA);
+        assertEquals(layout.getY(2) - HEIGHT / 2, longEdge[5], DELTA);
+
+        // The long edge is routed beside b rather than through it
+        assertTrue(Math.abs(longEdge[2] - layout.getX(1)) >= 25 + LayeredLayout.NODE_SPACING - DELTA);
+
+        assertArrayEquals(new double[]{layout.getX(0), layout.getY(0) + HEIGHT / 2, layout.getX(1), layout.getY(1) - HEIGHT / 2},
+                layout.getEdgePoints(0), DELTA);
+    }
+
+    @Test
+    public void testNodesInLayerDoNotOverlap() {
+        int count = 20;
+        int[] sources = new int[count];
+        int[] targets = new int[count];
+        for (int i = 0; i < count; i++) {
+            targets[i] = i + 1;
+        }
+        double[] widths = widths(count + 1, 40);
+        widths[5] = 200;
+        LayeredLayout layout = LayeredLayout.compute(widths, HEIGHT, sources, targets);
+
+        for (int i = 1; i < count; i++) {
+            double gap = layout.getX(i + 1) - widths[i + 1] / 2 - (layout.getX(i) + widths[i] / 2);
+            assertTrue("Nodes overlap with gap " + gap, gap >= LayeredLayout.NODE_SPACING - DELTA);
+        }
+        for (int i = 0; i <= count; i++) {
+            assertTrue(layout.getX(i) - widths[i] / 2 >= LayeredLayout.MARGIN - DELTA);
+            assertTrue(layout.getX(i) + widths[i] / 2 <= layout.getWidth() - LayeredLayout.MARGIN + DELTA);
+        }
+
+        // The source sits over the average position of its children
+        double sum = 0;
+        for (int i = 1; i <= count; i++) {
+            sum += layout.getX(i);
+        }
+        assertEquals(sum / count, layout.getX(0), 1);
+    }
+
+    @Test
+    public void testCrossingIsRemoved() {
+        // a -> d and b -> c cross if c and d stay in the order they were given
+        LayeredLayout layout = LayeredLayout.compute(widths(4, 50), HEIGHT, new int[]{0, 1}, new int[]{3, 2});
+
+        assertTrue(layout.getX(0) < layout.getX(1));
+        assertTrue(layout.getX(3) < layout.getX(2));
+    }
+
+    @Test
+    public void testCycle() {
+        expectedException.expect(IllegalArgumentException.class);
+        LayeredLayout.compute(widths(2, 50), HEIGHT, new int[]{0, 1}, new int[]{1, 0});
+    }
+
+    private static double[] widths(int count, double width) {
+        double[] widths = new double[count];
+        Arrays.fill(widths, width);
+        return widths;
+    }
+}
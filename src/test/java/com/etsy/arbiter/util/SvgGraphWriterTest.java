@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Action;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SvgGraphWriterTest {
+    @Test
+    public void testWrite() throws Exception {
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = createGraph();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SvgGraphWriter.write(graph, output);
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document svg = factory.newDocumentBuilder().parse(new ByteArrayInputStream(output.toByteArray()));
+
+        Element root = svg.getDocumentElement();
+        assertEquals("svg", root.getLocalName());
+        assertEquals("http://www.w3.org/2000/svg", root.getNamespaceURI());
+        assertEquals(6, root.getElementsByTagName("g").getLength());
+        assertEquals(6, root.getElementsByTagName("polyline").getLength());
+        assertEquals(2, root.getElementsByTagName("ellipse").getLength());
+        assertEquals(2, root.getElementsByTagName("polygon").getLength());
+        assertEquals(2, root.getElementsByTagName("rect").getLength());
+
+        NodeList labels = root.getElementsByTagName("text");
+        assertEquals(6, labels.getLength());
+        boolean found = false;
+        for (int i = 0; i < labels.getLength(); i++) {
+            found |= "first & <more>".equals(labels.item(i).getTextContent());
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final DirectedAcyclicGraph<Action, DefaultEdge> graph = createGraph();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        SvgGraphWriter.write(graph, expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        SvgGraphWriter.write(graph, output);
+                        return output.toByteArray();
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected.toByteArray(), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static DirectedAcyclicGraph<Action, DefaultEdge> createGraph() throws DirectedAcyclicGraph.CycleFoundException {
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = new DirectedAcyclicGraph<>(DefaultEdge.class);
+        Action start = createAction("start", "start");
+        Action fork = createAction("fork-0", "fork");
+        Action first = createAction("first & <more>", "java");
+        Action second = createAction("second", "java");
+        Action join = createAction("join-0", "join");
+        Action end = createAction("end", "end");
+        for (Action action : new Action[]{start, fork, first, second, join, end}) {
+            graph.addVertex(action);
+        }
+        graph.addDagEdge(start, fork);
+        graph.addDagEdge(fork, first);
+        graph.addDagEdge(fork, second);
+        graph.addDagEdge(first, join);
+        graph.addDagEdge(second, join);
+        graph.addDagEdge(join, end);
+        return graph;
+    }
+
+    private static Action createAction(String name, String type) {
+        Action action = new Action();
+        action.setName(name);
+        action.setType(type);
+        return action;
+    }
+}
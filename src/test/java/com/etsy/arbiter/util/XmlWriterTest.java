@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLOutputFactory;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class XmlWriterTest {
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n";
+
+    @Test
+    public void testIndented() throws Exception {
+        String expected = PROLOG +
+                "<root xmlns=\"uri:test\" name=\"r\">\n" +
+                "  <empty a=\"1\"/>\n" +
+                "  <parent>\n" +
+                "    <text>a &lt; b</text>\n" +
+                "    <label x=\"2\">c &amp; d</label>\n" +
+                "  </parent>\n" +
+                "  <childless/>\n" +
+                "</root>\n";
+
+        assertEquals(expected, write(true));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        String expected = PROLOG +
+                "<root xmlns=\"uri:test\" name=\"r\"><empty a=\"1\"/><parent><text>a &lt; b</text><label x=\"2\">c &amp; d</label></parent><childless/></root>\n";
+
+        assertEquals(expected, write(false));
+    }
+
+    private String write(boolean indent) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (XmlWriter xml = new XmlWriter(output, XMLOutputFactory.newInstance(), indent)) {
+            xml.startElement("root")
+                    .defaultNamespace("uri:test")
+                    .attribute("name", "r")
+                    .emptyElement("empty")
+                    .attribute("a", "1")
+                    .startElement("parent")
+                    .textElement("text", "a < b")
+                    .startElement("label")
+                    .attribute("x", "2")
+                    .text("c & d")
+                    .endElement()
+                    .endElement()
+                    .startElement("childless")
+                    .endElement()
+                    .endElement();
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.util;
+
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.exception.InputFileException;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class YamlLoaderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOrderIsPreserved() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            files.add(writeWorkflow("workflow-" + i));
+        }
+
+        List<Workflow> workflows = new YamlLoader<>(Workflow.getYamlBinder(), 8).read(files);
+
+        assertEquals(files.size(), workflows.size());
+        for (int i = 0; i < workflows.size(); i++) {
+            assertEquals("workflow-" + i, workflows.get(i).getName());
+        }
+    }
+
+    @Test
+    public void testHashes() throws IOException {
+        List<File> files = Arrays.asList(writeWorkflow("first"), writeWorkflow("second"));
+
+        List<Pair<Workflow, HashCode>> workflows = new YamlLoader<>(Workflow.getYamlBinder(), 2).read(files, Hashing.sha256());
+
+        assertEquals(2, workflows.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(files.get(i).getName().replace(".yaml", ""), workflows.get(i).getLeft().getName());
+            assertEquals(Files.hash(files.get(i), Hashing.sha256()), workflows.get(i).getRight());
+        }
+    }
+
+    @Test
+    public void testEveryFailureIsReported() throws IOException {
+        File missing = new File(temporaryFolder.getRoot(), "missing.yaml");
+        File malformed = temporaryFolder.newFile("malformed.yaml");
+        FileUtils.writeStringToFile(malformed, "name: [unclosed", "UTF-8");
+        List<File> files = Arrays.asList(writeWorkflow("first"), missing, writeWorkflow("second"), malformed);
+
+        try {
+            new YamlLoader<>(Workflow.getYamlBinder(), 4).read(files);
+            fail("Expected the bad files to be reported");
+        } catch (InputFileException e) {
+            assertEquals(Arrays.asList(missing.getPath(), malformed.getPath()), new ArrayList<>(e.getFailures().keySet()));
+            assertEquals(0, e.getMessage().indexOf("Could not read 2 input files\n  " + missing.getPath() + ": "));
+        }
+    }
+
+    private File writeWorkflow(String name) throws IOException {
+        File file = temporaryFolder.newFile(name + ".yaml");
+        FileUtils.writeStringToFile(file, "name: " + name + "\nactions:\n  - name: a\n    type: test\n", "UTF-8");
+        return file;
+    }
+}
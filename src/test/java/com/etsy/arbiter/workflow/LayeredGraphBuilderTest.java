@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import com.google.common.collect.Sets;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static com.etsy.arbiter.workflow.TestWorkflows.createWorkflow;
+import static com.etsy.arbiter.workflow.TestWorkflows.describe;
+import static org.junit.Assert.assertEquals;
+
+public class LayeredGraphBuilderTest {
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private Config config;
+
+    @Before
+    public void setup() {
+        config = new Config();
+        config.setKillName("kill");
+        config.setKillMessage("kill");
+    }
+
+    @Test
+    public void testNoDependencies() throws WorkflowGraphException {
+        assertSameStructure(createWorkflow(new int[][]{{}, {}, {}}), "[a0|a1|a2]");
+    }
+
+    @Test
+    public void testChain() throws WorkflowGraphException {
+        assertSameStructure(createWorkflow(new int[][]{{}, {0}, {1}}), "a0,a1,a2");
+    }
+
+    @Test
+    public void testDisconnectedComponents() throws WorkflowGraphException {
+        assertSameStructure(createWorkflow(new int[][]{{}, {}, {1}}), "[a0|a1,a2]");
+    }
+
+    @Test
+    public void testNestedForks() throws WorkflowGraphException {
+        // a0 and a1 run first, then a2 and a3 fan out from them, with a4 and a5 in parallel chains after a2
+        Workflow workflow = createWorkflow(new int[][]{{}, {}, {0, 1}, {1}, {2}, {2}, {3}});
+        assertSameStructure(workflow, "[a0|a1],[a2,[a4|a5]|a3,a6]");
+    }
+
+    @Test
+    public void testRandomWorkflows() throws WorkflowGraphException {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int size = 1 + random.nextInt(40);
+            double density = random.nextDouble() * 0.3;
+            int[][] dependencies = new int[size][];
+            for (int j = 0; j < size; j++) {
+                List<Integer> deps = new ArrayList<>();
+                for (int k = 0; k < j; k++) {
+                    if (random.nextDouble() < density) {
+                        deps.add(k);
+                    }
+                }
+                dependencies[j] = new int[deps.size()];
+                for (int k = 0; k < deps.size(); k++) {
+                    dependencies[j][k] = deps.get(k);
+                }
+            }
+
+            assertSameStructure(createWorkflow(dependencies), null);
+        }
+    }
+
+    @Test
+    public void testDeepChain() throws WorkflowGraphException {
+        int[][] dependencies = new int[5000][];
+        dependencies[0] = new int[0];
+        for (int i = 1; i < dependencies.length; i++) {
+            dependencies[i] = new int[]{i - 1};
+        }
+
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = WorkflowGraphBuilder.buildWorkflowGraph(createWorkflow(dependencies), config, null, false, null, WorkflowGraphBuilder.Algorithm.LAYERED);
+        assertEquals(5003, graph.vertexSet().size());
+        assertEquals(5001, graph.edgeSet().size());
+    }
+
+    @Test
+    public void testSelfEdge() throws WorkflowGraphException {
+        Workflow workflow = createWorkflow(new int[][]{{}, {}});
+        workflow.getActions().get(0).setDependencies(Sets.newHashSet("a0"));
+        expectedException.expect(IllegalArgumentException.class);
+        WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null, WorkflowGraphBuilder.Algorithm.LAYERED);
+    }
+
+    private void assertSameStructure(Workflow workflow, String expected) throws WorkflowGraphException {
+        DirectedAcyclicGraph<Action, DefaultEdge> recursive = WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null, WorkflowGraphBuilder.Algorithm.RECURSIVE);
+        DirectedAcyclicGraph<Action, DefaultEdge> layered = WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null, WorkflowGraphBuilder.Algorithm.LAYERED);
+
+        String structure = describe(recursive);
+        if (expected != null) {
+            assertEquals(expected, structure);
+        }
+        assertEquals(structure, describe(layered));
+        assertEquals(recursive.vertexSet().size(), layered.vertexSet().size());
+        assertEquals(recursive.edgeSet().size(), layered.edgeSet().size());
+    }
+}
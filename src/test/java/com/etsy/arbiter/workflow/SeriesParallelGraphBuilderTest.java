@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.Workflow;
+import com.etsy.arbiter.config.Config;
+import com.etsy.arbiter.exception.WorkflowGraphException;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.traverse.DepthFirstIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static com.etsy.arbiter.workflow.TestWorkflows.createWorkflow;
+import static com.etsy.arbiter.workflow.TestWorkflows.describe;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeriesParallelGraphBuilderTest {
+    private Config config;
+
+    @Before
+    public void setup() {
+        config = new Config();
+        config.setKillName("kill");
+        config.setKillMessage("kill");
+    }
+
+    @Test
+    public void testChain() throws WorkflowGraphException {
+        Workflow workflow = createWorkflow(new int[][]{{}, {0}, {1}});
+        assertEquals("a0,a1,a2", describe(build(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL)));
+    }
+
+    @Test
+    public void testDisconnectedComponents() throws WorkflowGraphException {
+        Workflow workflow = createWorkflow(new int[][]{{}, {}, {1}});
+        assertEquals("[a0|a1,a2]", describe(build(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL)));
+    }
+
+    @Test
+    public void testChainJoiningAction() throws WorkflowGraphException {
+        // a3 only has to finish before a4, but the layered algorithm also runs it before a1 and a2
+        Workflow workflow = createWorkflow(new int[][]{{}, {0}, {1}, {}, {2, 3}});
+        assertEquals("[a0,a1,a2|a3],a4", describe(build(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL)));
+        assertEquals("[a0|a3],a1,a2,a4", describe(build(workflow, WorkflowGraphBuilder.Algorithm.LAYERED)));
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL, 0);
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.LAYERED, 2);
+    }
+
+    @Test
+    public void testChainsOfDifferentLengths() throws WorkflowGraphException {
+        // Splitting after each layer of actions makes each chain wait for every step of the other
+        Workflow workflow = createWorkflow(new int[][]{{}, {0}, {1}, {0}, {3}, {2, 4}});
+        assertEquals("a0,[a1,a2|a3,a4],a5", describe(build(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL)));
+        assertEquals("a0,[a1|a3],[a2|a4],a5", describe(build(workflow, WorkflowGraphBuilder.Algorithm.LAYERED)));
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL, 0);
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.LAYERED, 2);
+    }
+
+    @Test
+    public void testUnavoidableFalseDependency() throws WorkflowGraphException {
+        // No series-parallel graph has exactly these dependencies, so one must be added
+        Workflow workflow = createWorkflow(new int[][]{{}, {}, {0}, {0, 1}});
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL, 1);
+        assertFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.LAYERED, 1);
+    }
+
+    @Test
+    public void testRandomWorkflows() throws WorkflowGraphException {
+        Random random = new Random(42);
+        long layeredTotal = 0;
+        long seriesParallelTotal = 0;
+        for (int i = 0; i < 200; i++) {
+            int size = 1 + random.nextInt(40);
+            double density = random.nextDouble() * 0.3;
+            int[][] dependencies = new int[size][];
+            for (int j = 0; j < size; j++) {
+                List<Integer> deps = new ArrayList<>();
+                for (int k = 0; k < j; k++) {
+                    if (random.nextDouble() < density) {
+                        deps.add(k);
+                    }
+                }
+                dependencies[j] = new int[deps.size()];
+                for (int k = 0; k < deps.size(); k++) {
+                    dependencies[j][k] = deps.get(k);
+                }
+            }
+            Workflow workflow = createWorkflow(dependencies);
+
+            DirectedAcyclicGraph<Action, DefaultEdge> graph = build(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL);
+            assertEquals(size + 3 + 2 * countForks(graph), graph.vertexSet().size());
+            for (Action action : workflow.getActions()) {
+                Set<String> descendants = getDescendants(graph, action);
+                for (Action dependent : workflow.getActions()) {
+                    if (dependent.getDependencies() != null && dependent.getDependencies().contains(action.getName())) {
+                        assertTrue(descendants.contains(dependent.getName()));
+                    }
+                }
+            }
+
+            long layered = countFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.LAYERED);
+            long seriesParallel = countFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL);
+            assertTrue(seriesParallel <= layered);
+            layeredTotal += layered;
+            seriesParallelTotal += seriesParallel;
+        }
+        assertTrue(seriesParallelTotal < layeredTotal);
+    }
+
+    @Test
+    public void testDeepChain() throws WorkflowGraphException {
+        int[][] dependencies = new int[5000][];
+        dependencies[0] = new int[0];
+        for (int i = 1; i < dependencies.length; i++) {
+            dependencies[i] = new int[]{i - 1};
+        }
+
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = build(createWorkflow(dependencies), WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL);
+        assertEquals(5003, graph.vertexSet().size());
+        assertEquals(5001, graph.edgeSet().size());
+    }
+
+    @Test
+    public void testLargeSetWithoutFreeSplits() throws WorkflowGraphException {
+        // Two chains with a rung between each pair of steps are too large to count, so they are split like the layered algorithm
+        int steps = SeriesParallelGraphBuilder.COUNTED_LIMIT;
+        int[][] dependencies = new int[2 * steps][];
+        dependencies[0] = new int[0];
+        dependencies[1] = new int[0];
+        for (int i = 1; i < steps; i++) {
+            dependencies[2 * i] = new int[]{2 * i - 2};
+            dependencies[2 * i + 1] = new int[]{2 * i - 2, 2 * i - 1};
+        }
+
+        Workflow workflow = createWorkflow(dependencies);
+        assertEquals(countFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.LAYERED), countFalseDependencies(workflow, WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL));
+    }
+
+    @Test
+    public void testLongSetWithoutFreeSplits() throws WorkflowGraphException {
+        // Splitting off one layer at a time would recurse once for each of the thousands of steps
+        int steps = 10000;
+        int[][] dependencies = new int[2 * steps][];
+        dependencies[0] = new int[0];
+        dependencies[1] = new int[0];
+        for (int i = 1; i < steps; i++) {
+            dependencies[2 * i] = new int[]{2 * i - 2};
+            dependencies[2 * i + 1] = new int[]{2 * i - 2, 2 * i - 1};
+        }
+
+        DirectedAcyclicGraph<Action, DefaultEdge> graph = build(createWorkflow(dependencies), WorkflowGraphBuilder.Algorithm.SERIES_PARALLEL);
+        assertTrue(graph.vertexSet().size() > 2 * steps);
+    }
+
+    private DirectedAcyclicGraph<Action, DefaultEdge> build(Workflow workflow, WorkflowGraphBuilder.Algorithm algorithm) throws WorkflowGraphException {
+        return WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null, algorithm);
+    }
+
+    private long countFalseDependencies(Workflow workflow, WorkflowGraphBuilder.Algorithm algorithm) throws WorkflowGraphException {
+        return WorkflowGraphBuilder.countFalseDependencies(workflow, WorkflowGraphBuilder.build(workflow, config, null, false, null, algorithm));
+    }
+
+    private void assertFalseDependencies(Workflow workflow, WorkflowGraphBuilder.Algorithm algorithm, long expected) throws WorkflowGraphException {
+        assertEquals(expected, countFalseDependencies(workflow, algorithm));
+    }
+
+    private static Set<String> getDescendants(DirectedAcyclicGraph<Action, DefaultEdge> graph, Action action) {
+        Set<String> descendants = new HashSet<>();
+        DepthFirstIterator<Action, DefaultEdge> iterator = new DepthFirstIterator<>(graph, action);
+        while (iterator.hasNext()) {
+            descendants.add(iterator.next().getName());
+        }
+        return descendants;
+    }
+
+    private static int countForks(DirectedAcyclicGraph<Action, DefaultEdge> graph) {
+        int forks = 0;
+        for (Action action : graph.vertexSet()) {
+            if (action.getName().startsWith("fork-")) {
+                forks++;
+            }
+        }
+        return forks;
+    }
+}
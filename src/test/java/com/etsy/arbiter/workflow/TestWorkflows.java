@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import com.etsy.arbiter.Workflow;
+import com.google.common.base.Joiner;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Creates workflows and describes the graphs built from them for the tests of the fork/join algorithms
+ *
+ * @author Andrew Johnson
+ */
+final class TestWorkflows {
+    private TestWorkflows() { }
+
+    /**
+     * Create a workflow of actions named a0, a1 and so on
+     *
+     * @param dependencies The numbers of the actions each action depends on
+     * @return The workflow
+     */
+    static Workflow createWorkflow(int[][] dependencies) {
+        List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < dependencies.length; i++) {
+            Action action = new Action();
+            action.setName("a" + i);
+            if (dependencies[i].length > 0) {
+                Set<String> deps = new HashSet<>();
+                for (int dependency : dependencies[i]) {
+                    deps.add("a" + dependency);
+                }
+                action.setDependencies(deps);
+            }
+            actions.add(action);
+        }
+
+        Workflow workflow = new Workflow();
+        workflow.setName("workflow");
+        workflow.setActions(actions);
+        return workflow;
+    }
+
+    /**
+     * Describes the structure of a graph independently of the order of parallel branches and the numbering of fork/join pairs
+     * Sequential actions are separated by commas, and parallel branches are sorted and enclosed in brackets
+     */
+    static String describe(DirectedAcyclicGraph<Action, DefaultEdge> graph) {
+        Action start = null;
+        for (Action action : graph.vertexSet()) {
+            if (action.getName().equals("start")) {
+                start = action;
+            }
+        }
+
+        return describe(graph, successor(graph, start), "end");
+    }
+
+    private static String describe(DirectedAcyclicGraph<Action, DefaultEdge> graph, Action from, String until) {
+        List<String> parts = new ArrayList<>();
+        Action current = from;
+        while (!current.getName().equals(until)) {
+            if (current.getName().startsWith("fork-")) {
+                String join = current.getName().replace("fork-", "join-");
+                List<String> branches = new ArrayList<>();
+                Action joinAction = null;
+                for (DefaultEdge edge : graph.outgoingEdgesOf(current)) {
+                    branches.add(describe(graph, graph.getEdgeTarget(edge), join));
+                }
+                for (Action action : graph.vertexSet()) {
+                    if (action.getName().equals(join)) {
+                        joinAction = action;
+                    }
+                }
+                Collections.sort(branches);
+                parts.add("[" + Joiner.on("|").join(branches) + "]");
+                current = successor(graph, joinAction);
+            } else {
+                parts.add(current.getName());
+                current = successor(graph, current);
+            }
+        }
+
+        return Joiner.on(",").join(parts);
+    }
+
+    private static Action successor(DirectedAcyclicGraph<Action, DefaultEdge> graph, Action action) {
+        Set<DefaultEdge> edges = graph.outgoingEdgesOf(action);
+        assertEquals(1, edges.size());
+        return graph.getEdgeTarget(edges.iterator().next());
+    }
+}
@@ -23,6 +23,7 @@ import com.etsy.arbiter.exception.WorkflowGraphException;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Sets;
+import org.apache.commons.lang3.tuple.Pair;
 import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.junit.Before;
@@ -31,9 +32,13 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
 public class WorkflowGraphBuilderTest {
     @Rule
@@ -67,6 +72,14 @@ public class WorkflowGraphBuilderTest {
         WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null);
     }
 
+    @Test
+    public void testMissingActions() throws WorkflowGraphException {
+        workflow.setActions(null);
+        expectedException.expect(WorkflowGraphException.class);
+        expectedException.expectMessage("No actions found in workflow workflow");
+        WorkflowGraphBuilder.buildWorkflowGraph(workflow, config, null, false, null);
+    }
+
     @Test
     public void testCycles() throws WorkflowGraphException {
         workflow.getActions().get(0).setDependencies(Sets.newHashSet("a2"));
@@ -133,6 +146,58 @@ public class WorkflowGraphBuilderTest {
         assertEquals(expectedEdges, getEdges(graph));
     }
 
+    @Test
+    public void testEnclosingForkJoin() throws WorkflowGraphException {
+        workflow.getActions().get(2).setDependencies(Sets.newHashSet("a2"));
+        WorkflowGraph graph = WorkflowGraphBuilder.build(workflow, config, null, false, null, WorkflowGraphBuilder.Algorithm.RECURSIVE);
+        Map<String, Integer> actions = getActionsByName(graph);
+
+        assertEquals("join-0", graph.getEnclosingForkJoin(actions.get("a1")).getRight().getName());
+        assertEquals("join-0", graph.getEnclosingForkJoin(actions.get("a2")).getRight().getName());
+        assertEquals("join-0", graph.getEnclosingForkJoin(actions.get("a3")).getRight().getName());
+        assertEquals("fork-0", graph.getEnclosingForkJoin(actions.get("a3")).getLeft().getName());
+        assertNull(graph.getEnclosingForkJoin(actions.get("fork-0")));
+        assertNull(graph.getEnclosingForkJoin(actions.get("join-0")));
+        assertNull(graph.getEnclosingForkJoin(actions.get("start")));
+        assertNull(graph.getEnclosingForkJoin(actions.get("end")));
+        assertNull(graph.getEnclosingForkJoin(actions.get("kill")));
+    }
+
+    @Test
+    public void testNestedEnclosingForkJoin() throws WorkflowGraphException {
+        // The names of user actions play no part in matching forks to joins
+        Action fork = new Action();
+        fork.setName("fork-a1");
+        fork.setDependencies(Sets.newHashSet("a1"));
+        Action join = new Action();
+        join.setName("join-a1");
+        join.setDependencies(Sets.newHashSet("a1"));
+        workflow.setActions(Arrays.asList(workflow.getActions().get(0), workflow.getActions().get(1), fork, join));
+
+        for (WorkflowGraphBuilder.Algorithm algorithm : WorkflowGraphBuilder.Algorithm.values()) {
+            WorkflowGraph graph = WorkflowGraphBuilder.build(workflow, config, null, false, null, algorithm);
+            Map<String, Integer> actions = getActionsByName(graph);
+
+            // a1 runs in parallel with a2, and is followed by the user actions in parallel with each other
+            Pair<Action, Action> outer = graph.getEnclosingForkJoin(actions.get("a2"));
+            assertEquals(outer, graph.getEnclosingForkJoin(actions.get("a1")));
+            Pair<Action, Action> inner = graph.getEnclosingForkJoin(actions.get("fork-a1"));
+            assertEquals(inner, graph.getEnclosingForkJoin(actions.get("join-a1")));
+            assertNotEquals(outer, inner);
+            assertEquals(outer, graph.getEnclosingForkJoin(actions.get(inner.getLeft().getName())));
+            assertEquals(outer, graph.getEnclosingForkJoin(actions.get(inner.getRight().getName())));
+            assertNull(graph.getEnclosingForkJoin(actions.get(outer.getLeft().getName())));
+        }
+    }
+
+    private Map<String, Integer> getActionsByName(WorkflowGraph graph) {
+        Map<String, Integer> actions = new HashMap<>();
+        for (int i = 0; i < graph.size(); i++) {
+            actions.put(graph.getAction(i).getName(), i);
+        }
+        return actions;
+    }
+
     private Set<String> getVertices(final DirectedAcyclicGraph<Action, DefaultEdge> graph) {
         return Sets.newHashSet(Collections2.transform(graph.vertexSet(), new Function<Action, String>() {
             @Override
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2016 Etsy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.etsy.arbiter.workflow;
+
+import com.etsy.arbiter.Action;
+import org.jgrapht.experimental.dag.DirectedAcyclicGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.traverse.DepthFirstIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WorkflowGraphTest {
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void testEdgeOrder() throws DirectedAcyclicGraph.CycleFoundException {
+        WorkflowGraph.Builder builder = createBuilder(4);
+        builder.addEdge(0, 3);
+        builder.addEdge(1, 2);
+        builder.addEdge(0, 1);
+        builder.addEdge(2, 3);
+        WorkflowGraph graph = builder.build(null);
+
+        assertEquals(4, graph.size());
+        assertEquals(4, graph.getEdgeCount());
+        assertEquals(2, graph.getOutDegree(0));
+        assertEquals(3, graph.getSuccessor(0, 0));
+        assertEquals(1, graph.getSuccessor(0, 1));
+        assertEquals(2, graph.getInDegree(3));
+        assertEquals(0, graph.getPredecessor(3, 0));
+        assertEquals(2, graph.getPredecessor(3, 1));
+        assertEquals(0, graph.getInDegree(0));
+        assertEquals(WorkflowGraph.NONE, graph.getStart());
+        assertEquals(WorkflowGraph.NONE, graph.getEnclosingJoin(2));
+    }
+
+    @Test
+    public void testCycle() throws DirectedAcyclicGraph.CycleFoundException {
+        WorkflowGraph.Builder builder = createBuilder(3);
+        builder.addEdge(0, 1);
+        builder.addEdge(1, 2);
+        builder.addEdge(2, 1);
+        expectedException.expect(DirectedAcyclicGraph.CycleFoundException.class);
+        builder.build(null);
+    }
+
+    @Test
+    public void testSelfEdge() {
+        WorkflowGraph.Builder builder = createBuilder(1);
+        expectedException.expect(IllegalArgumentException.class);
+        builder.addEdge(0, 0);
+    }
+
+    @Test
+    public void testDepthFirstOrderMatchesJgrapht() throws DirectedAcyclicGraph.CycleFoundException {
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            int size = 1 + random.nextInt(30);
+            WorkflowGraph.Builder builder = createBuilder(size);
+            for (int i = 0; i < size; i++) {
+                List<Integer> targets = new ArrayList<>();
+                for (int j = i + 1; j < size; j++) {
+                    if (random.nextInt(4) == 0) {
+                        targets.add(j);
+                    }
+                }
+
+                // Add edges in a random order so that the edges leaving an action are not sorted
+                Collections.shuffle(targets, random);
+                for (int target : targets) {
+                    builder.addEdge(i, target);
+                }
+            }
+
+            WorkflowGraph graph = builder.build(null);
+            DirectedAcyclicGraph<Action, DefaultEdge> converted = graph.toDirectedAcyclicGraph();
+
+            List<Integer> expected = new ArrayList<>();
+            DepthFirstIterator<Action, DefaultEdge> iterator = new DepthFirstIterator<>(converted, graph.getAction(0));
+            while (iterator.hasNext()) {
+                expected.add(Integer.parseInt(iterator.next().getName()));
+            }
+
+            int[] actual = graph.getDepthFirstOrder(0);
+            int[] expectedArray = new int[expected.size()];
+            for (int i = 0; i < expectedArray.length; i++) {
+                expectedArray[i] = expected.get(i);
+            }
+            assertArrayEquals(expectedArray, actual);
+            assertEquals(graph.getEdgeCount(), converted.edgeSet().size());
+        }
+    }
+
+    private WorkflowGraph.Builder createBuilder(int size) {
+        WorkflowGraph.Builder builder = new WorkflowGraph.Builder();
+        for (int i = 0; i < size; i++) {
+            Action action = new Action();
+            action.setName(String.valueOf(i));
+            builder.addVertex(action);
+        }
+        return builder;
+    }
+}